@@ -0,0 +1,156 @@
+/* Copyright 2020 Open Source Robotics Foundation, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ros2.ament_index_java;
+
+import java.lang.String;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of the static lookups of {@link ResourceIndex} and {@link PackageIndex}, compared
+ * to the uncached lookups of {@link AmentIndex} and the lookups of {@link CompactIndex}.
+ *
+ * Expects AMENT_PREFIX_PATH to point to a workspace generated by {@link SyntheticWorkspace}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ResourceIndexBenchmark {
+  private static final int NAME_COUNT = 1024;
+
+  private static final String RESOURCE_TYPE = SyntheticWorkspace.RESOURCE_TYPE_PREFIX + 1;
+
+  private AmentIndex index;
+
+  private CompactIndex compactIndex;
+
+  private String[] hitNames;
+
+  private String[] missNames;
+
+  private int next;
+
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    this.index = AmentIndex.fromEnvironment();
+    this.compactIndex = CompactIndex.create();
+    List<String> packageNames = Arrays.asList(
+        ResourceIndex.getResourceNames(PackageIndex.PACKAGE_RESOURCE_TYPE));
+    if (packageNames.isEmpty()) {
+      throw new IllegalStateException("AMENT_PREFIX_PATH does not contain any packages");
+    }
+    Collections.shuffle(packageNames, new Random(42));
+    this.hitNames = new String[NAME_COUNT];
+    this.missNames = new String[NAME_COUNT];
+    for (int i = 0; i < NAME_COUNT; ++i) {
+      this.hitNames[i] = packageNames.get(i % packageNames.size());
+      this.missNames[i] = "missing_" + this.hitNames[i];
+    }
+  }
+
+  private int nextIndex() {
+    this.next = (this.next + 1) % NAME_COUNT;
+    return this.next;
+  }
+
+  @Benchmark
+  public Resource getResourceHit() throws Exception {
+    return ResourceIndex.getResource(RESOURCE_TYPE, this.hitNames[this.nextIndex()]);
+  }
+
+  @Benchmark
+  public Resource getResourceMiss() throws Exception {
+    return ResourceIndex.getResource(RESOURCE_TYPE, this.missNames[this.nextIndex()]);
+  }
+
+  @Benchmark
+  public String getResourceContent() throws Exception {
+    return ResourceIndex.getResource(RESOURCE_TYPE, this.hitNames[this.nextIndex()]).getContent();
+  }
+
+  @Benchmark
+  public String hasResourceHit() throws Exception {
+    return ResourceIndex.hasResource(
+        PackageIndex.PACKAGE_RESOURCE_TYPE, this.hitNames[this.nextIndex()]);
+  }
+
+  @Benchmark
+  public String hasResourceMiss() throws Exception {
+    return ResourceIndex.hasResource(
+        PackageIndex.PACKAGE_RESOURCE_TYPE, this.missNames[this.nextIndex()]);
+  }
+
+  @Benchmark
+  @OutputTimeUnit(TimeUnit.MICROSECONDS)
+  public Resource[] getResources() throws Exception {
+    return ResourceIndex.getResources(RESOURCE_TYPE);
+  }
+
+  @Benchmark
+  @OutputTimeUnit(TimeUnit.MICROSECONDS)
+  public Hashtable<String, String> getPackagesWithPrefixes() throws Exception {
+    return PackageIndex.getPackagesWithPrefixes();
+  }
+
+  @Benchmark
+  public Resource amentIndexGetResourceHit() throws Exception {
+    return this.index.getResource(RESOURCE_TYPE, this.hitNames[this.nextIndex()]);
+  }
+
+  @Benchmark
+  public Resource amentIndexGetResourceMiss() throws Exception {
+    return this.index.getResource(RESOURCE_TYPE, this.missNames[this.nextIndex()]);
+  }
+
+  @Benchmark
+  public Resource compactIndexGetResourceHit() throws Exception {
+    return this.compactIndex.getResource(RESOURCE_TYPE, this.hitNames[this.nextIndex()]);
+  }
+
+  @Benchmark
+  public Resource compactIndexGetResourceMiss() throws Exception {
+    return this.compactIndex.getResource(RESOURCE_TYPE, this.missNames[this.nextIndex()]);
+  }
+
+  /**
+   * A lookup after the cached snapshot was discarded, which includes crawling all prefix paths.
+   */
+  @Benchmark
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  public Resource getResourceUncached() throws Exception {
+    ResourceIndex.invalidate();
+    return ResourceIndex.getResource(RESOURCE_TYPE, this.hitNames[this.nextIndex()]);
+  }
+}
@@ -0,0 +1,121 @@
+/* Copyright 2020 Open Source Robotics Foundation, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ros2.ament_index_java;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.String;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Generates a large, synthetic workspace for benchmarks.
+ *
+ * The workspace consists of several prefix paths, each with the same number of packages.
+ * Neighbouring prefix paths share a quarter of their packages, so earlier prefix paths shadow
+ * some packages of later ones, like in an overlay workspace.
+ * Besides the "packages" resource type, every package registers one marker with content for each
+ * of the other resource types.
+ */
+public final class SyntheticWorkspace {
+  /**
+   * Name of the file in the workspace root holding the value for AMENT_PREFIX_PATH.
+   */
+  public static final String PREFIX_PATH_FILE_NAME = "AMENT_PREFIX_PATH";
+
+  /**
+   * Prefix of the names of the resource types other than "packages".
+   */
+  public static final String RESOURCE_TYPE_PREFIX = "resource_type_";
+
+  private SyntheticWorkspace() {}
+
+  /**
+   * Generate a workspace.
+   *
+   * @param root The directory to generate the workspace in.
+   * @param prefixCount The number of prefix paths.
+   * @param packagesPerPrefix The number of packages in every prefix path.
+   * @param typeCount The number of resource types, including "packages".
+   * @return The prefix paths, in order of precedence.
+   */
+  public static String[] generate(Path root, int prefixCount, int packagesPerPrefix, int typeCount)
+  throws IOException {
+    int stride = Math.max(1, packagesPerPrefix * 3 / 4);
+    String[] prefixPaths = new String[prefixCount];
+    for (int p = 0; p < prefixCount; ++p) {
+      Path prefix = root.resolve(String.format("prefix_%03d", p));
+      Path indexDirectory = prefix.resolve(ResourceIndex.RESOURCE_INDEX_SUBDIRECTORY);
+      Path packagesDirectory = indexDirectory.resolve(PackageIndex.PACKAGE_RESOURCE_TYPE);
+      Files.createDirectories(packagesDirectory);
+      for (int t = 1; t < typeCount; ++t) {
+        Files.createDirectories(indexDirectory.resolve(RESOURCE_TYPE_PREFIX + t));
+      }
+      for (int i = p * stride; i < p * stride + packagesPerPrefix; ++i) {
+        String packageName = SyntheticWorkspace.getPackageName(i);
+        Files.createFile(packagesDirectory.resolve(packageName));
+        for (int t = 1; t < typeCount; ++t) {
+          Files.writeString(
+              indexDirectory.resolve(Path.of(RESOURCE_TYPE_PREFIX + t, packageName)),
+              String.format(
+                "share/%1$s/resource_%2$d.xml%nshare/%1$s/resource_%2$d.yaml%n", packageName, t));
+        }
+      }
+      prefixPaths[p] = prefix.toString();
+    }
+    return prefixPaths;
+  }
+
+  /**
+   * @return The name of the package with the given number.
+   */
+  public static String getPackageName(int number) {
+    return String.format("pkg_%06d", number);
+  }
+
+  /**
+   * Generate a workspace unless it was already generated with the same parameters.
+   *
+   * Arguments: root directory, number of prefix paths, packages per prefix path, resource types.
+   * The value for AMENT_PREFIX_PATH is written to {@link #PREFIX_PATH_FILE_NAME} in the root.
+   */
+  public static void main(String[] args) throws IOException {
+    if (args.length != 4) {
+      System.err.println(
+          "usage: SyntheticWorkspace ROOT PREFIX_COUNT PACKAGES_PER_PREFIX TYPE_COUNT");
+      System.exit(1);
+    }
+    Path root = Path.of(args[0]);
+    String parameters = String.join(" ", args[1], args[2], args[3]);
+    Path parametersPath = root.resolve("parameters");
+    Path prefixPathPath = root.resolve(PREFIX_PATH_FILE_NAME);
+    if (prefixPathPath.toFile().isFile() && parametersPath.toFile().isFile()
+        && Files.readString(parametersPath).equals(parameters))
+    {
+      System.out.println("Reusing workspace in " + root);
+      return;
+    }
+    if (root.toFile().exists()) {
+      System.err.println("Refusing to overwrite " + root + ", remove it first");
+      System.exit(1);
+    }
+    String[] prefixPaths = SyntheticWorkspace.generate(
+        root, Integer.parseInt(args[1]), Integer.parseInt(args[2]), Integer.parseInt(args[3]));
+    Files.writeString(prefixPathPath, String.join(File.pathSeparator, prefixPaths));
+    Files.writeString(parametersPath, parameters);
+    System.out.println("Generated workspace in " + root);
+  }
+}
@@ -0,0 +1,525 @@
+/* Copyright 2020 Open Source Robotics Foundation, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ros2.ament_index_java;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.String;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.NotDirectoryException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.TreeSet;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * An ament resource index over a fixed list of prefix paths.
+ *
+ * Unlike the static methods of {@link ResourceIndex}, which read
+ * @{link ResourceIndex.AMENT_PREFIX_PATH_ENV_VAR} on every call, the prefix paths are validated
+ * and resolved once when the index is constructed. Every query reads the filesystem directly.
+ *
+ * Instances are thread safe and can be shared between threads. Several instances with different
+ * prefix paths can be used at the same time.
+ *
+ * For workloads with many lookups of resources that do not exist, an index answering lookups
+ * from memory for a limited time can be derived with {@link #withLookupCache(Duration, int)}.
+ */
+public final class AmentIndex {
+  private final String[] prefixPaths;
+
+  // The resource index directory of each prefix path
+  private final Path[] indexDirectories;
+
+  // Answers single lookups from memory if enabled, otherwise null
+  private final LookupCache lookupCache;
+
+  /**
+   * Construct an index over the given prefix paths.
+   *
+   * Prefix paths that are not directories are ignored, like in
+   * {@link ResourceIndex#getAmentIndexPaths()}.
+   *
+   * @param prefixPaths The prefix paths, in order of precedence.
+   */
+  public AmentIndex(List<Path> prefixPaths) {
+    List<String> validPrefixPaths = new ArrayList<String>(prefixPaths.size());
+    for (Path prefixPath : prefixPaths) {
+      if (prefixPath.toFile().isDirectory()) {
+        validPrefixPaths.add(prefixPath.toString());
+      }
+    }
+    this.prefixPaths = validPrefixPaths.toArray(new String[validPrefixPaths.size()]);
+    this.indexDirectories = new Path[this.prefixPaths.length];
+    for (int i = 0; i < this.prefixPaths.length; ++i) {
+      this.indexDirectories[i] = Path.of(
+          this.prefixPaths[i], ResourceIndex.RESOURCE_INDEX_SUBDIRECTORY);
+    }
+    this.lookupCache = null;
+  }
+
+  private AmentIndex(String[] prefixPaths, Path[] indexDirectories, LookupCache lookupCache) {
+    this.prefixPaths = prefixPaths;
+    this.indexDirectories = indexDirectories;
+    this.lookupCache = lookupCache;
+  }
+
+  /**
+   * Construct an index over the prefix paths in the environment.
+   *
+   * @return An index over the prefix paths of @{link ResourceIndex.AMENT_PREFIX_PATH_ENV_VAR}.
+   * @see ResourceIndex#getAmentIndexPaths()
+   */
+  public static AmentIndex fromEnvironment() throws AmentIndexException {
+    String[] prefixPaths = ResourceIndex.getAmentIndexPaths();
+    List<Path> paths = new ArrayList<Path>(prefixPaths.length);
+    for (String prefixPath : prefixPaths) {
+      paths.add(Path.of(prefixPath));
+    }
+    return new AmentIndex(paths);
+  }
+
+  /**
+   * @return The prefix paths of this index, in order of precedence.
+   */
+  public String[] getPrefixPaths() {
+    return this.prefixPaths.clone();
+  }
+
+  /**
+   * Derive an index over the same prefix paths that answers lookups from memory.
+   *
+   * The first lookup of a resource type in a prefix path lists the resource type directory and
+   * keeps the sorted names. Afterwards {@link #getResource(String, String)},
+   * {@link #getResources(String, Collection)} and {@link #hasResource(String, String)} skip
+   * prefix paths without the resource without accessing the filesystem.
+   * Resources that are not found in any prefix path are remembered as well, so repeated lookups
+   * of the same missing resource cost no filesystem access at all.
+   *
+   * Changes on the filesystem become visible once the cached names and misses expire, or after
+   * {@link #invalidateLookupCache()} is called.
+   *
+   * @param timeToLive How long cached names and misses are used.
+   * @param maxMisses The maximum number of missing resources to remember.
+   * @return A new index with its own cache.
+   */
+  public AmentIndex withLookupCache(Duration timeToLive, int maxMisses) {
+    if (timeToLive.isNegative()) {
+      throw new IllegalArgumentException("time to live must not be negative");
+    }
+    if (maxMisses < 0) {
+      throw new IllegalArgumentException("maximum number of misses must not be negative");
+    }
+    return new AmentIndex(
+        this.prefixPaths, this.indexDirectories,
+        new LookupCache(this.prefixPaths, this.indexDirectories, timeToLive.toNanos(), maxMisses));
+  }
+
+  /**
+   * Discard the names and misses cached by this index.
+   *
+   * Does nothing if this index has no lookup cache.
+   */
+  public void invalidateLookupCache() {
+    if (this.lookupCache != null) {
+      this.lookupCache.clear();
+    }
+  }
+
+  /**
+   * Crawl all prefix paths of this index into a snapshot.
+   *
+   * @param parallelism The number of threads to crawl with, 1 to crawl on the calling thread.
+   * @return A snapshot of this index.
+   */
+  public AmentIndexSnapshot createSnapshot(int parallelism) throws IOException {
+    return AmentIndexSnapshot.create(this.prefixPaths, parallelism);
+  }
+
+  /**
+   * Get the content of a resource.
+   *
+   * @param resourceType The type of the resource. Must not be empty.
+   * @param resourceName The name of the resource. Must not be empty.
+   * @return The resource or null if the resource is not found.
+   */
+  public Resource getResource(String resourceType, String resourceName)
+  throws AmentIndexException {
+    if (resourceType.isEmpty()) {
+      throw new AmentIndexException("resource type must not be empty");
+    }
+    if (resourceName.isEmpty()) {
+      throw new AmentIndexException("resource name must not be empty");
+    }
+
+    if (this.lookupCache != null) {
+      int prefixIndex = this.findCached(resourceType, resourceName);
+      if (prefixIndex < 0) {
+        return null;
+      }
+      return new Resource(resourceType, resourceName, this.prefixPaths[prefixIndex], true);
+    }
+
+    for (int i = 0; i < this.indexDirectories.length; ++i) {
+      File resourceFile = this.indexDirectories[i].resolve(resourceType).resolve(resourceName)
+          .toFile();
+      IndexMetrics.prefixProbed(this.prefixPaths[i]);
+      if (resourceFile.isFile()) {
+        return new Resource(resourceType, resourceName, this.prefixPaths[i], true);
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Get several resources of the same type.
+   *
+   * The prefix paths are probed one after another for the names that were not found yet, and
+   * probing stops as soon as all names are found.
+   *
+   * @param resourceType The type of the resources. Must not be empty.
+   * @param resourceNames The names of the resources. Must not be empty.
+   * @return A map from resource name to resource, in the order of the given names. Names of
+   *     resources that are not found are not included.
+   */
+  public Map<String, Resource> getResources(String resourceType, Collection<String> resourceNames)
+  throws AmentIndexException {
+    if (resourceType.isEmpty()) {
+      throw new AmentIndexException("resource type must not be empty");
+    }
+    Set<String> pendingNames = new LinkedHashSet<String>(resourceNames);
+    if (pendingNames.contains("")) {
+      throw new AmentIndexException("resource name must not be empty");
+    }
+
+    Map<String, Resource> found = new HashMap<String, Resource>();
+    if (this.lookupCache != null) {
+      for (String resourceName : pendingNames) {
+        int prefixIndex = this.findCached(resourceType, resourceName);
+        if (prefixIndex >= 0) {
+          found.put(
+              resourceName,
+              new Resource(resourceType, resourceName, this.prefixPaths[prefixIndex], true));
+        }
+      }
+      pendingNames.clear();
+    }
+    for (int i = 0; i < this.indexDirectories.length && !pendingNames.isEmpty(); ++i) {
+      Path typeDirectory = this.indexDirectories[i].resolve(resourceType);
+      // A single check skips all names for prefix paths without the resource type
+      IndexMetrics.prefixProbed(this.prefixPaths[i]);
+      if (!typeDirectory.toFile().isDirectory()) {
+        continue;
+      }
+      Iterator<String> iterator = pendingNames.iterator();
+      while (iterator.hasNext()) {
+        String resourceName = iterator.next();
+        IndexMetrics.prefixProbed(this.prefixPaths[i]);
+        if (typeDirectory.resolve(resourceName).toFile().isFile()) {
+          found.put(
+              resourceName, new Resource(resourceType, resourceName, this.prefixPaths[i], true));
+          iterator.remove();
+        }
+      }
+    }
+
+    Map<String, Resource> result = new LinkedHashMap<String, Resource>();
+    for (String resourceName : resourceNames) {
+      Resource resource = found.get(resourceName);
+      if (resource != null) {
+        result.put(resourceName, resource);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Get all resources for a given resource type.
+   *
+   * If the same resource exists in multiple prefix paths, only the resource from the first
+   * prefix path is returned.
+   *
+   * @param resourceType The type of resource. Must not be empty.
+   * @return An array of resources.
+   */
+  public Resource[] getResources(String resourceType) throws AmentIndexException {
+    try (Stream<Resource> resources = this.streamResources(resourceType)) {
+      return resources.toArray(Resource[]::new);
+    }
+  }
+
+  /**
+   * Stream all resources for a given resource type.
+   *
+   * Resources are read lazily, in the order of the prefix paths, while the stream is consumed.
+   * If the same resource exists in multiple prefix paths, only the resource from the first
+   * prefix path is returned.
+   * A stream that is not consumed completely keeps a directory open and should be closed, for
+   * example with a try-with-resources statement.
+   *
+   * @param resourceType The type of resource. Must not be empty.
+   * @return A sequential stream of resources.
+   * @throws UncheckedIOException If a resource type directory cannot be read while consuming the
+   *     stream.
+   */
+  public Stream<Resource> streamResources(String resourceType) throws AmentIndexException {
+    if (resourceType.isEmpty()) {
+      throw new AmentIndexException("resource type must not be empty");
+    }
+    ResourceIterator iterator = new ResourceIterator(resourceType);
+    return StreamSupport.stream(
+        Spliterators.spliteratorUnknownSize(
+          iterator, Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL),
+        false).onClose(iterator::close);
+  }
+
+  /**
+   * Iterates over the resource type directories of all prefix paths, one at a time.
+   */
+  private final class ResourceIterator implements Iterator<Resource> {
+    private final String resourceType;
+
+    // Used to detect duplicates
+    private final Set<String> resourceNames = new HashSet<String>();
+
+    private int prefixIndex = -1;
+
+    private DirectoryStream<Path> directoryStream;
+
+    private Iterator<Path> entries;
+
+    private Resource next;
+
+    private ResourceIterator(String resourceType) {
+      this.resourceType = resourceType;
+    }
+
+    @Override
+    public boolean hasNext() {
+      while (this.next == null) {
+        if (this.entries != null && this.entries.hasNext()) {
+          String resourceName = this.entries.next().getFileName().toString();
+          // Ignore files starting with a dot, and only return the first occurance
+          if (!resourceName.startsWith(".") && this.resourceNames.add(resourceName)) {
+            this.next = new Resource(
+                this.resourceType, resourceName, AmentIndex.this.prefixPaths[this.prefixIndex],
+                true);
+          }
+          continue;
+        }
+        this.close();
+        if (++this.prefixIndex >= AmentIndex.this.indexDirectories.length) {
+          return false;
+        }
+        Path typeDirectory =
+            AmentIndex.this.indexDirectories[this.prefixIndex].resolve(this.resourceType);
+        IndexMetrics.prefixProbed(AmentIndex.this.prefixPaths[this.prefixIndex]);
+        try {
+          this.directoryStream = Files.newDirectoryStream(typeDirectory);
+          this.entries = this.directoryStream.iterator();
+        } catch (NoSuchFileException | NotDirectoryException e) {
+          // Ignore if not a directory
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      }
+      return true;
+    }
+
+    @Override
+    public Resource next() {
+      if (!this.hasNext()) {
+        throw new NoSuchElementException();
+      }
+      Resource resource = this.next;
+      this.next = null;
+      return resource;
+    }
+
+    private void close() {
+      this.entries = null;
+      if (this.directoryStream != null) {
+        try {
+          this.directoryStream.close();
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        } finally {
+          this.directoryStream = null;
+        }
+      }
+    }
+  }
+
+  /**
+   * Get the names of all resources for a given resource type.
+   *
+   * @param resourceType The type of resource. Must not be empty.
+   * @return An array of resource names.
+   */
+  public String[] getResourceNames(String resourceType) throws AmentIndexException {
+    Resource[] resources = this.getResources(resourceType);
+    String[] resourceNames = new String[resources.length];
+    for (int i = 0; i < resources.length; ++i) {
+      resourceNames[i] = resources[i].getName();
+    }
+    return resourceNames;
+  }
+
+  /**
+   * Get the names of all resource types.
+   *
+   * @return The sorted names of the resource type directories in all prefix paths.
+   */
+  public String[] getResourceTypes() throws IOException {
+    Set<String> resourceTypes = new TreeSet<String>();
+    for (int i = 0; i < this.indexDirectories.length; ++i) {
+      Path indexDirectory = this.indexDirectories[i];
+      IndexMetrics.prefixProbed(this.prefixPaths[i]);
+      if (!indexDirectory.toFile().isDirectory()) {
+        continue;
+      }
+      try (DirectoryStream<Path> entries = Files.newDirectoryStream(
+          indexDirectory, entry -> Files.isDirectory(entry)))
+      {
+        for (Path entry : entries) {
+          String resourceType = entry.getFileName().toString();
+          // Ignore files starting with a dot
+          if (!resourceType.startsWith(".")) {
+            resourceTypes.add(resourceType);
+          }
+        }
+      }
+    }
+    return resourceTypes.toArray(new String[resourceTypes.size()]);
+  }
+
+  /**
+   * Get all resources of all resource types.
+   *
+   * The resource type directories of every prefix path are listed as by
+   * {@link #getResourceTypes()} and read as by {@link #streamResources(String)}, following
+   * symbolic links.
+   * If the same resource exists in multiple prefix paths, only the resource from the first
+   * prefix path is returned.
+   *
+   * @return An unmodifiable map from resource type to a map from resource name to resource.
+   */
+  public Map<String, Map<String, Resource>> getAllResources() throws IOException {
+    Map<String, Map<String, Resource>> resources =
+        new LinkedHashMap<String, Map<String, Resource>>();
+    for (int i = 0; i < this.indexDirectories.length; ++i) {
+      Path indexDirectory = this.indexDirectories[i];
+      IndexMetrics.prefixProbed(this.prefixPaths[i]);
+      if (!indexDirectory.toFile().isDirectory()) {
+        continue;
+      }
+      try (DirectoryStream<Path> typeDirectories = Files.newDirectoryStream(
+          indexDirectory, entry -> Files.isDirectory(entry)))
+      {
+        for (Path typeDirectory : typeDirectories) {
+          String resourceType = typeDirectory.getFileName().toString();
+          // Ignore files starting with a dot
+          if (resourceType.startsWith(".")) {
+            continue;
+          }
+          Map<String, Resource> resourcesOfType = resources.computeIfAbsent(
+              resourceType, key -> new LinkedHashMap<String, Resource>());
+          try (DirectoryStream<Path> entries = Files.newDirectoryStream(typeDirectory)) {
+            for (Path entry : entries) {
+              String resourceName = entry.getFileName().toString();
+              // Ignore files starting with a dot, and only keep the first occurance
+              if (!resourceName.startsWith(".")) {
+                resourcesOfType.putIfAbsent(
+                    resourceName,
+                    new Resource(resourceType, resourceName, this.prefixPaths[i], true));
+              }
+            }
+          }
+        }
+      }
+    }
+    for (Map.Entry<String, Map<String, Resource>> entry : resources.entrySet()) {
+      entry.setValue(Collections.unmodifiableMap(entry.getValue()));
+    }
+    return Collections.unmodifiableMap(resources);
+  }
+
+  /**
+   * Check if a resource exists.
+   *
+   * @param resourceType The type of the resource. Must not be empty.
+   * @param resourceName The name of the resource. Must not be empty.
+   * @return The prefix path of the resource if it is found, or null if the resource is not found.
+   */
+  public String hasResource(String resourceType, String resourceName)
+  throws AmentIndexException {
+    if (resourceType.isEmpty()) {
+      throw new AmentIndexException("resource type must not be empty");
+    }
+    if (resourceName.isEmpty()) {
+      throw new AmentIndexException("resource name must not be empty");
+    }
+
+    if (this.lookupCache != null) {
+      int prefixIndex = this.findCached(resourceType, resourceName);
+      return prefixIndex < 0 ? null : this.prefixPaths[prefixIndex];
+    }
+
+    for (int i = 0; i < this.indexDirectories.length; ++i) {
+      IndexMetrics.prefixProbed(this.prefixPaths[i]);
+      if (this.indexDirectories[i].resolve(resourceType).resolve(resourceName).toFile().exists()) {
+        return this.prefixPaths[i];
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Find a resource using the lookup cache.
+   *
+   * @return The index of the first prefix path containing the resource, or -1 if it is not found.
+   */
+  private int findCached(String resourceType, String resourceName) {
+    if (this.lookupCache.isMiss(resourceType, resourceName)) {
+      return -1;
+    }
+    for (int i = 0; i < this.prefixPaths.length; ++i) {
+      if (this.lookupCache.contains(i, resourceType, resourceName)) {
+        return i;
+      }
+    }
+    this.lookupCache.addMiss(resourceType, resourceName);
+    return -1;
+  }
+}
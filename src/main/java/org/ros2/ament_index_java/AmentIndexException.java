@@ -22,4 +22,8 @@ public class AmentIndexException extends Exception {
   public AmentIndexException(String message) {
     super(message);
   }
+
+  public AmentIndexException(String message, Throwable cause) {
+    super(message, cause);
+  }
 }
@@ -0,0 +1,532 @@
+/* Copyright 2020 Open Source Robotics Foundation, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ros2.ament_index_java;
+
+import java.io.IOException;
+import java.lang.String;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * An immutable, in-memory view of the ament resource index.
+ *
+ * All prefix paths are crawled once when the snapshot is created. Afterwards every lookup is
+ * answered from memory without touching the filesystem.
+ * If the same resource exists in multiple prefix paths, only the resource from the first prefix
+ * path is kept, matching the precedence of {@link ResourceIndex}.
+ *
+ * Changes made to the filesystem after the snapshot was created are not visible through it.
+ * Only the directories of the resource index are read when the snapshot is created; the content
+ * of a resource is read from its marker file when {@link Resource#getContent()} is first called.
+ */
+public final class AmentIndexSnapshot {
+  private final String[] prefixPaths;
+
+  private final boolean memoizeContent;
+
+  // Resource type -> resource name -> first occurance of the resource
+  private final Map<String, Map<String, Resource>> resources;
+
+  // Values computed from this snapshot, discarded together with it
+  private final ConcurrentMap<Object, Object> derivedValues =
+      new ConcurrentHashMap<Object, Object>();
+
+  private AmentIndexSnapshot(
+      String[] prefixPaths, boolean memoizeContent,
+      Map<String, Map<String, Resource>> resources)
+  {
+    this.prefixPaths = prefixPaths;
+    this.memoizeContent = memoizeContent;
+    this.resources = resources;
+  }
+
+  /**
+   * Create a snapshot of the prefix paths listed in the environment.
+   *
+   * @return A snapshot of the ament index.
+   * @see ResourceIndex#getAmentIndexPaths()
+   */
+  public static AmentIndexSnapshot create() throws AmentIndexException, IOException {
+    return AmentIndexSnapshot.create(ResourceIndex.getAmentIndexPaths());
+  }
+
+  /**
+   * Create a snapshot of the given prefix paths.
+   *
+   * @param prefixPaths The prefix paths to crawl, in order of precedence.
+   * @return A snapshot of the ament index.
+   */
+  public static AmentIndexSnapshot create(String[] prefixPaths) throws IOException {
+    return AmentIndexSnapshot.create(prefixPaths, 1);
+  }
+
+  /**
+   * Create a snapshot of the given prefix paths, crawling them in parallel.
+   *
+   * The precedence of the prefix paths is the same as for a sequential crawl.
+   *
+   * @param prefixPaths The prefix paths to crawl, in order of precedence.
+   * @param parallelism The number of threads to crawl with, 1 to crawl on the calling thread.
+   * @return A snapshot of the ament index.
+   */
+  public static AmentIndexSnapshot create(String[] prefixPaths, int parallelism)
+  throws IOException {
+    return AmentIndexSnapshot.create(prefixPaths, parallelism, true);
+  }
+
+  /**
+   * Create a snapshot of the given prefix paths.
+   *
+   * @param prefixPaths The prefix paths to crawl, in order of precedence.
+   * @param parallelism The number of threads to crawl with, 1 to crawl on the calling thread.
+   * @param memoizeContent If true, resources keep their content in memory once it was read,
+   *     otherwise the marker file is read on every call to {@link Resource#getContent()}.
+   * @return A snapshot of the ament index.
+   */
+  public static AmentIndexSnapshot create(
+      String[] prefixPaths, int parallelism, boolean memoizeContent)
+  throws IOException {
+    List<Map<String, Map<String, Resource>>> prefixResources =
+        new IndexCrawler(parallelism, memoizeContent).crawl(prefixPaths);
+    return AmentIndexSnapshot.merge(prefixPaths, memoizeContent, prefixResources);
+  }
+
+  /**
+   * Create a snapshot from the results of a crawl.
+   *
+   * @param prefixPaths The prefix paths that were crawled, in order of precedence.
+   * @param memoizeContent Whether the crawled resources keep their content.
+   * @param prefixResources The result of {@link IndexCrawler#crawl(String[])}.
+   * @return A snapshot of the ament index.
+   */
+  static AmentIndexSnapshot merge(
+      String[] prefixPaths, boolean memoizeContent,
+      List<Map<String, Map<String, Resource>>> prefixResources)
+  {
+    Map<String, Map<String, Resource>> resources = new HashMap<String, Map<String, Resource>>();
+    for (Map<String, Map<String, Resource>> resourcesOfPrefix : prefixResources) {
+      for (Map.Entry<String, Map<String, Resource>> entry : resourcesOfPrefix.entrySet()) {
+        Map<String, Resource> resourcesOfType = resources.computeIfAbsent(
+            entry.getKey(), key -> new LinkedHashMap<String, Resource>());
+        // Only keep the first occurance
+        for (Resource resource : entry.getValue().values()) {
+          resourcesOfType.putIfAbsent(resource.getName(), resource);
+        }
+      }
+    }
+    return new AmentIndexSnapshot(prefixPaths.clone(), memoizeContent, resources);
+  }
+
+  /**
+   * @return The prefix paths this snapshot was created from, in order of precedence.
+   */
+  public String[] getPrefixPaths() {
+    return this.prefixPaths.clone();
+  }
+
+  /**
+   * Get the content of a resource.
+   *
+   * @param resourceType The type of the resource. Must not be empty.
+   * @param resourceName The name of the resource. Must not be empty.
+   * @return The resource or null if the resource is not found.
+   */
+  public Resource getResource(String resourceType, String resourceName)
+  throws AmentIndexException {
+    if (resourceType.isEmpty()) {
+      throw new AmentIndexException("resource type must not be empty");
+    }
+    if (resourceName.isEmpty()) {
+      throw new AmentIndexException("resource name must not be empty");
+    }
+    return this.getResourcesOfType(resourceType).get(resourceName);
+  }
+
+  /**
+   * Get all resources for a given resource type.
+   *
+   * @param resourceType The type of resource. Must not be empty.
+   * @return An array of resources.
+   */
+  public Resource[] getResources(String resourceType) throws AmentIndexException {
+    if (resourceType.isEmpty()) {
+      throw new AmentIndexException("resource type must not be empty");
+    }
+    Map<String, Resource> resourcesOfType = this.getResourcesOfType(resourceType);
+    return resourcesOfType.values().toArray(new Resource[resourcesOfType.size()]);
+  }
+
+  /**
+   * Stream all resources for a given resource type.
+   *
+   * @param resourceType The type of resource. Must not be empty.
+   * @return A sequential stream of resources.
+   */
+  public Stream<Resource> streamResources(String resourceType) throws AmentIndexException {
+    if (resourceType.isEmpty()) {
+      throw new AmentIndexException("resource type must not be empty");
+    }
+    return this.getResourcesOfType(resourceType).values().stream();
+  }
+
+  /**
+   * Get several resources of the same type.
+   *
+   * @param resourceType The type of the resources. Must not be empty.
+   * @param resourceNames The names of the resources. Must not be empty.
+   * @return A map from resource name to resource, in the order of the given names. Names of
+   *     resources that are not found are not included.
+   */
+  public Map<String, Resource> getResources(String resourceType, Collection<String> resourceNames)
+  throws AmentIndexException {
+    if (resourceType.isEmpty()) {
+      throw new AmentIndexException("resource type must not be empty");
+    }
+    Map<String, Resource> resourcesOfType = this.getResourcesOfType(resourceType);
+    Map<String, Resource> result = new LinkedHashMap<String, Resource>();
+    for (String resourceName : resourceNames) {
+      if (resourceName.isEmpty()) {
+        throw new AmentIndexException("resource name must not be empty");
+      }
+      Resource resource = resourcesOfType.get(resourceName);
+      if (resource != null) {
+        result.put(resourceName, resource);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Get the names of all resources for a given resource type.
+   *
+   * @param resourceType The type of resource. Must not be empty.
+   * @return An array of resource names.
+   */
+  public String[] getResourceNames(String resourceType) throws AmentIndexException {
+    if (resourceType.isEmpty()) {
+      throw new AmentIndexException("resource type must not be empty");
+    }
+    Map<String, Resource> resourcesOfType = this.getResourcesOfType(resourceType);
+    return resourcesOfType.keySet().toArray(new String[resourcesOfType.size()]);
+  }
+
+  /**
+   * Get the resources of a type with names in a range.
+   *
+   * @param resourceType The type of resource. Must not be empty.
+   * @param fromName The lowest name, inclusive, or null for no lower bound.
+   * @param toName The highest name, exclusive, or null for no upper bound.
+   * @return The resources, sorted by name.
+   */
+  public Resource[] getResourcesInRange(String resourceType, String fromName, String toName)
+  throws AmentIndexException {
+    if (resourceType.isEmpty()) {
+      throw new AmentIndexException("resource type must not be empty");
+    }
+    return NameIndex.get(this, resourceType).getRange(fromName, toName);
+  }
+
+  /**
+   * Get the resources of a type with names starting with a prefix.
+   *
+   * @param resourceType The type of resource. Must not be empty.
+   * @param prefix The prefix of the names, for example "rclcpp_". Must not be null.
+   * @return The resources, sorted by name.
+   */
+  public Resource[] getResourcesWithPrefix(String resourceType, String prefix)
+  throws AmentIndexException {
+    if (resourceType.isEmpty()) {
+      throw new AmentIndexException("resource type must not be empty");
+    }
+    if (prefix == null) {
+      throw new AmentIndexException("name prefix must not be null");
+    }
+    return NameIndex.get(this, resourceType).getWithPrefix(prefix);
+  }
+
+  /**
+   * Get the resources of a type with names matching a glob pattern.
+   *
+   * In the pattern, '*' matches any sequence of characters and '?' matches a single character.
+   * Patterns with a literal prefix or suffix, like "rclcpp_*" or "*_msgs", are answered without
+   * looking at names that do not share it.
+   *
+   * @param resourceType The type of resource. Must not be empty.
+   * @param glob The pattern the whole name must match. Must not be null.
+   * @return The resources, sorted by name.
+   */
+  public Resource[] getResourcesMatching(String resourceType, String glob)
+  throws AmentIndexException {
+    if (resourceType.isEmpty()) {
+      throw new AmentIndexException("resource type must not be empty");
+    }
+    if (glob == null) {
+      throw new AmentIndexException("glob pattern must not be null");
+    }
+    return NameIndex.get(this, resourceType).getMatching(glob);
+  }
+
+  /**
+   * Get the names of all resource types.
+   *
+   * @return The sorted names of the resource type directories in all prefix paths.
+   */
+  public String[] getResourceTypes() {
+    String[] resourceTypes = this.resources.keySet().toArray(new String[this.resources.size()]);
+    Arrays.sort(resourceTypes);
+    return resourceTypes;
+  }
+
+  /**
+   * Get all resources of all resource types.
+   *
+   * @return An unmodifiable map from resource type to a map from resource name to resource.
+   */
+  public Map<String, Map<String, Resource>> getAllResources() {
+    Map<String, Map<String, Resource>> resources =
+        new LinkedHashMap<String, Map<String, Resource>>();
+    for (String resourceType : this.getResourceTypes()) {
+      resources.put(
+          resourceType, Collections.unmodifiableMap(this.resources.get(resourceType)));
+    }
+    return Collections.unmodifiableMap(resources);
+  }
+
+  /**
+   * Check if a resource exists.
+   *
+   * @param resourceType The type of the resource. Must not be empty.
+   * @param resourceName The name of the resource. Must not be empty.
+   * @return The prefix path of the resource if it is found, or null if the resource is not found.
+   */
+  public String hasResource(String resourceType, String resourceName)
+  throws AmentIndexException {
+    Resource resource = this.getResource(resourceType, resourceName);
+    if (resource == null) {
+      return null;
+    }
+    return resource.getPrefixPath();
+  }
+
+  String getPrefixPath(int prefixIndex) {
+    return this.prefixPaths[prefixIndex];
+  }
+
+  /**
+   * @return true if the resources of this snapshot keep their content once it was read.
+   */
+  boolean isMemoizeContent() {
+    return this.memoizeContent;
+  }
+
+  /**
+   * Get the position of a prefix path in the order of precedence.
+   *
+   * @param prefixPath The prefix path.
+   * @return The index of the first matching prefix path, or -1 if it is not part of the snapshot.
+   */
+  int getPrefixIndex(String prefixPath) {
+    for (int i = 0; i < this.prefixPaths.length; ++i) {
+      if (this.prefixPaths[i].equals(prefixPath)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Create a copy of this snapshot with a different resource for one name.
+   *
+   * Only the map of the affected resource type is copied, all other types are shared.
+   *
+   * @param resourceType The type of the resource.
+   * @param resourceName The name of the resource.
+   * @param resource The resource to make visible, or null to remove the name.
+   * @return The new snapshot, or this snapshot if the name is to be removed and does not exist.
+   */
+  AmentIndexSnapshot withResource(String resourceType, String resourceName, Resource resource) {
+    return this.withResources(
+        Collections.singletonMap(
+          resourceType, Collections.singletonMap(resourceName, resource)));
+  }
+
+  /**
+   * Create a copy of this snapshot with different resources for several names.
+   *
+   * The map of every affected resource type is copied once, all other types are shared.
+   *
+   * @param changes A map from resource type to a map from resource name to the resource to make
+   *     visible, or null to remove the name.
+   * @return The new snapshot, or this snapshot if nothing changes.
+   */
+  AmentIndexSnapshot withResources(Map<String, Map<String, Resource>> changes) {
+    Map<String, Map<String, Resource>> resources = null;
+    for (Map.Entry<String, Map<String, Resource>> typeChanges : changes.entrySet()) {
+      String resourceType = typeChanges.getKey();
+      Map<String, Resource> resourcesOfType = null;
+      for (Map.Entry<String, Resource> change : typeChanges.getValue().entrySet()) {
+        Map<String, Resource> current =
+            resourcesOfType == null ? this.getResourcesOfType(resourceType) : resourcesOfType;
+        if (change.getValue() == null && !current.containsKey(change.getKey())) {
+          continue;
+        }
+        if (resourcesOfType == null) {
+          resourcesOfType = new LinkedHashMap<String, Resource>(current);
+        }
+        if (change.getValue() == null) {
+          resourcesOfType.remove(change.getKey());
+        } else {
+          resourcesOfType.put(change.getKey(), change.getValue());
+        }
+      }
+      if (resourcesOfType == null) {
+        continue;
+      }
+      if (resources == null) {
+        resources = new HashMap<String, Map<String, Resource>>(this.resources);
+      }
+      if (resourcesOfType.isEmpty()) {
+        resources.remove(resourceType);
+      } else {
+        resources.put(resourceType, resourcesOfType);
+      }
+    }
+    if (resources == null) {
+      return this;
+    }
+    return new AmentIndexSnapshot(this.prefixPaths, this.memoizeContent, resources);
+  }
+
+  /**
+   * Create a copy of this snapshot with the changes between two other snapshots applied.
+   *
+   * Only resource types whose map differs between the two snapshots are compared, since
+   * {@link #withResources(Map)} shares all other types.
+   *
+   * @param from The snapshot before the changes.
+   * @param to The snapshot after the changes.
+   * @return The new snapshot, or this snapshot if there are no changes.
+   */
+  AmentIndexSnapshot withChanges(AmentIndexSnapshot from, AmentIndexSnapshot to) {
+    Set<String> resourceTypes = new HashSet<String>(from.resources.keySet());
+    resourceTypes.addAll(to.resources.keySet());
+    Map<String, Map<String, Resource>> changes = new HashMap<String, Map<String, Resource>>();
+    for (String resourceType : resourceTypes) {
+      Map<String, Resource> fromResources = from.getResourcesOfType(resourceType);
+      Map<String, Resource> toResources = to.getResourcesOfType(resourceType);
+      if (fromResources == toResources) {
+        continue;
+      }
+      Set<String> resourceNames = new HashSet<String>(fromResources.keySet());
+      resourceNames.addAll(toResources.keySet());
+      for (String resourceName : resourceNames) {
+        Resource resource = toResources.get(resourceName);
+        if (fromResources.get(resourceName) != resource) {
+          // Hash maps allow null for removed names
+          changes.computeIfAbsent(resourceType, key -> new HashMap<String, Resource>())
+              .put(resourceName, resource);
+        }
+      }
+    }
+    return this.withResources(changes);
+  }
+
+  /**
+   * Read several resources from the filesystem, ignoring this snapshot.
+   *
+   * @param resourceNames A map from resource type to the names of the resources.
+   * @return A map from resource type to a map from resource name to the resource found first in
+   *     the prefix paths, or null if there is none.
+   * @see #readResource(int, String, String)
+   */
+  Map<String, Map<String, Resource>>
+  readResources(Map<String, ? extends Collection<String>> resourceNames) {
+    Map<String, Map<String, Resource>> resources =
+        new HashMap<String, Map<String, Resource>>();
+    for (Map.Entry<String, ? extends Collection<String>> entry : resourceNames.entrySet()) {
+      Map<String, Resource> resourcesOfType = new HashMap<String, Resource>();
+      for (String resourceName : entry.getValue()) {
+        resourcesOfType.put(resourceName, this.readResource(0, entry.getKey(), resourceName));
+      }
+      resources.put(entry.getKey(), resourcesOfType);
+    }
+    return resources;
+  }
+
+  /**
+   * Find the marker of a resource on the filesystem, ignoring this snapshot.
+   *
+   * @param firstPrefixIndex The index of the first prefix path to probe.
+   * @param resourceType The type of the resource.
+   * @param resourceName The name of the resource.
+   * @return The resource from the first prefix path at or after firstPrefixIndex containing it,
+   *     or null if there is none.
+   */
+  Resource readResource(int firstPrefixIndex, String resourceType, String resourceName) {
+    for (int i = firstPrefixIndex; i < this.prefixPaths.length; ++i) {
+      Path resourcePath = Path.of(
+          this.prefixPaths[i], ResourceIndex.RESOURCE_INDEX_SUBDIRECTORY,
+          resourceType, resourceName);
+      IndexMetrics.prefixProbed(this.prefixPaths[i]);
+      if (resourcePath.toFile().isFile()) {
+        return new Resource(resourceType, resourceName, this.prefixPaths[i], this.memoizeContent);
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Get a value computed from this snapshot, computing it on first use.
+   *
+   * Since snapshots are immutable, the value is valid for as long as the snapshot is used.
+   *
+   * @param key Identifies the value.
+   * @param compute Computes the value from this snapshot.
+   * @return The value.
+   */
+  @SuppressWarnings("unchecked")
+  <T> T getDerivedValue(Object key, Function<AmentIndexSnapshot, T> compute) {
+    Object value = this.derivedValues.get(key);
+    if (value == null) {
+      value = compute.apply(this);
+      Object previous = this.derivedValues.putIfAbsent(key, value);
+      if (previous != null) {
+        value = previous;
+      }
+    }
+    return (T) value;
+  }
+
+  Map<String, Resource> getResourcesOfType(String resourceType) {
+    Map<String, Resource> resourcesOfType = this.resources.get(resourceType);
+    if (resourcesOfType == null) {
+      return Collections.emptyMap();
+    }
+    return resourcesOfType;
+  }
+}
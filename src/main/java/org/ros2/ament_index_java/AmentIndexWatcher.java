@@ -0,0 +1,426 @@
+/* Copyright 2020 Open Source Robotics Foundation, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ros2.ament_index_java;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.String;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps a snapshot of the ament index up to date while the filesystem changes.
+ *
+ * The watcher watches the resource index directory of every prefix path, and every resource
+ * type directory within it, with a {@link WatchService}.
+ * When a marker file changes, only the affected resource is read again and a new snapshot is
+ * published; all other resource types are shared with the previous snapshot.
+ * If events are lost, the prefix paths are crawled again and the differences are reported.
+ *
+ * Prefix paths without a resource index directory at the time the watcher is created are not
+ * watched.
+ */
+public class AmentIndexWatcher implements Closeable {
+  private static final Logger logger = LoggerFactory.getLogger(AmentIndexWatcher.class);
+
+  private final WatchService watchService;
+
+  private final Map<WatchKey, WatchedDirectory> watchedDirectories =
+      new ConcurrentHashMap<WatchKey, WatchedDirectory>();
+
+  private final List<ResourceIndexListener> listeners =
+      new CopyOnWriteArrayList<ResourceIndexListener>();
+
+  private final Thread thread;
+
+  private volatile AmentIndexSnapshot snapshot;
+
+  private final SnapshotFactory snapshotFactory;
+
+  private volatile boolean closed;
+
+  private static final class WatchedDirectory {
+    private final int prefixIndex;
+
+    // null for the resource index directory itself
+    private final String resourceType;
+
+    private WatchedDirectory(int prefixIndex, String resourceType) {
+      this.prefixIndex = prefixIndex;
+      this.resourceType = resourceType;
+    }
+  }
+
+  /**
+   * Creates the snapshots of a rescan.
+   */
+  @FunctionalInterface
+  public interface SnapshotFactory {
+    /**
+     * @param prefixPaths The prefix paths to crawl, in order of precedence.
+     * @return A snapshot of the prefix paths.
+     */
+    AmentIndexSnapshot create(String[] prefixPaths) throws IOException;
+  }
+
+  /**
+   * Start watching the prefix paths of a snapshot.
+   *
+   * Rescans crawl sequentially and keep the content memoization of the snapshot.
+   *
+   * @param snapshot The snapshot to start from. Its prefix paths are watched.
+   */
+  public AmentIndexWatcher(AmentIndexSnapshot snapshot) throws IOException {
+    this(snapshot, prefixPaths -> AmentIndexSnapshot.create(
+        prefixPaths, 1, snapshot.isMemoizeContent()));
+  }
+
+  /**
+   * Start watching the prefix paths of a snapshot.
+   *
+   * @param snapshot The snapshot to start from. Its prefix paths are watched.
+   * @param snapshotFactory Creates the snapshots of a rescan, with the same settings as the
+   *     initial snapshot.
+   */
+  public AmentIndexWatcher(AmentIndexSnapshot snapshot, SnapshotFactory snapshotFactory)
+  throws IOException {
+    this.snapshot = snapshot;
+    this.snapshotFactory = snapshotFactory;
+    this.watchService = FileSystems.getDefault().newWatchService();
+    String[] prefixPaths = snapshot.getPrefixPaths();
+    for (int i = 0; i < prefixPaths.length; ++i) {
+      this.watchIndexDirectory(i);
+    }
+    this.thread = new Thread(this::run, "ament-index-watcher");
+    this.thread.setDaemon(true);
+    this.thread.start();
+  }
+
+  /**
+   * @return The most recent snapshot of the ament index.
+   */
+  public AmentIndexSnapshot getSnapshot() {
+    return this.snapshot;
+  }
+
+  /**
+   * Add a listener to be notified about changes.
+   *
+   * @param listener The listener to add.
+   */
+  public void addListener(ResourceIndexListener listener) {
+    this.listeners.add(listener);
+  }
+
+  /**
+   * Remove a previously added listener.
+   *
+   * @param listener The listener to remove.
+   */
+  public void removeListener(ResourceIndexListener listener) {
+    this.listeners.remove(listener);
+  }
+
+  /**
+   * Stop watching the filesystem.
+   *
+   * The last snapshot stays available, but is no longer updated.
+   */
+  @Override
+  public void close() throws IOException {
+    this.closed = true;
+    this.watchService.close();
+  }
+
+  /**
+   * Update a single resource without waiting for the filesystem notification.
+   *
+   * @param prefixPath The prefix path the marker file of the resource was changed in.
+   * @param resourceType The type of the resource.
+   * @param resourceName The name of the resource.
+   */
+  public void update(String prefixPath, String resourceType, String resourceName)
+  throws IOException {
+    int prefixIndex = this.snapshot.getPrefixIndex(prefixPath);
+    // Changes outside of the prefix paths are not visible
+    if (prefixIndex >= 0) {
+      this.update(prefixIndex, resourceType, resourceName, true);
+    }
+  }
+
+  /**
+   * Crawl all prefix paths again and report the differences to the listeners.
+   */
+  public synchronized void rescan() throws IOException {
+    AmentIndexSnapshot previous = this.snapshot;
+    String[] prefixPaths = previous.getPrefixPaths();
+    for (int i = 0; i < prefixPaths.length; ++i) {
+      this.watchIndexDirectory(i);
+    }
+    AmentIndexSnapshot current = this.snapshotFactory.create(prefixPaths);
+    this.snapshot = current;
+
+    Set<String> resourceTypes = new HashSet<String>(Arrays.asList(previous.getResourceTypes()));
+    resourceTypes.addAll(Arrays.asList(current.getResourceTypes()));
+    for (String resourceType : resourceTypes) {
+      Map<String, Resource> previousResources = previous.getResourcesOfType(resourceType);
+      Map<String, Resource> currentResources = current.getResourcesOfType(resourceType);
+      for (Resource resource : previousResources.values()) {
+        if (!currentResources.containsKey(resource.getName())) {
+          this.notifyRemoved(resource);
+        }
+      }
+      for (Resource resource : currentResources.values()) {
+        Resource previousResource = previousResources.get(resource.getName());
+        if (previousResource == null) {
+          this.notifyAdded(resource);
+        } else if (!previousResource.getPrefixPath().equals(resource.getPrefixPath())) {
+          if (current.getPrefixIndex(resource.getPrefixPath())
+              < current.getPrefixIndex(previousResource.getPrefixPath()))
+          {
+            this.notifyShadowed(previousResource, resource);
+          } else {
+            this.notifyReplaced(previousResource, resource);
+          }
+        } else if (previousResource.isContentLoaded()
+            && AmentIndexWatcher.isContentChanged(previousResource, resource))
+        {
+          // Changes are only detected if the content of the previous resource was read before
+          this.notifyReplaced(previousResource, resource);
+        }
+      }
+    }
+  }
+
+  private static boolean isContentChanged(Resource previous, Resource current) {
+    try {
+      return !previous.getContent().equals(current.getContent());
+    } catch (UncheckedIOException e) {
+      // The marker was removed after the crawl, its event reports the removal
+      return true;
+    }
+  }
+
+  private void run() {
+    // Set when a rescan failed, it is tried again after the next event
+    boolean rescanPending = false;
+    while (!this.closed) {
+      WatchKey key;
+      try {
+        key = this.watchService.take();
+      } catch (InterruptedException | ClosedWatchServiceException e) {
+        return;
+      }
+      WatchedDirectory directory = this.watchedDirectories.get(key);
+      boolean rescanRequired = rescanPending || directory == null;
+      for (WatchEvent<?> event : key.pollEvents()) {
+        if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+          rescanRequired = true;
+          continue;
+        }
+        if (rescanRequired) {
+          continue;
+        }
+        String fileName = ((Path) event.context()).toString();
+        // Ignore files starting with a dot
+        if (fileName.startsWith(".")) {
+          continue;
+        }
+        try {
+          if (directory.resourceType == null) {
+            if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE) {
+              this.addResourceType(directory.prefixIndex, fileName);
+            }
+          } else {
+            this.update(
+                directory.prefixIndex, directory.resourceType, fileName,
+                event.kind() == StandardWatchEventKinds.ENTRY_CREATE);
+          }
+        } catch (IOException | RuntimeException e) {
+          // Markers may disappear while they are read, a rescan brings the snapshot up to date
+          logger.warn("Failed to update resource '{}': {}", fileName, e.toString());
+          rescanRequired = true;
+        }
+      }
+      if (!key.reset()) {
+        // The directory was removed
+        this.watchedDirectories.remove(key);
+        rescanRequired = true;
+      }
+      if (rescanRequired && !this.closed) {
+        try {
+          this.rescan();
+          rescanPending = false;
+        } catch (IOException | RuntimeException e) {
+          logger.warn("Failed to rescan the resource index: {}", e.toString());
+          rescanPending = true;
+        }
+      }
+    }
+  }
+
+  private void watchIndexDirectory(int prefixIndex) throws IOException {
+    Path indexDirectoryPath = Path.of(
+        this.snapshot.getPrefixPath(prefixIndex), ResourceIndex.RESOURCE_INDEX_SUBDIRECTORY);
+    File[] typeDirectoryFiles = indexDirectoryPath.toFile().listFiles();
+    if (typeDirectoryFiles == null) {
+      return;
+    }
+    WatchKey key = indexDirectoryPath.register(
+        this.watchService, StandardWatchEventKinds.ENTRY_CREATE);
+    this.watchedDirectories.put(key, new WatchedDirectory(prefixIndex, null));
+    for (File typeDirectoryFile : typeDirectoryFiles) {
+      this.watchTypeDirectory(prefixIndex, typeDirectoryFile.getName());
+    }
+  }
+
+  private boolean watchTypeDirectory(int prefixIndex, String resourceType) throws IOException {
+    Path typeDirectoryPath = Path.of(
+        this.snapshot.getPrefixPath(prefixIndex), ResourceIndex.RESOURCE_INDEX_SUBDIRECTORY,
+        resourceType);
+    if (resourceType.startsWith(".") || !typeDirectoryPath.toFile().isDirectory()) {
+      return false;
+    }
+    WatchKey key = typeDirectoryPath.register(
+        this.watchService,
+        StandardWatchEventKinds.ENTRY_CREATE,
+        StandardWatchEventKinds.ENTRY_DELETE,
+        StandardWatchEventKinds.ENTRY_MODIFY);
+    this.watchedDirectories.put(key, new WatchedDirectory(prefixIndex, resourceType));
+    return true;
+  }
+
+  private void addResourceType(int prefixIndex, String resourceType) throws IOException {
+    if (!this.watchTypeDirectory(prefixIndex, resourceType)) {
+      return;
+    }
+    // Markers may have been created before the directory was watched
+    File typeDirectoryFile = Path.of(
+        this.snapshot.getPrefixPath(prefixIndex), ResourceIndex.RESOURCE_INDEX_SUBDIRECTORY,
+        resourceType).toFile();
+    File[] resourceFiles = typeDirectoryFile.listFiles();
+    if (resourceFiles == null) {
+      return;
+    }
+    for (File resourceFile : resourceFiles) {
+      if (!resourceFile.getName().startsWith(".")) {
+        this.update(prefixIndex, resourceType, resourceFile.getName(), true);
+      }
+    }
+  }
+
+  /**
+   * Bring a single resource up to date after its marker in one prefix path changed.
+   *
+   * The current state of the marker is read from the filesystem, so stale or repeated events are
+   * harmless.
+   */
+  private synchronized void update(
+      int prefixIndex, String resourceType, String resourceName, boolean created)
+  {
+    AmentIndexSnapshot current = this.snapshot;
+    Resource previous = current.getResourcesOfType(resourceType).get(resourceName);
+    int previousIndex = previous == null ? -1 : current.getPrefixIndex(previous.getPrefixPath());
+    Resource changed = current.readResource(prefixIndex, resourceType, resourceName);
+    if (changed != null && !changed.getPrefixPath().equals(current.getPrefixPath(prefixIndex))) {
+      // The marker in this prefix path does not exist (anymore), only a later one was found
+      if (previousIndex != prefixIndex) {
+        return;
+      }
+      // The visible resource was removed, reveal the one from the later prefix path
+      this.snapshot = current.withResource(resourceType, resourceName, changed);
+      this.notifyReplaced(previous, changed);
+      return;
+    }
+
+    if (changed == null) {
+      if (previousIndex == prefixIndex) {
+        this.snapshot = current.withResource(resourceType, resourceName, null);
+        this.notifyRemoved(previous);
+      }
+    } else if (previous == null) {
+      this.snapshot = current.withResource(resourceType, resourceName, changed);
+      this.notifyAdded(changed);
+    } else if (previousIndex > prefixIndex) {
+      this.snapshot = current.withResource(resourceType, resourceName, changed);
+      this.notifyShadowed(previous, changed);
+    } else if (previousIndex == prefixIndex) {
+      // The content of the previous resource may not have been read before the change
+      this.snapshot = current.withResource(resourceType, resourceName, changed);
+      this.notifyReplaced(previous, changed);
+    } else if (created) {
+      // Installed behind the visible resource
+      this.notifyShadowed(changed, previous);
+    }
+  }
+
+  private void notifyAdded(Resource resource) {
+    for (ResourceIndexListener listener : this.listeners) {
+      try {
+        listener.resourceAdded(resource);
+      } catch (RuntimeException e) {
+        logger.warn("Resource index listener failed", e);
+      }
+    }
+  }
+
+  private void notifyRemoved(Resource resource) {
+    for (ResourceIndexListener listener : this.listeners) {
+      try {
+        listener.resourceRemoved(resource);
+      } catch (RuntimeException e) {
+        logger.warn("Resource index listener failed", e);
+      }
+    }
+  }
+
+  private void notifyShadowed(Resource shadowed, Resource visible) {
+    for (ResourceIndexListener listener : this.listeners) {
+      try {
+        listener.resourceShadowed(shadowed, visible);
+      } catch (RuntimeException e) {
+        logger.warn("Resource index listener failed", e);
+      }
+    }
+  }
+
+  private void notifyReplaced(Resource previous, Resource current) {
+    for (ResourceIndexListener listener : this.listeners) {
+      try {
+        listener.resourceReplaced(previous, current);
+      } catch (RuntimeException e) {
+        logger.warn("Resource index listener failed", e);
+      }
+    }
+  }
+}
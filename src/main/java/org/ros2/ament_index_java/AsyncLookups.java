@@ -0,0 +1,128 @@
+/* Copyright 2020 Open Source Robotics Foundation, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ros2.ament_index_java;
+
+import java.lang.String;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs lookups off the calling thread, merging identical lookups that are in flight.
+ *
+ * While a lookup is running, callers asking for the same lookup receive its result instead of
+ * starting another one, so a burst of identical requests touches the filesystem only once.
+ */
+final class AsyncLookups {
+  /**
+   * Maximum number of threads of the default executor.
+   */
+  static final int DEFAULT_THREADS = 4;
+
+  /**
+   * Maximum number of lookups waiting for a thread of the default executor.
+   */
+  static final int DEFAULT_QUEUE_CAPACITY = 1024;
+
+  private static volatile Executor executor;
+
+  private static Executor defaultExecutor;
+
+  // Lookup key -> future of the running lookup
+  private static final ConcurrentMap<List<Object>, CompletableFuture<Object>> inFlight =
+      new ConcurrentHashMap<List<Object>, CompletableFuture<Object>>();
+
+  private AsyncLookups() {}
+
+  /**
+   * @param executor The executor to run lookups on, or null to use the default executor.
+   */
+  static void setExecutor(Executor executor) {
+    AsyncLookups.executor = executor;
+  }
+
+  /**
+   * Get the executor used when none was set.
+   *
+   * The default executor runs at most {@link #DEFAULT_THREADS} daemon threads, which are stopped
+   * when they are idle. Once {@link #DEFAULT_QUEUE_CAPACITY} lookups are waiting, further lookups
+   * are rejected, see {@link #submit(List, Callable)}. They never run on the calling thread, which
+   * may be an event loop that must not block on the filesystem.
+   */
+  static synchronized Executor getDefaultExecutor() {
+    if (AsyncLookups.defaultExecutor == null) {
+      AtomicInteger threadCount = new AtomicInteger();
+      ThreadPoolExecutor pool = new ThreadPoolExecutor(
+          DEFAULT_THREADS, DEFAULT_THREADS, 30, TimeUnit.SECONDS,
+          new LinkedBlockingQueue<Runnable>(DEFAULT_QUEUE_CAPACITY), runnable -> {
+            Thread thread = new Thread(
+                runnable, "ament-index-io-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+          }, new ThreadPoolExecutor.AbortPolicy());
+      pool.allowCoreThreadTimeOut(true);
+      AsyncLookups.defaultExecutor = pool;
+    }
+    return AsyncLookups.defaultExecutor;
+  }
+
+  /**
+   * Run a lookup, or join the identical lookup that is already running.
+   *
+   * @param key Identifies the lookup, usually the name of the operation and its arguments.
+   * @param lookup The lookup.
+   * @return A future completed with the result of the lookup, or exceptionally with the exception
+   *     it threw. If the executor is saturated, the future is completed exceptionally with a
+   *     {@link RejectedExecutionException} right away, and callers may retry later.
+   */
+  @SuppressWarnings("unchecked")
+  static <T> CompletableFuture<T> submit(List<Object> key, Callable<T> lookup) {
+    CompletableFuture<Object> future = new CompletableFuture<Object>();
+    CompletableFuture<Object> running = AsyncLookups.inFlight.putIfAbsent(key, future);
+    if (running != null) {
+      // Callers get their own future, so that completing it does not affect other callers
+      return (CompletableFuture<T>) running.copy();
+    }
+
+    Executor executor = AsyncLookups.executor;
+    if (executor == null) {
+      executor = AsyncLookups.getDefaultExecutor();
+    }
+    try {
+      executor.execute(() -> {
+        try {
+          future.complete(lookup.call());
+        } catch (Throwable e) {
+          future.completeExceptionally(e);
+        } finally {
+          AsyncLookups.inFlight.remove(key, future);
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      AsyncLookups.inFlight.remove(key, future);
+      future.completeExceptionally(e);
+    }
+    return (CompletableFuture<T>) future.copy();
+  }
+}
@@ -0,0 +1,340 @@
+/* Copyright 2020 Open Source Robotics Foundation, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ros2.ament_index_java;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.String;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A memory efficient, immutable view of the ament resource index.
+ *
+ * Like {@link AmentIndexSnapshot}, all prefix paths are crawled once and lookups are answered
+ * from memory, but no object is kept per resource:
+ * prefix paths are stored once in a table and referenced by their position, and the names of
+ * each resource type are packed into a single sorted string with an array of offsets.
+ * {@link Resource} instances are created on demand as lightweight views.
+ *
+ * The content of resources is read from the marker files on access, unless the index is created
+ * with preloaded content, in which case all content is stored off-heap in a single buffer.
+ *
+ * This is a separate type rather than a storage option of {@link AmentIndexSnapshot}, because
+ * snapshots are updated in place of a crawl: {@link ConcurrentAmentIndex}, the cached snapshot of
+ * {@link ResourceIndex} and {@link AmentIndexWatcher} derive the next snapshot by copying a
+ * single resource type map. The packed tables of this index would have to be rebuilt for every
+ * such change. Use it for large workspaces that are crawled once and only read afterwards.
+ */
+public final class CompactIndex {
+  private final String[] prefixPaths;
+
+  // Sorted resource types, the position is the id of the type
+  private final String[] resourceTypes;
+
+  // Per type id
+  private final TypeTable[] typeTables;
+
+  private final int resourceCount;
+
+  private static final class TypeTable {
+    // Concatenation of the sorted resource names
+    private final String packedNames;
+
+    // Start of each name in packedNames, followed by the end of the last name
+    private final int[] nameOffsets;
+
+    // Id of the prefix path providing each name
+    private final short[] prefixIds;
+
+    // UTF-8 content of all resources, or null if content is read from the marker files
+    private final ByteBuffer content;
+
+    // Start of each content in the buffer, followed by the end of the last content
+    private final int[] contentOffsets;
+
+    private TypeTable(
+        String packedNames, int[] nameOffsets, short[] prefixIds, ByteBuffer content,
+        int[] contentOffsets)
+    {
+      this.packedNames = packedNames;
+      this.nameOffsets = nameOffsets;
+      this.prefixIds = prefixIds;
+      this.content = content;
+      this.contentOffsets = contentOffsets;
+    }
+
+    private int size() {
+      return this.prefixIds.length;
+    }
+
+    private String getName(int index) {
+      return this.packedNames.substring(this.nameOffsets[index], this.nameOffsets[index + 1]);
+    }
+
+    /**
+     * @return The position of the name, or a negative value if it is not found.
+     */
+    private int find(String resourceName) {
+      int low = 0;
+      int high = this.size() - 1;
+      while (low <= high) {
+        int middle = (low + high) >>> 1;
+        int comparison = this.compare(middle, resourceName);
+        if (comparison < 0) {
+          low = middle + 1;
+        } else if (comparison > 0) {
+          high = middle - 1;
+        } else {
+          return middle;
+        }
+      }
+      return -1;
+    }
+
+    /**
+     * Compare a packed name with a string, like {@link String#compareTo(String)}.
+     */
+    private int compare(int index, String resourceName) {
+      int start = this.nameOffsets[index];
+      int length = this.nameOffsets[index + 1] - start;
+      int common = Math.min(length, resourceName.length());
+      for (int i = 0; i < common; ++i) {
+        int difference = this.packedNames.charAt(start + i) - resourceName.charAt(i);
+        if (difference != 0) {
+          return difference;
+        }
+      }
+      return length - resourceName.length();
+    }
+  }
+
+  private CompactIndex(
+      String[] prefixPaths, String[] resourceTypes, TypeTable[] typeTables, int resourceCount)
+  {
+    this.prefixPaths = prefixPaths;
+    this.resourceTypes = resourceTypes;
+    this.typeTables = typeTables;
+    this.resourceCount = resourceCount;
+  }
+
+  /**
+   * Create a compact index of the prefix paths listed in the environment.
+   *
+   * @return A compact index reading content from the marker files on access.
+   * @see ResourceIndex#getAmentIndexPaths()
+   */
+  public static CompactIndex create() throws AmentIndexException, IOException {
+    return CompactIndex.create(ResourceIndex.getAmentIndexPaths(), 1, false);
+  }
+
+  /**
+   * Create a compact index of the given prefix paths.
+   *
+   * @param prefixPaths The prefix paths to crawl, in order of precedence. At most 32767.
+   * @param parallelism The number of threads to crawl with, 1 to crawl on the calling thread.
+   * @param preloadContent If true, the content of all resources is read while creating the
+   *     index and stored off-heap, otherwise it is read from the marker file on every access.
+   * @return A compact index.
+   */
+  public static CompactIndex create(String[] prefixPaths, int parallelism, boolean preloadContent)
+  throws IOException {
+    if (prefixPaths.length > Short.MAX_VALUE) {
+      throw new IllegalArgumentException("too many prefix paths");
+    }
+    List<Map<String, Map<String, Resource>>> prefixResources =
+        new IndexCrawler(parallelism, false).crawl(prefixPaths);
+
+    // Resource type -> sorted resource name -> first occurance of the resource
+    Map<String, Map<String, Resource>> resources = new TreeMap<String, Map<String, Resource>>();
+    Map<String, Short> prefixIds = new HashMap<String, Short>();
+    for (int i = 0; i < prefixPaths.length; ++i) {
+      prefixIds.putIfAbsent(prefixPaths[i], (short) i);
+      for (Map.Entry<String, Map<String, Resource>> entry :
+          prefixResources.get(i).entrySet())
+      {
+        Map<String, Resource> resourcesOfType = resources.computeIfAbsent(
+            entry.getKey(), key -> new TreeMap<String, Resource>());
+        for (Resource resource : entry.getValue().values()) {
+          resourcesOfType.putIfAbsent(resource.getName(), resource);
+        }
+      }
+    }
+
+    String[] resourceTypes = resources.keySet().toArray(new String[resources.size()]);
+    TypeTable[] typeTables = new TypeTable[resourceTypes.length];
+    int resourceCount = 0;
+    for (int typeId = 0; typeId < resourceTypes.length; ++typeId) {
+      Map<String, Resource> resourcesOfType = resources.get(resourceTypes[typeId]);
+      int size = resourcesOfType.size();
+      StringBuilder packedNames = new StringBuilder();
+      int[] nameOffsets = new int[size + 1];
+      short[] typePrefixIds = new short[size];
+      ByteArrayOutputStream content = preloadContent ? new ByteArrayOutputStream() : null;
+      int[] contentOffsets = preloadContent ? new int[size + 1] : null;
+      int index = 0;
+      for (Resource resource : resourcesOfType.values()) {
+        nameOffsets[index] = packedNames.length();
+        packedNames.append(resource.getName());
+        typePrefixIds[index] = prefixIds.get(resource.getPrefixPath());
+        if (preloadContent) {
+          contentOffsets[index] = content.size();
+          content.writeBytes(resource.getContent().getBytes(StandardCharsets.UTF_8));
+        }
+        ++index;
+      }
+      nameOffsets[size] = packedNames.length();
+      ByteBuffer contentBuffer = null;
+      if (preloadContent) {
+        contentOffsets[size] = content.size();
+        contentBuffer = ByteBuffer.allocateDirect(content.size());
+        contentBuffer.put(content.toByteArray()).flip();
+      }
+      typeTables[typeId] = new TypeTable(
+          packedNames.toString(), nameOffsets, typePrefixIds, contentBuffer, contentOffsets);
+      resourceCount += size;
+    }
+    return new CompactIndex(prefixPaths.clone(), resourceTypes, typeTables, resourceCount);
+  }
+
+  /**
+   * @return The prefix paths this index was created from, in order of precedence.
+   */
+  public String[] getPrefixPaths() {
+    return this.prefixPaths.clone();
+  }
+
+  /**
+   * @return The number of resources in this index, counting each name once per resource type.
+   */
+  public int size() {
+    return this.resourceCount;
+  }
+
+  /**
+   * Get a resource.
+   *
+   * @param resourceType The type of the resource. Must not be empty.
+   * @param resourceName The name of the resource. Must not be empty.
+   * @return A view of the resource or null if the resource is not found.
+   */
+  public Resource getResource(String resourceType, String resourceName)
+  throws AmentIndexException {
+    if (resourceType.isEmpty()) {
+      throw new AmentIndexException("resource type must not be empty");
+    }
+    if (resourceName.isEmpty()) {
+      throw new AmentIndexException("resource name must not be empty");
+    }
+    int typeId = Arrays.binarySearch(this.resourceTypes, resourceType);
+    if (typeId < 0) {
+      return null;
+    }
+    int index = this.typeTables[typeId].find(resourceName);
+    if (index < 0) {
+      return null;
+    }
+    return this.createResource(typeId, index, resourceName);
+  }
+
+  /**
+   * Get all resources for a given resource type.
+   *
+   * @param resourceType The type of resource. Must not be empty.
+   * @return An array of views of the resources, sorted by name.
+   */
+  public Resource[] getResources(String resourceType) throws AmentIndexException {
+    if (resourceType.isEmpty()) {
+      throw new AmentIndexException("resource type must not be empty");
+    }
+    int typeId = Arrays.binarySearch(this.resourceTypes, resourceType);
+    if (typeId < 0) {
+      return new Resource[0];
+    }
+    TypeTable typeTable = this.typeTables[typeId];
+    Resource[] resources = new Resource[typeTable.size()];
+    for (int i = 0; i < resources.length; ++i) {
+      resources[i] = this.createResource(typeId, i, typeTable.getName(i));
+    }
+    return resources;
+  }
+
+  /**
+   * Get the names of all resources for a given resource type.
+   *
+   * @param resourceType The type of resource. Must not be empty.
+   * @return A sorted array of resource names.
+   */
+  public String[] getResourceNames(String resourceType) throws AmentIndexException {
+    if (resourceType.isEmpty()) {
+      throw new AmentIndexException("resource type must not be empty");
+    }
+    int typeId = Arrays.binarySearch(this.resourceTypes, resourceType);
+    if (typeId < 0) {
+      return new String[0];
+    }
+    TypeTable typeTable = this.typeTables[typeId];
+    String[] resourceNames = new String[typeTable.size()];
+    for (int i = 0; i < resourceNames.length; ++i) {
+      resourceNames[i] = typeTable.getName(i);
+    }
+    return resourceNames;
+  }
+
+  /**
+   * Get the names of all resource types.
+   *
+   * @return The sorted names of the resource type directories in all prefix paths.
+   */
+  public String[] getResourceTypes() {
+    return this.resourceTypes.clone();
+  }
+
+  /**
+   * Check if a resource exists.
+   *
+   * @param resourceType The type of the resource. Must not be empty.
+   * @param resourceName The name of the resource. Must not be empty.
+   * @return The prefix path of the resource if it is found, or null if the resource is not found.
+   */
+  public String hasResource(String resourceType, String resourceName)
+  throws AmentIndexException {
+    Resource resource = this.getResource(resourceType, resourceName);
+    if (resource == null) {
+      return null;
+    }
+    return resource.getPrefixPath();
+  }
+
+  private Resource createResource(int typeId, int index, String resourceName) {
+    TypeTable typeTable = this.typeTables[typeId];
+    String prefixPath = this.prefixPaths[typeTable.prefixIds[index]];
+    if (typeTable.content == null) {
+      // Views are short lived, the content is not kept
+      return new Resource(this.resourceTypes[typeId], resourceName, prefixPath, false);
+    }
+    ByteBuffer content = typeTable.content.duplicate();
+    content.position(typeTable.contentOffsets[index]);
+    content.limit(typeTable.contentOffsets[index + 1]);
+    return new Resource(
+        this.resourceTypes[typeId], resourceName, prefixPath, content.slice(), false);
+  }
+}
@@ -0,0 +1,249 @@
+/* Copyright 2020 Open Source Robotics Foundation, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ros2.ament_index_java;
+
+import java.io.IOException;
+import java.lang.String;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * An ament index that can be read and modified concurrently.
+ *
+ * The index publishes immutable {@link AmentIndexSnapshot}s through an atomic reference.
+ * Readers never lock, and every lookup on a snapshot obtained with {@link #getSnapshot()} sees
+ * the index as it was at one point in time.
+ * Modifications build the next snapshot from the current one, sharing all resource types they
+ * do not touch, and swap it in atomically. A modification is visible to every snapshot obtained
+ * after the modifying method returned.
+ *
+ * Changes made to the prefix paths by other processes become visible after calling
+ * {@link #refresh(String, String)}, for example from a {@link ResourceIndexListener} of an
+ * {@link AmentIndexWatcher}, or {@link #rescan()}.
+ */
+public final class ConcurrentAmentIndex {
+  private final AtomicReference<AmentIndexSnapshot> snapshot;
+
+  private final int parallelism;
+
+  private final ResourceLocks locks = new ResourceLocks();
+
+  /**
+   * Create an index starting from an existing snapshot.
+   *
+   * @param snapshot The initial snapshot. Its prefix paths are used for all modifications.
+   */
+  public ConcurrentAmentIndex(AmentIndexSnapshot snapshot) {
+    this(snapshot, 1);
+  }
+
+  private ConcurrentAmentIndex(AmentIndexSnapshot snapshot, int parallelism) {
+    this.snapshot = new AtomicReference<AmentIndexSnapshot>(snapshot);
+    this.parallelism = parallelism;
+  }
+
+  /**
+   * Create an index of the given prefix paths.
+   *
+   * @param prefixPaths The prefix paths, in order of precedence.
+   * @return The index.
+   */
+  public static ConcurrentAmentIndex create(String[] prefixPaths) throws IOException {
+    return ConcurrentAmentIndex.create(prefixPaths, 1);
+  }
+
+  /**
+   * Create an index of the given prefix paths, crawling them in parallel.
+   *
+   * @param prefixPaths The prefix paths, in order of precedence.
+   * @param parallelism The number of threads used to crawl, also when rescanning.
+   * @return The index.
+   */
+  public static ConcurrentAmentIndex create(String[] prefixPaths, int parallelism)
+  throws IOException {
+    return new ConcurrentAmentIndex(
+        AmentIndexSnapshot.create(prefixPaths, parallelism), parallelism);
+  }
+
+  /**
+   * Get the current snapshot of the index.
+   *
+   * @return The most recently published snapshot.
+   */
+  public AmentIndexSnapshot getSnapshot() {
+    return this.snapshot.get();
+  }
+
+  /**
+   * Get a resource from the current snapshot.
+   *
+   * @see AmentIndexSnapshot#getResource(String, String)
+   */
+  public Resource getResource(String resourceType, String resourceName)
+  throws AmentIndexException {
+    return this.snapshot.get().getResource(resourceType, resourceName);
+  }
+
+  /**
+   * Get all resources of a type from the current snapshot.
+   *
+   * @see AmentIndexSnapshot#getResources(String)
+   */
+  public Resource[] getResources(String resourceType) throws AmentIndexException {
+    return this.snapshot.get().getResources(resourceType);
+  }
+
+  /**
+   * Check for a resource in the current snapshot.
+   *
+   * @see AmentIndexSnapshot#hasResource(String, String)
+   */
+  public String hasResource(String resourceType, String resourceName)
+  throws AmentIndexException {
+    return this.snapshot.get().hasResource(resourceType, resourceName);
+  }
+
+  /**
+   * Register a resource in one of the prefix paths of the index.
+   *
+   * The marker file is written as by {@link ResourceIndex#registerResource(String, String,
+   * String, String)}, then a snapshot containing the resource is published.
+   *
+   * @param resourceType The type of the resource. Must not be empty.
+   * @param resourceName The name of the resource. Must not be empty.
+   * @param prefixPath The prefix path to register the resource in. Must be a prefix path of the
+   *     index.
+   * @param content The content to write to the resource marker file.
+   * @return true if the resource was registered, false if the marker file already exists.
+   */
+  public boolean
+  registerResource(String resourceType, String resourceName, String prefixPath, String content)
+  throws AmentIndexException, IOException {
+    if (resourceType.isEmpty()) {
+      throw new AmentIndexException("resource type must not be empty");
+    }
+    if (resourceName.isEmpty()) {
+      throw new AmentIndexException("resource name must not be empty");
+    }
+    if (this.snapshot.get().getPrefixIndex(prefixPath) < 0) {
+      throw new AmentIndexException(
+          "prefix path '" + prefixPath + "' is not part of the index");
+    }
+
+    Path typeDirectory = Path.of(
+        prefixPath, ResourceIndex.RESOURCE_INDEX_SUBDIRECTORY, resourceType);
+    Files.createDirectories(typeDirectory);
+    if (!MarkerWriter.write(typeDirectory, resourceName, content, false)) {
+      return false;
+    }
+
+    if (IndexManifest.exists(prefixPath)) {
+      IndexManifest.update(prefixPath);
+    }
+
+    this.refresh(resourceType, resourceName);
+    return true;
+  }
+
+  /**
+   * Remove a resource from one of the prefix paths of the index.
+   *
+   * The marker file is deleted as by {@link ResourceIndex#unregisterResource(String, String,
+   * String)}, then a snapshot without the resource, or with the resource from a later prefix path,
+   * is published.
+   *
+   * @param resourceType The type of the resource. Must not be empty.
+   * @param resourceName The name of the resource. Must not be empty.
+   * @param prefixPath The prefix path to remove the resource from. Must be a prefix path of the
+   *     index.
+   * @return true if the resource was removed, false if it does not exist in the prefix path.
+   */
+  public boolean unregisterResource(String resourceType, String resourceName, String prefixPath)
+  throws AmentIndexException, IOException {
+    if (resourceType.isEmpty()) {
+      throw new AmentIndexException("resource type must not be empty");
+    }
+    if (resourceName.isEmpty()) {
+      throw new AmentIndexException("resource name must not be empty");
+    }
+    if (this.snapshot.get().getPrefixIndex(prefixPath) < 0) {
+      throw new AmentIndexException(
+          "prefix path '" + prefixPath + "' is not part of the index");
+    }
+
+    Path typeDirectory = Path.of(
+        prefixPath, ResourceIndex.RESOURCE_INDEX_SUBDIRECTORY, resourceType);
+    if (!MarkerWriter.delete(typeDirectory, resourceName, false)) {
+      return false;
+    }
+
+    if (IndexManifest.exists(prefixPath)) {
+      IndexManifest.update(prefixPath);
+    }
+
+    this.refresh(resourceType, resourceName);
+    return true;
+  }
+
+  /**
+   * Read a resource again from the filesystem and publish the result.
+   *
+   * Call this after a marker file of the resource was created or removed outside of this index.
+   *
+   * @param resourceType The type of the resource.
+   * @param resourceName The name of the resource.
+   */
+  public void refresh(String resourceType, String resourceName) {
+    Map<String, Set<String>> resourceNames =
+        Collections.singletonMap(resourceType, Collections.singleton(resourceName));
+    // Reading and publishing under the lock keeps concurrent refreshes of the resource in order
+    int[] locked = this.locks.lock(resourceNames);
+    try {
+      Map<String, Map<String, Resource>> read =
+          this.snapshot.get().readResources(resourceNames);
+      while (true) {
+        AmentIndexSnapshot current = this.snapshot.get();
+        AmentIndexSnapshot next = current.withResources(read);
+        if (next == current || this.snapshot.compareAndSet(current, next)) {
+          return;
+        }
+      }
+    } finally {
+      this.locks.unlock(locked);
+    }
+  }
+
+  /**
+   * Crawl the prefix paths again and publish the result.
+   *
+   * The prefix paths are crawled once. Modifications published while crawling are applied to the
+   * result of the crawl again, since the crawl may have missed them.
+   */
+  public void rescan() throws IOException {
+    AmentIndexSnapshot start = this.snapshot.get();
+    AmentIndexSnapshot crawled =
+        AmentIndexSnapshot.create(start.getPrefixPaths(), this.parallelism);
+    while (!this.snapshot.compareAndSet(start, crawled)) {
+      AmentIndexSnapshot latest = this.snapshot.get();
+      crawled = crawled.withChanges(start, latest);
+      start = latest;
+    }
+  }
+}
@@ -0,0 +1,112 @@
+/* Copyright 2020 Open Source Robotics Foundation, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ros2.ament_index_java;
+
+import java.lang.String;
+
+/**
+ * A read-only view of a range of a string, which does not copy the characters.
+ *
+ * Slices are equal to other slices with the same characters, and have the same hash code as the
+ * string with the same characters. Use {@link #toString()} to compare with strings.
+ */
+final class ContentSlice implements CharSequence {
+  private final String string;
+  private final int start;
+  private final int end;
+
+  ContentSlice(String string, int start, int end) {
+    this.string = string;
+    this.start = start;
+    this.end = end;
+  }
+
+  /**
+   * @return A slice without leading and trailing whitespace.
+   */
+  ContentSlice trim() {
+    int start = this.start;
+    int end = this.end;
+    while (start < end && Character.isWhitespace(this.string.charAt(start))) {
+      ++start;
+    }
+    while (end > start && Character.isWhitespace(this.string.charAt(end - 1))) {
+      --end;
+    }
+    return new ContentSlice(this.string, start, end);
+  }
+
+  /**
+   * @return The index of the first occurance of a character in this slice, or -1 if there is none.
+   */
+  int indexOf(char c) {
+    for (int i = this.start; i < this.end; ++i) {
+      if (this.string.charAt(i) == c) {
+        return i - this.start;
+      }
+    }
+    return -1;
+  }
+
+  @Override
+  public int length() {
+    return this.end - this.start;
+  }
+
+  @Override
+  public char charAt(int index) {
+    if (index < 0 || index >= this.length()) {
+      throw new IndexOutOfBoundsException("index " + index + " out of bounds");
+    }
+    return this.string.charAt(this.start + index);
+  }
+
+  @Override
+  public CharSequence subSequence(int start, int end) {
+    if (start < 0 || end > this.length() || start > end) {
+      throw new IndexOutOfBoundsException(
+          "range [" + start + ", " + end + ") out of bounds");
+    }
+    return new ContentSlice(this.string, this.start + start, this.start + end);
+  }
+
+  @Override
+  public String toString() {
+    return this.string.substring(this.start, this.end);
+  }
+
+  @Override
+  public boolean equals(Object other) {
+    if (this == other) {
+      return true;
+    }
+    if (!(other instanceof ContentSlice)) {
+      return false;
+    }
+    ContentSlice slice = (ContentSlice) other;
+    return this.length() == slice.length()
+        && this.string.regionMatches(this.start, slice.string, slice.start, this.length());
+  }
+
+  @Override
+  public int hashCode() {
+    int hash = 0;
+    for (int i = this.start; i < this.end; ++i) {
+      hash = 31 * hash + this.string.charAt(i);
+    }
+    return hash;
+  }
+}
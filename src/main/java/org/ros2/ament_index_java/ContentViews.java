@@ -0,0 +1,154 @@
+/* Copyright 2020 Open Source Robotics Foundation, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ros2.ament_index_java;
+
+import java.lang.String;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The parsed forms of the content of a resource.
+ *
+ * Every form is parsed when it is first requested and kept afterwards. Parsed values are
+ * {@link ContentSlice}s of the content, so parsing does not copy any characters.
+ */
+final class ContentViews {
+  private final String content;
+
+  private volatile List<CharSequence> lines;
+
+  // Delimiter -> fields
+  private final ConcurrentMap<Character, List<CharSequence>> fields =
+      new ConcurrentHashMap<Character, List<CharSequence>>();
+
+  // Separator -> key/value pairs
+  private final ConcurrentMap<Character, Map<String, CharSequence>> keyValues =
+      new ConcurrentHashMap<Character, Map<String, CharSequence>>();
+
+  // Delimiter -> paths
+  private final ConcurrentMap<Character, List<Path>> paths =
+      new ConcurrentHashMap<Character, List<Path>>();
+
+  ContentViews(String content) {
+    this.content = content;
+  }
+
+  String getContent() {
+    return this.content;
+  }
+
+  /**
+   * @return The lines of the content, split like {@link String#lines()}.
+   */
+  List<CharSequence> getLines() {
+    List<CharSequence> lines = this.lines;
+    if (lines == null) {
+      lines = Collections.unmodifiableList(this.split('\n', false));
+      this.lines = lines;
+    }
+    return lines;
+  }
+
+  /**
+   * @return The non-empty fields of the content, separated by the delimiter or line breaks.
+   */
+  List<CharSequence> getFields(char delimiter) {
+    return this.fields.computeIfAbsent(
+        delimiter, key -> Collections.unmodifiableList(this.split(delimiter, true)));
+  }
+
+  /**
+   * @return The key/value pairs of the lines containing the separator, in order of their keys'
+   *     first occurance. Keys and values are trimmed, later lines replace the value of a key.
+   */
+  Map<String, CharSequence> getKeyValues(char separator) {
+    return this.keyValues.computeIfAbsent(separator, key -> {
+      Map<String, CharSequence> keyValues = new LinkedHashMap<String, CharSequence>();
+      for (CharSequence line : this.getLines()) {
+        ContentSlice slice = (ContentSlice) line;
+        int index = slice.indexOf(separator);
+        if (index < 0) {
+          continue;
+        }
+        ContentSlice value = (ContentSlice) slice.subSequence(index + 1, slice.length());
+        keyValues.put(slice.subSequence(0, index).toString().trim(), value.trim());
+      }
+      return Collections.unmodifiableMap(keyValues);
+    });
+  }
+
+  /**
+   * @return The fields of the content as paths.
+   */
+  List<Path> getPaths(char delimiter) {
+    return this.paths.computeIfAbsent(delimiter, key -> {
+      List<CharSequence> fields = this.getFields(delimiter);
+      List<Path> paths = new ArrayList<Path>(fields.size());
+      for (CharSequence field : fields) {
+        paths.add(Path.of(field.toString()));
+      }
+      return Collections.unmodifiableList(paths);
+    });
+  }
+
+  /**
+   * Split the content at line breaks, and at the delimiter.
+   *
+   * @param delimiter A delimiter in addition to line breaks.
+   * @param fields If true, fields are trimmed and empty fields are omitted. Otherwise only a
+   *     trailing empty line is omitted.
+   */
+  private List<CharSequence> split(char delimiter, boolean fields) {
+    List<CharSequence> parts = new ArrayList<CharSequence>();
+    int length = this.content.length();
+    int start = 0;
+    int i = 0;
+    while (i < length) {
+      char c = this.content.charAt(i);
+      if (c != delimiter && c != '\n' && c != '\r') {
+        ++i;
+        continue;
+      }
+      this.addPart(parts, start, i, fields);
+      // Treat \r\n as a single line break
+      if (c == '\r' && i + 1 < length && this.content.charAt(i + 1) == '\n') {
+        ++i;
+      }
+      start = ++i;
+    }
+    if (start < length) {
+      this.addPart(parts, start, length, fields);
+    }
+    return parts;
+  }
+
+  private void addPart(List<CharSequence> parts, int start, int end, boolean fields) {
+    if (!fields) {
+      parts.add(new ContentSlice(this.content, start, end));
+      return;
+    }
+    ContentSlice field = new ContentSlice(this.content, start, end).trim();
+    if (field.length() > 0) {
+      parts.add(field);
+    }
+  }
+}
@@ -0,0 +1,278 @@
+/* Copyright 2020 Open Source Robotics Foundation, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ros2.ament_index_java;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.lang.String;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A client of an {@link IndexDaemon}.
+ *
+ * A client holds a single connection and must not be used by multiple threads at once.
+ * Requests can be sent one at a time, or in batches with {@link #query(List)}, which costs a
+ * single round trip to the daemon.
+ *
+ * Running this class as a program sends the requests given as arguments, or read from standard
+ * input if there are none, and prints the responses:
+ * <pre>
+ * java org.ros2.ament_index_java.IndexClient SOCKET prefix rclcpp
+ * </pre>
+ * Tools without a JVM can connect to the socket and speak the protocol directly, for example
+ * {@code printf 'prefix\trclcpp\n' | nc -U SOCKET}.
+ */
+public final class IndexClient implements Closeable {
+  // Batches up to this size fit into the socket buffers, larger ones are written by a thread
+  private static final int MAX_INLINE_WRITE_BYTES = 8192;
+
+  private final SocketChannel channel;
+
+  private final BufferedReader reader;
+
+  private IndexClient(SocketChannel channel) {
+    this.channel = channel;
+    // Not Channels.newInputStream(), which blocks writes to the channel while waiting for input
+    this.reader = new BufferedReader(new InputStreamReader(new InputStream() {
+      @Override
+      public int read() throws IOException {
+        byte[] b = new byte[1];
+        return this.read(b, 0, 1) < 0 ? -1 : b[0] & 0xff;
+      }
+
+      @Override
+      public int read(byte[] b, int off, int len) throws IOException {
+        return channel.read(ByteBuffer.wrap(b, off, len));
+      }
+    }, StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Connect to a daemon.
+   *
+   * @param socketPath The socket path the daemon is listening at.
+   * @return The connected client.
+   */
+  public static IndexClient connect(Path socketPath) throws IOException {
+    return new IndexClient(IndexSockets.connect(socketPath));
+  }
+
+  /**
+   * Get the install prefix of a package.
+   *
+   * @param packageName The name of the package. Must not be empty.
+   * @return The install prefix, or null if the package is not found.
+   * @see PackageIndex#getPackagePrefix(String)
+   */
+  public String getPackagePrefix(String packageName) throws AmentIndexException, IOException {
+    return IndexClient.optional(this.query("prefix", packageName));
+  }
+
+  /**
+   * Get the share directory of a package.
+   *
+   * @param packageName The name of the package. Must not be empty.
+   * @return The share directory, or null if the package is not found.
+   * @see PackageIndex#getPackageShareDirectory(String)
+   */
+  public String getPackageShareDirectory(String packageName)
+  throws AmentIndexException, IOException {
+    return IndexClient.optional(this.query("share", packageName));
+  }
+
+  /**
+   * Check if a resource exists.
+   *
+   * @param resourceType The type of the resource. Must not be empty.
+   * @param resourceName The name of the resource. Must not be empty.
+   * @return The prefix path of the resource, or null if the resource is not found.
+   * @see ResourceIndex#hasResource(String, String)
+   */
+  public String hasResource(String resourceType, String resourceName)
+  throws AmentIndexException, IOException {
+    return IndexClient.optional(this.query("has", resourceType, resourceName));
+  }
+
+  /**
+   * Get a resource.
+   *
+   * @param resourceType The type of the resource. Must not be empty.
+   * @param resourceName The name of the resource. Must not be empty.
+   * @return The resource with its content, or null if the resource is not found.
+   * @see ResourceIndex#getResource(String, String)
+   */
+  public Resource getResource(String resourceType, String resourceName)
+  throws AmentIndexException, IOException {
+    String[] response = IndexClient.check(this.query("get", resourceType, resourceName));
+    if (response.length == 1) {
+      return null;
+    }
+    return new Resource(resourceType, resourceName, response[1], response[2]);
+  }
+
+  /**
+   * Get the prefix paths of all resources of a type.
+   *
+   * @param resourceType The type of the resources. Must not be empty.
+   * @return A map from resource name to prefix path.
+   * @see ResourceIndex#getResources(String)
+   */
+  public Map<String, String> getResources(String resourceType)
+  throws AmentIndexException, IOException {
+    String[] response = IndexClient.check(this.query("resources", resourceType));
+    Map<String, String> resources = new LinkedHashMap<String, String>();
+    for (int i = 1; i + 1 < response.length; i += 2) {
+      resources.put(response[i], response[i + 1]);
+    }
+    return resources;
+  }
+
+  /**
+   * Send a single request.
+   *
+   * @param request The fields of the request, see {@link IndexDaemon}.
+   * @return The fields of the response.
+   */
+  public String[] query(String... request) throws IOException {
+    return this.query(Collections.singletonList(request)).get(0);
+  }
+
+  /**
+   * Send several requests at once and wait for all responses.
+   *
+   * Responses are read while the requests are written, so batches of any size complete.
+   *
+   * @param requests The fields of every request, see {@link IndexDaemon}.
+   * @return The fields of every response, in the order of the requests.
+   */
+  public List<String[]> query(List<String[]> requests) throws IOException {
+    StringBuilder lines = new StringBuilder();
+    for (String[] request : requests) {
+      lines.append(IndexProtocol.encode(request)).append('\n');
+    }
+    ByteBuffer buffer = StandardCharsets.UTF_8.encode(CharBuffer.wrap(lines));
+
+    // The daemon stops reading requests while its responses are not read
+    Thread writer = null;
+    AtomicReference<IOException> writeFailure = new AtomicReference<IOException>();
+    if (buffer.remaining() <= MAX_INLINE_WRITE_BYTES) {
+      this.write(buffer);
+    } else {
+      writer = new Thread(() -> {
+        try {
+          this.write(buffer);
+        } catch (IOException e) {
+          writeFailure.set(e);
+        }
+      }, "ament-index-client-writer");
+      writer.setDaemon(true);
+      writer.start();
+    }
+
+    try {
+      List<String[]> responses = new ArrayList<String[]>(requests.size());
+      for (int i = 0; i < requests.size(); ++i) {
+        String line = this.reader.readLine();
+        if (line == null) {
+          IOException cause = writeFailure.get();
+          throw new IOException("the daemon closed the connection", cause);
+        }
+        responses.add(IndexProtocol.decode(line));
+      }
+      return responses;
+    } finally {
+      if (writer != null) {
+        try {
+          writer.join();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    }
+  }
+
+  private void write(ByteBuffer buffer) throws IOException {
+    while (buffer.hasRemaining()) {
+      this.channel.write(buffer);
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    this.channel.close();
+  }
+
+  /**
+   * Send requests to a daemon and print the responses.
+   *
+   * The first argument is the socket path. The remaining arguments form a single request; without
+   * them, every line of standard input is a request. Exits with status 1 if a response is not OK.
+   */
+  public static void main(String[] args) throws IOException {
+    if (args.length < 1) {
+      System.err.println("usage: IndexClient SOCKET [COMMAND [ARGUMENT...]]");
+      System.exit(2);
+    }
+    List<String[]> requests = new ArrayList<String[]>();
+    if (args.length > 1) {
+      requests.add(Arrays.copyOfRange(args, 1, args.length));
+    } else {
+      BufferedReader input = new BufferedReader(
+          new InputStreamReader(System.in, StandardCharsets.UTF_8));
+      String line;
+      while ((line = input.readLine()) != null) {
+        if (!line.isEmpty()) {
+          requests.add(IndexProtocol.decode(line));
+        }
+      }
+    }
+
+    boolean ok = true;
+    try (IndexClient client = IndexClient.connect(Path.of(args[0]))) {
+      for (String[] response : client.query(requests)) {
+        System.out.println(IndexProtocol.encode(response));
+        ok &= response[0].equals(IndexProtocol.OK);
+      }
+    }
+    System.exit(ok ? 0 : 1);
+  }
+
+  private static String optional(String[] response) throws AmentIndexException {
+    IndexClient.check(response);
+    return response.length == 1 ? null : response[1];
+  }
+
+  private static String[] check(String[] response) throws AmentIndexException {
+    if (response[0].equals(IndexProtocol.ERROR)) {
+      throw new AmentIndexException(response.length > 1 ? response[1] : "request failed");
+    }
+    return response;
+  }
+}
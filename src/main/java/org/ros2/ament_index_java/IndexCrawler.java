@@ -0,0 +1,234 @@
+/* Copyright 2020 Open Source Robotics Foundation, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ros2.ament_index_java;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.String;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Reads the resource index of prefix paths from the filesystem.
+ *
+ * With a parallelism greater than one, the resource index directories of all prefix paths are
+ * listed at the same time, and all resource type directories are read at the same time.
+ * This helps on filesystems where each access has a high latency, like network mounts.
+ * The results are always returned in the order of the prefix paths.
+ *
+ * Only directories are listed; the content of the resources is read when it is first accessed.
+ */
+final class IndexCrawler {
+  private final int parallelism;
+
+  private final boolean memoizeContent;
+
+  /**
+   * @param parallelism The number of threads to crawl with, 1 to crawl on the calling thread.
+   * @param memoizeContent Whether resources keep their content after it was read.
+   */
+  IndexCrawler(int parallelism, boolean memoizeContent) {
+    if (parallelism < 1) {
+      throw new IllegalArgumentException("parallelism must be at least 1");
+    }
+    this.parallelism = parallelism;
+    this.memoizeContent = memoizeContent;
+  }
+
+  /**
+   * The manifest of a prefix path if it is up to date, otherwise its resource types.
+   */
+  private static final class PrefixListing {
+    private final Map<String, Map<String, Resource>> manifest;
+    private final String[] resourceTypes;
+
+    private PrefixListing(Map<String, Map<String, Resource>> manifest, String[] resourceTypes) {
+      this.manifest = manifest;
+      this.resourceTypes = resourceTypes;
+    }
+  }
+
+  /**
+   * Crawl the resource index of every prefix path.
+   *
+   * Prefix paths with an up to date {@link IndexManifest} are read from the manifest instead.
+   *
+   * @param prefixPaths The prefix paths to crawl.
+   * @return For each prefix path, in the same order, a map from resource type to the resources
+   *     of that type in the prefix path.
+   */
+  List<Map<String, Map<String, Resource>>> crawl(String[] prefixPaths) throws IOException {
+    if (this.parallelism == 1) {
+      List<Map<String, Map<String, Resource>>> prefixResources =
+          new ArrayList<Map<String, Map<String, Resource>>>(prefixPaths.length);
+      for (String prefixPath : prefixPaths) {
+        PrefixListing listing = this.listPrefix(prefixPath);
+        if (listing.manifest != null) {
+          prefixResources.add(listing.manifest);
+          continue;
+        }
+        Map<String, Map<String, Resource>> resources =
+            new LinkedHashMap<String, Map<String, Resource>>();
+        for (String resourceType : listing.resourceTypes) {
+          Map<String, Resource> resourcesOfType =
+              this.crawlResourceType(prefixPath, resourceType);
+          if (resourcesOfType != null) {
+            resources.put(resourceType, resourcesOfType);
+          }
+        }
+        prefixResources.add(resources);
+      }
+      return prefixResources;
+    }
+
+    ForkJoinPool pool = new ForkJoinPool(this.parallelism);
+    try {
+      List<Future<PrefixListing>> prefixListings =
+          new ArrayList<Future<PrefixListing>>(prefixPaths.length);
+      for (String prefixPath : prefixPaths) {
+        prefixListings.add(pool.submit(() -> {
+          try {
+            return this.listPrefix(prefixPath);
+          } catch (IOException e) {
+            throw new UncheckedIOException(e);
+          }
+        }));
+      }
+
+      List<PrefixListing> listings = new ArrayList<PrefixListing>(prefixPaths.length);
+      List<List<Future<Map<String, Resource>>>> typeCrawls =
+          new ArrayList<List<Future<Map<String, Resource>>>>(prefixPaths.length);
+      for (int i = 0; i < prefixPaths.length; ++i) {
+        String prefixPath = prefixPaths[i];
+        PrefixListing listing = IndexCrawler.await(prefixListings.get(i));
+        List<Future<Map<String, Resource>>> crawls =
+            new ArrayList<Future<Map<String, Resource>>>();
+        if (listing.manifest == null) {
+          for (String resourceType : listing.resourceTypes) {
+            crawls.add(pool.submit(() -> this.crawlResourceType(prefixPath, resourceType)));
+          }
+        }
+        listings.add(listing);
+        typeCrawls.add(crawls);
+      }
+
+      // Merge in the order of the prefix paths
+      List<Map<String, Map<String, Resource>>> prefixResources =
+          new ArrayList<Map<String, Map<String, Resource>>>(prefixPaths.length);
+      for (int i = 0; i < prefixPaths.length; ++i) {
+        PrefixListing listing = listings.get(i);
+        if (listing.manifest != null) {
+          prefixResources.add(listing.manifest);
+          continue;
+        }
+        Map<String, Map<String, Resource>> resources =
+            new LinkedHashMap<String, Map<String, Resource>>();
+        for (int j = 0; j < listing.resourceTypes.length; ++j) {
+          Map<String, Resource> resourcesOfType = IndexCrawler.await(typeCrawls.get(i).get(j));
+          if (resourcesOfType != null) {
+            resources.put(listing.resourceTypes[j], resourcesOfType);
+          }
+        }
+        prefixResources.add(resources);
+      }
+      return prefixResources;
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  private PrefixListing listPrefix(String prefixPath) throws IOException {
+    Map<String, Map<String, Resource>> manifest =
+        IndexManifest.read(prefixPath, this.memoizeContent);
+    if (manifest != null) {
+      return new PrefixListing(manifest, null);
+    }
+    return new PrefixListing(null, IndexCrawler.listResourceTypes(prefixPath));
+  }
+
+  /**
+   * @return The names of the entries in the resource index directory of a prefix path, or an
+   *     empty array if there is no resource index.
+   */
+  static String[] listResourceTypes(String prefixPath) {
+    File indexDirectoryFile = Path.of(
+        prefixPath, ResourceIndex.RESOURCE_INDEX_SUBDIRECTORY).toFile();
+    IndexMetrics.prefixProbed(prefixPath);
+    String[] fileNames = indexDirectoryFile.list();
+    if (fileNames == null) {
+      return new String[0];
+    }
+    ArrayList<String> resourceTypes = new ArrayList<String>(fileNames.length);
+    for (String fileName : fileNames) {
+      // Ignore files starting with a dot
+      if (!fileName.startsWith(".")) {
+        resourceTypes.add(fileName);
+      }
+    }
+    return resourceTypes.toArray(new String[resourceTypes.size()]);
+  }
+
+  /**
+   * Read all resources of one type in a prefix path.
+   *
+   * @return A map from resource name to resource, or null if the resource type is not a
+   *     directory.
+   */
+  Map<String, Resource> crawlResourceType(String prefixPath, String resourceType) {
+    File typeDirectoryFile = Path.of(
+        prefixPath, ResourceIndex.RESOURCE_INDEX_SUBDIRECTORY, resourceType).toFile();
+    IndexMetrics.prefixProbed(prefixPath);
+    String[] resourceNames = typeDirectoryFile.list();
+    if (resourceNames == null) {
+      return null;
+    }
+    Map<String, Resource> resources = new LinkedHashMap<String, Resource>();
+    for (String resourceName : resourceNames) {
+      // Ignore files starting with a dot
+      if (resourceName.startsWith(".")) {
+        continue;
+      }
+      resources.put(
+          resourceName,
+          new Resource(resourceType, resourceName, prefixPath, this.memoizeContent));
+    }
+    return resources;
+  }
+
+  private static <T> T await(Future<T> future) throws IOException {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("interrupted while crawling the resource index", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof UncheckedIOException) {
+        throw ((UncheckedIOException) e.getCause()).getCause();
+      }
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new IOException(e.getCause());
+    }
+  }
+}
@@ -0,0 +1,210 @@
+/* Copyright 2020 Open Source Robotics Foundation, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ros2.ament_index_java;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.lang.String;
+import java.nio.channels.AsynchronousCloseException;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Answers lookups in the {@link ResourceIndex} for other processes over a local socket.
+ *
+ * The daemon keeps the snapshot of the resource index warm, and watches the filesystem to keep it
+ * up to date, see {@link ResourceIndex#startWatching()}. Clients connect to the socket path given
+ * when the daemon was started, and speak a line-oriented protocol that tools without a JVM can
+ * use as well, see {@link IndexClient}. Every connection is served by its own thread.
+ *
+ * The socket is a Unix domain socket on JDK 16 and later, and a loopback TCP port guarded by a
+ * secret on older JDKs.
+ *
+ * In the protocol, every request and every response is a single line of UTF-8 text, made of
+ * fields separated by tabs. Backslashes, tabs, carriage returns and newlines within a field are
+ * escaped as "\\", "\t", "\r" and "\n". A client may send any number of requests
+ * before reading the responses, which are sent in the order of the requests.
+ *
+ * Requests start with a command:
+ * <ul>
+ *   <li>{@code get TYPE NAME}: the prefix path and content of a resource.</li>
+ *   <li>{@code has TYPE NAME}: the prefix path of a resource.</li>
+ *   <li>{@code resources TYPE}: the name and prefix path of every resource of a type.</li>
+ *   <li>{@code prefix PACKAGE}: the install prefix of a package.</li>
+ *   <li>{@code share PACKAGE}: the share directory of a package.</li>
+ *   <li>{@code ping}: an empty response.</li>
+ * </ul>
+ * Responses start with {@code OK}, followed by the results, with {@code NONE} if the resource or
+ * package does not exist, or with {@code ERROR}, followed by a message.
+ */
+public final class IndexDaemon implements Closeable {
+  private static final Logger logger = LoggerFactory.getLogger(IndexDaemon.class);
+
+  private final Path socketPath;
+
+  private final IndexSockets.Endpoint endpoint;
+
+  private final Set<SocketChannel> connections = ConcurrentHashMap.newKeySet();
+
+  private final Thread thread;
+
+  private volatile boolean closed;
+
+  private IndexDaemon(Path socketPath, IndexSockets.Endpoint endpoint) {
+    this.socketPath = socketPath;
+    this.endpoint = endpoint;
+    this.thread = new Thread(this::acceptConnections, "ament-index-daemon");
+  }
+
+  /**
+   * Start a daemon listening at a socket path.
+   *
+   * @param socketPath The socket path. A socket left behind by a daemon that is no longer
+   *     running is replaced.
+   * @return The running daemon.
+   */
+  public static IndexDaemon start(Path socketPath) throws AmentIndexException, IOException {
+    return IndexDaemon.start(socketPath, true);
+  }
+
+  /**
+   * Start a daemon listening at a socket path.
+   *
+   * @param socketPath The socket path.
+   * @param useUnixDomainSocket false to listen on a loopback TCP port, even if Unix domain
+   *     sockets are supported.
+   * @return The running daemon.
+   */
+  static IndexDaemon start(Path socketPath, boolean useUnixDomainSocket)
+  throws AmentIndexException, IOException {
+    // Crawl before accepting connections, so the first client does not wait for it
+    ResourceIndex.startWatching();
+    IndexDaemon daemon = new IndexDaemon(
+        socketPath, IndexSockets.listen(socketPath, useUnixDomainSocket));
+    daemon.thread.start();
+    logger.info("Listening at '{}'", socketPath);
+    return daemon;
+  }
+
+  /**
+   * @return The socket path the daemon is listening at.
+   */
+  public Path getSocketPath() {
+    return this.socketPath;
+  }
+
+  /**
+   * Stop listening, close all connections and remove the socket path.
+   *
+   * The resource index keeps being watched, see {@link ResourceIndex#stopWatching()}.
+   */
+  @Override
+  public void close() throws IOException {
+    this.closed = true;
+    this.endpoint.channel.close();
+    for (SocketChannel connection : this.connections) {
+      connection.close();
+    }
+    try {
+      this.thread.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    Files.deleteIfExists(this.socketPath);
+  }
+
+  private void acceptConnections() {
+    while (!this.closed) {
+      SocketChannel connection;
+      try {
+        connection = this.endpoint.channel.accept();
+      } catch (AsynchronousCloseException e) {
+        return;
+      } catch (IOException e) {
+        logger.warn("Failed to accept a connection: {}", e.getMessage());
+        continue;
+      }
+      this.connections.add(connection);
+      Thread thread = new Thread(() -> this.serve(connection), "ament-index-daemon-connection");
+      thread.setDaemon(true);
+      thread.start();
+    }
+  }
+
+  private void serve(SocketChannel connection) {
+    try (SocketChannel channel = connection) {
+      BufferedReader reader = new BufferedReader(new InputStreamReader(
+          Channels.newInputStream(channel), StandardCharsets.UTF_8));
+      BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(
+          Channels.newOutputStream(channel), StandardCharsets.UTF_8));
+      if (this.endpoint.secret != null
+          && !IndexSockets.checkSecret(this.endpoint, reader.readLine()))
+      {
+        logger.warn("Rejected a connection without the secret of '{}'", this.socketPath);
+        return;
+      }
+
+      String line;
+      while ((line = reader.readLine()) != null) {
+        writer.write(IndexProtocol.encode(IndexProtocol.handle(IndexProtocol.decode(line))));
+        writer.write('\n');
+        // Answer batched requests with as few writes as possible
+        if (!reader.ready()) {
+          writer.flush();
+        }
+      }
+      writer.flush();
+    } catch (IOException e) {
+      if (!this.closed) {
+        logger.debug("Connection failed: {}", e.getMessage());
+      }
+    } finally {
+      this.connections.remove(connection);
+    }
+  }
+
+  /**
+   * Run a daemon until the process is terminated.
+   *
+   * The socket path is given as the only argument.
+   */
+  public static void main(String[] args) throws AmentIndexException, IOException {
+    if (args.length != 1) {
+      System.err.println("usage: IndexDaemon SOCKET");
+      System.exit(2);
+    }
+    IndexDaemon daemon = IndexDaemon.start(Path.of(args[0]));
+    Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+      try {
+        daemon.close();
+      } catch (IOException e) {
+        logger.warn("Failed to remove '{}': {}", daemon.getSocketPath(), e.getMessage());
+      }
+    }));
+  }
+}
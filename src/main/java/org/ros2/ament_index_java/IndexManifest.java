@@ -0,0 +1,442 @@
+/* Copyright 2020 Open Source Robotics Foundation, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ros2.ament_index_java;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.String;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A compact, binary summary of the resource index of one prefix path.
+ *
+ * The manifest is stored as {@link #MANIFEST_FILE_NAME} in the resource index directory of the
+ * prefix path. It holds the names of all resource types and resources together with the content
+ * of every marker file, so a prefix path can be loaded by mapping a single file into memory.
+ *
+ * The manifest records the modification times of the resource index directory and of every
+ * resource type directory. It is only used while all of them are unchanged, otherwise the
+ * resource index directories are crawled as usual. Modifying the content of an existing marker
+ * file does not change these times, so the manifest must be regenerated afterwards, for example
+ * by running this class as a program. Changes within the timestamp granularity of the filesystem
+ * after the manifest was written may also go unnoticed, so it is meant for prefix paths that are
+ * not modified while they are in use.
+ */
+public final class IndexManifest {
+  private static final Logger logger = LoggerFactory.getLogger(IndexManifest.class);
+
+  /**
+   * Name of the manifest file in the resource index directory.
+   */
+  public static final String MANIFEST_FILE_NAME = ".index";
+
+  private static final int MAGIC = 0x414d4958;  // "AMIX"
+
+  private static final int VERSION = 1;
+
+  // Position of the modification time of the resource index directory in the manifest
+  private static final int INDEX_DIRECTORY_MODIFIED_OFFSET = 8;
+
+  private static final int MAX_WRITE_ATTEMPTS = 3;
+
+  // The resources of one type as recorded in a manifest
+  private static final class TypeEntry {
+    private final long modified;
+    // Resource name -> content
+    private final Map<String, ByteBuffer> contents = new LinkedHashMap<String, ByteBuffer>();
+
+    private TypeEntry(long modified) {
+      this.modified = modified;
+    }
+  }
+
+  private IndexManifest() {}
+
+  /**
+   * Check if a prefix path has a manifest, regardless of whether it is up to date.
+   *
+   * @param prefixPath The prefix path.
+   * @return true if the manifest file exists.
+   */
+  public static boolean exists(String prefixPath) {
+    return IndexManifest.getManifestPath(prefixPath).toFile().isFile();
+  }
+
+  /**
+   * Create or replace the manifest of a prefix path.
+   *
+   * @param prefixPath The prefix path. Must contain a resource index directory.
+   */
+  public static void write(String prefixPath) throws IOException {
+    IndexManifest.write(prefixPath, Collections.<String, TypeEntry>emptyMap());
+  }
+
+  /**
+   * Bring the manifest of a prefix path up to date after marker files were added or removed.
+   *
+   * Only resource type directories modified since the manifest was written are read again, the
+   * resources of all other types are copied from the previous manifest. Use {@link #write(String)}
+   * instead after the content of existing marker files was modified.
+   *
+   * @param prefixPath The prefix path. Must contain a resource index directory.
+   */
+  static void update(String prefixPath) throws IOException {
+    Map<String, TypeEntry> unchangedTypes = null;
+    try {
+      // Not mapped, since the file is replaced while the entries are in use
+      ByteBuffer buffer = ByteBuffer.wrap(
+          Files.readAllBytes(IndexManifest.getManifestPath(prefixPath)));
+      unchangedTypes = IndexManifest.decodeTypes(prefixPath, buffer, true);
+    } catch (NoSuchFileException e) {
+      // Written from scratch
+    }
+    IndexManifest.write(
+        prefixPath,
+        unchangedTypes == null ? Collections.<String, TypeEntry>emptyMap() : unchangedTypes);
+  }
+
+  private static void write(String prefixPath, Map<String, TypeEntry> unchangedTypes)
+  throws IOException {
+    Path indexDirectoryPath = Path.of(prefixPath, ResourceIndex.RESOURCE_INDEX_SUBDIRECTORY);
+    Path manifestPath = IndexManifest.getManifestPath(prefixPath);
+
+    for (int attempt = 0; attempt < MAX_WRITE_ATTEMPTS; ++attempt) {
+      String[] resourceTypes = IndexCrawler.listResourceTypes(prefixPath);
+      Map<String, Long> typeDirectoriesModified = new LinkedHashMap<String, Long>();
+      byte[] encoded = IndexManifest.encode(
+          prefixPath, resourceTypes, typeDirectoriesModified, unchangedTypes);
+      // Each writer uses its own temporary file, others may be writing the manifest concurrently
+      Path temporaryPath = MarkerWriter.createTemporaryFile(
+          manifestPath.getParent(), MANIFEST_FILE_NAME);
+      try {
+        Files.write(temporaryPath, encoded);
+        Files.move(temporaryPath, manifestPath, StandardCopyOption.ATOMIC_MOVE);
+      } finally {
+        Files.deleteIfExists(temporaryPath);
+      }
+
+      // Writing the manifest changed the resource index directory, so its modification time
+      // can only be recorded afterwards
+      ByteBuffer modified = ByteBuffer.allocate(Long.BYTES);
+      modified.putLong(IndexManifest.getModifiedTime(indexDirectoryPath));
+      modified.flip();
+      try (FileChannel channel = FileChannel.open(manifestPath, StandardOpenOption.WRITE)) {
+        channel.write(modified, INDEX_DIRECTORY_MODIFIED_OFFSET);
+      }
+
+      // Resource types added in the meantime would not be detected
+      if (!Arrays.equals(resourceTypes, IndexCrawler.listResourceTypes(prefixPath))) {
+        continue;
+      }
+      boolean unchanged = true;
+      for (Map.Entry<String, Long> entry : typeDirectoriesModified.entrySet()) {
+        unchanged &= entry.getValue() == IndexManifest.getModifiedTime(
+            indexDirectoryPath.resolve(entry.getKey()));
+      }
+      if (unchanged) {
+        return;
+      }
+    }
+    Files.deleteIfExists(manifestPath);
+    throw new IOException(
+        String.format("resource index of '%s' changed while writing the manifest", prefixPath));
+  }
+
+  /**
+   * Read the manifest of a prefix path if it is up to date.
+   *
+   * @param prefixPath The prefix path.
+   * @param memoizeContent Whether the resources keep their content after it was decoded.
+   * @return A map from resource type to the resources of that type, or null if there is no
+   *     manifest or it is out of date.
+   */
+  static Map<String, Map<String, Resource>> read(String prefixPath, boolean memoizeContent)
+  throws IOException {
+    IndexMetrics.prefixProbed(prefixPath);
+    MappedByteBuffer buffer;
+    try (FileChannel channel = FileChannel.open(IndexManifest.getManifestPath(prefixPath))) {
+      buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    } catch (NoSuchFileException e) {
+      return null;
+    }
+    return IndexManifest.decode(prefixPath, buffer, memoizeContent);
+  }
+
+  /**
+   * Encode the resource index of a prefix path without storing it in the prefix path.
+   *
+   * @param prefixPath The prefix path.
+   * @return The manifest of the prefix path, see {@link #decode(String, ByteBuffer, boolean)}.
+   */
+  static byte[] encode(String prefixPath) throws IOException {
+    Path indexDirectoryPath = Path.of(prefixPath, ResourceIndex.RESOURCE_INDEX_SUBDIRECTORY);
+    // Recorded before listing, so resource types added while listing make the manifest out of date
+    long indexDirectoryModified = IndexManifest.getModifiedTime(indexDirectoryPath);
+    byte[] manifest = IndexManifest.encode(
+        prefixPath, IndexCrawler.listResourceTypes(prefixPath), new LinkedHashMap<String, Long>(),
+        Collections.<String, TypeEntry>emptyMap());
+    ByteBuffer.wrap(manifest).putLong(INDEX_DIRECTORY_MODIFIED_OFFSET, indexDirectoryModified);
+    return manifest;
+  }
+
+  /**
+   * Decode a manifest if it is up to date.
+   *
+   * @param prefixPath The prefix path the manifest was created from.
+   * @param buffer The manifest, starting at the position of the buffer.
+   * @param memoizeContent Whether the resources keep their content after it was decoded.
+   * @return A map from resource type to the resources of that type, or null if the manifest is
+   *     out of date or corrupt.
+   */
+  static Map<String, Map<String, Resource>> decode(
+      String prefixPath, ByteBuffer buffer, boolean memoizeContent)
+  throws IOException {
+    Map<String, TypeEntry> types = IndexManifest.decodeTypes(prefixPath, buffer, false);
+    if (types == null) {
+      return null;
+    }
+    Map<String, Map<String, Resource>> resources =
+        new LinkedHashMap<String, Map<String, Resource>>();
+    for (Map.Entry<String, TypeEntry> type : types.entrySet()) {
+      String resourceType = type.getKey();
+      Map<String, Resource> resourcesOfType = new LinkedHashMap<String, Resource>();
+      for (Map.Entry<String, ByteBuffer> entry : type.getValue().contents.entrySet()) {
+        resourcesOfType.put(
+            entry.getKey(),
+            new Resource(
+                resourceType, entry.getKey(), prefixPath, entry.getValue(), memoizeContent));
+      }
+      resources.put(resourceType, resourcesOfType);
+    }
+    return resources;
+  }
+
+  /**
+   * Decode the resource types of a manifest.
+   *
+   * @param prefixPath The prefix path the manifest was created from.
+   * @param buffer The manifest, starting at the position of the buffer.
+   * @param unchangedTypesOnly If true, resource types whose directory was modified since the
+   *     manifest was written are left out. Otherwise, the whole manifest must be up to date.
+   * @return A map from resource type to its entry, or null if the manifest is out of date or
+   *     corrupt.
+   */
+  private static Map<String, TypeEntry> decodeTypes(
+      String prefixPath, ByteBuffer buffer, boolean unchangedTypesOnly)
+  throws IOException {
+    Path indexDirectoryPath = Path.of(prefixPath, ResourceIndex.RESOURCE_INDEX_SUBDIRECTORY);
+    try {
+      if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+        logger.debug("Ignoring manifest of '{}' with unknown format", prefixPath);
+        return null;
+      }
+      if (buffer.getLong() != IndexManifest.getModifiedTime(indexDirectoryPath)
+          && !unchangedTypesOnly)
+      {
+        return null;
+      }
+
+      int typeCount = buffer.getInt();
+      Map<String, TypeEntry> types = new LinkedHashMap<String, TypeEntry>();
+      List<TypeEntry> entries = new ArrayList<TypeEntry>();
+      List<String> resourceNames = new ArrayList<String>();
+      List<int[]> contentRanges = new ArrayList<int[]>();
+      for (int i = 0; i < typeCount; ++i) {
+        String resourceType = IndexManifest.getString(buffer);
+        TypeEntry type = new TypeEntry(buffer.getLong());
+        if (type.modified == IndexManifest.getModifiedTime(
+            indexDirectoryPath.resolve(resourceType)))
+        {
+          types.put(resourceType, type);
+        } else if (!unchangedTypesOnly) {
+          return null;
+        }
+        int resourceCount = buffer.getInt();
+        for (int j = 0; j < resourceCount; ++j) {
+          entries.add(type);
+          resourceNames.add(IndexManifest.getString(buffer));
+          contentRanges.add(new int[] {buffer.getInt(), buffer.getInt()});
+        }
+      }
+
+      // The content of all resources follows the names
+      ByteBuffer contents = buffer.slice();
+      for (int i = 0; i < resourceNames.size(); ++i) {
+        int[] range = contentRanges.get(i);
+        ByteBuffer content = contents.duplicate();
+        content.position(range[0]).limit(range[0] + range[1]);
+        entries.get(i).contents.put(resourceNames.get(i), content.slice());
+      }
+      return types;
+    } catch (BufferUnderflowException | IllegalArgumentException e) {
+      logger.debug("Ignoring corrupt manifest of '{}': {}", prefixPath, e.getMessage());
+      return null;
+    }
+  }
+
+  /**
+   * Regenerate the manifests of prefix paths.
+   *
+   * The prefix paths are given as arguments. Without arguments, the manifests of all prefix paths
+   * in @{link ResourceIndex.AMENT_PREFIX_PATH_ENV_VAR} are regenerated.
+   */
+  public static void main(String[] args) throws AmentIndexException, IOException {
+    String[] prefixPaths = args.length > 0 ? args : ResourceIndex.getAmentIndexPaths();
+    for (String prefixPath : prefixPaths) {
+      if (!Path.of(prefixPath, ResourceIndex.RESOURCE_INDEX_SUBDIRECTORY).toFile().isDirectory()) {
+        System.err.println("Skipping '" + prefixPath + "' without a resource index");
+        continue;
+      }
+      IndexManifest.write(prefixPath);
+      System.out.println("Wrote " + IndexManifest.getManifestPath(prefixPath));
+    }
+  }
+
+  private static byte[] encode(
+      String prefixPath, String[] resourceTypes, Map<String, Long> typeDirectoriesModified,
+      Map<String, TypeEntry> unchangedTypes)
+  throws IOException {
+    Path indexDirectoryPath = Path.of(prefixPath, ResourceIndex.RESOURCE_INDEX_SUBDIRECTORY);
+    ByteArrayOutputStream header = new ByteArrayOutputStream();
+    ByteArrayOutputStream contents = new ByteArrayOutputStream();
+    DataOutputStream headerStream = new DataOutputStream(header);
+
+    headerStream.writeInt(MAGIC);
+    headerStream.writeInt(VERSION);
+    // Recorded after the manifest was written
+    headerStream.writeLong(0);
+
+    // Resource type -> names of its marker files, or null to copy the previous manifest
+    Map<String, String[]> resourceNames = new LinkedHashMap<String, String[]>();
+    for (String resourceType : resourceTypes) {
+      Path typeDirectoryPath = indexDirectoryPath.resolve(resourceType);
+      if (!typeDirectoryPath.toFile().isDirectory()) {
+        continue;
+      }
+      // Recorded before listing, so markers added while listing make the manifest out of date
+      long modified = IndexManifest.getModifiedTime(typeDirectoryPath);
+      typeDirectoriesModified.put(resourceType, modified);
+      TypeEntry unchanged = unchangedTypes.get(resourceType);
+      if (unchanged != null && unchanged.modified == modified) {
+        resourceNames.put(resourceType, null);
+        continue;
+      }
+      String[] names = typeDirectoryPath.toFile().list();
+      resourceNames.put(resourceType, names == null ? new String[0] : names);
+    }
+
+    headerStream.writeInt(resourceNames.size());
+    for (Map.Entry<String, String[]> entry : resourceNames.entrySet()) {
+      String resourceType = entry.getKey();
+      Path typeDirectoryPath = indexDirectoryPath.resolve(resourceType);
+      IndexManifest.putString(headerStream, resourceType);
+      headerStream.writeLong(typeDirectoriesModified.get(resourceType));
+
+      ByteArrayOutputStream names = new ByteArrayOutputStream();
+      DataOutputStream namesStream = new DataOutputStream(names);
+      int resourceCount = 0;
+      if (entry.getValue() == null) {
+        // Copy the resources from the previous manifest
+        for (Map.Entry<String, ByteBuffer> resource
+            : unchangedTypes.get(resourceType).contents.entrySet())
+        {
+          ByteBuffer content = resource.getValue().duplicate();
+          IndexManifest.putString(namesStream, resource.getKey());
+          namesStream.writeInt(contents.size());
+          namesStream.writeInt(content.remaining());
+          contents.write(content.array(), content.arrayOffset() + content.position(),
+              content.remaining());
+          ++resourceCount;
+        }
+        headerStream.writeInt(resourceCount);
+        names.writeTo(headerStream);
+        continue;
+      }
+      for (String resourceName : entry.getValue()) {
+        Path markerPath = typeDirectoryPath.resolve(resourceName);
+        // Ignore files starting with a dot, and anything that is not a marker file
+        if (resourceName.startsWith(".") || !markerPath.toFile().isFile()) {
+          continue;
+        }
+        byte[] content = Files.readAllBytes(markerPath);
+        IndexManifest.putString(namesStream, resourceName);
+        namesStream.writeInt(contents.size());
+        namesStream.writeInt(content.length);
+        contents.write(content);
+        ++resourceCount;
+      }
+      headerStream.writeInt(resourceCount);
+      names.writeTo(headerStream);
+    }
+    contents.writeTo(headerStream);
+    return header.toByteArray();
+  }
+
+  private static void putString(DataOutputStream stream, String value) throws IOException {
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    stream.writeInt(bytes.length);
+    stream.write(bytes);
+  }
+
+  /**
+   * Read a string written by {@link #putString(DataOutputStream, String)}.
+   *
+   * @throws IllegalArgumentException If the length of the string is out of range.
+   */
+  static String getString(ByteBuffer buffer) {
+    int length = buffer.getInt();
+    // Never allocate more than the manifest could contain
+    if (length < 0 || length > buffer.remaining()) {
+      throw new IllegalArgumentException("string length " + length + " is out of range");
+    }
+    byte[] bytes = new byte[length];
+    buffer.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private static long getModifiedTime(Path path) throws IOException {
+    try {
+      return Files.getLastModifiedTime(path).to(TimeUnit.NANOSECONDS);
+    } catch (NoSuchFileException e) {
+      // Never matches a recorded time
+      return Long.MIN_VALUE;
+    }
+  }
+
+  private static Path getManifestPath(String prefixPath) {
+    return Path.of(prefixPath, ResourceIndex.RESOURCE_INDEX_SUBDIRECTORY, MANIFEST_FILE_NAME);
+  }
+}
@@ -0,0 +1,68 @@
+/* Copyright 2020 Open Source Robotics Foundation, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ros2.ament_index_java;
+
+import java.lang.String;
+
+/**
+ * Forwards measurements to the installed {@link IndexMetricsListener}.
+ *
+ * Without a listener, each call costs one volatile read, and no time is measured.
+ */
+final class IndexMetrics {
+  static volatile IndexMetricsListener listener;
+
+  private IndexMetrics() {}
+
+  /**
+   * @return The start time of a lookup, or 0 if no listener is installed.
+   */
+  static long start() {
+    if (IndexMetrics.listener == null) {
+      return 0;
+    }
+    return System.nanoTime();
+  }
+
+  static void lookupCompleted(String operation, long startNanos, boolean hit) {
+    IndexMetricsListener listener = IndexMetrics.listener;
+    // A start time of 0 means the listener was installed during the lookup
+    if (listener != null && startNanos != 0) {
+      listener.lookupCompleted(operation, System.nanoTime() - startNanos, hit);
+    }
+  }
+
+  static void prefixProbed(String prefixPath) {
+    IndexMetricsListener listener = IndexMetrics.listener;
+    if (listener != null) {
+      listener.prefixProbed(prefixPath);
+    }
+  }
+
+  static void markerRead(String prefixPath, long bytes) {
+    IndexMetricsListener listener = IndexMetrics.listener;
+    if (listener != null) {
+      listener.markerRead(prefixPath, bytes);
+    }
+  }
+
+  static void snapshotCacheAccessed(boolean hit) {
+    IndexMetricsListener listener = IndexMetrics.listener;
+    if (listener != null) {
+      listener.snapshotCacheAccessed(hit);
+    }
+  }
+}
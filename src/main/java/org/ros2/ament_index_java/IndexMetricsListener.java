@@ -0,0 +1,63 @@
+/* Copyright 2020 Open Source Robotics Foundation, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ros2.ament_index_java;
+
+import java.lang.String;
+
+/**
+ * Receives measurements of lookups in the ament index.
+ *
+ * A listener is installed with {@link ResourceIndex#setMetricsListener(IndexMetricsListener)}.
+ * Methods are called on the thread doing the lookup, possibly from several threads at the same
+ * time, so implementations must be thread safe and should return quickly.
+ *
+ * All methods do nothing by default.
+ *
+ * @see Slf4jMetricsReporter
+ */
+public interface IndexMetricsListener {
+  /**
+   * Called when a lookup of {@link ResourceIndex} or {@link PackageIndex} returns.
+   *
+   * @param operation The name of the lookup, e.g. "ResourceIndex.getResource".
+   * @param durationNanos The time the lookup took, in nanoseconds.
+   * @param hit true if everything that was looked up was found, false otherwise.
+   */
+  default void lookupCompleted(String operation, long durationNanos, boolean hit) {}
+
+  /**
+   * Called for every filesystem access to the resource index of a prefix path, like checking
+   * for a marker file or listing a directory.
+   *
+   * @param prefixPath The prefix path that was accessed.
+   */
+  default void prefixProbed(String prefixPath) {}
+
+  /**
+   * Called when the content of a resource was read from its marker file.
+   *
+   * @param prefixPath The prefix path of the resource.
+   * @param bytes The number of bytes read.
+   */
+  default void markerRead(String prefixPath, long bytes) {}
+
+  /**
+   * Called when a lookup needs a snapshot of the index.
+   *
+   * @param hit true if the cached snapshot was used, false if the prefix paths were crawled.
+   */
+  default void snapshotCacheAccessed(boolean hit) {}
+}
@@ -0,0 +1,169 @@
+/* Copyright 2020 Open Source Robotics Foundation, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ros2.ament_index_java;
+
+import java.io.IOException;
+import java.lang.String;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Encodes, decodes and answers the requests of the protocol described in {@link IndexDaemon}.
+ */
+final class IndexProtocol {
+  static final String OK = "OK";
+
+  static final String NONE = "NONE";
+
+  static final String ERROR = "ERROR";
+
+  private IndexProtocol() {}
+
+  /**
+   * Answer a request from the {@link ResourceIndex}.
+   *
+   * @param request The fields of the request.
+   * @return The fields of the response.
+   */
+  static String[] handle(String[] request) {
+    try {
+      switch (request[0]) {
+        case "get": {
+          IndexProtocol.expectArguments(request, 2);
+          Resource resource = ResourceIndex.getResource(request[1], request[2]);
+          if (resource == null) {
+            return new String[] {NONE};
+          }
+          return new String[] {OK, resource.getPrefixPath(), resource.getContent()};
+        }
+        case "has":
+          IndexProtocol.expectArguments(request, 2);
+          return IndexProtocol.optional(ResourceIndex.hasResource(request[1], request[2]));
+        case "resources": {
+          IndexProtocol.expectArguments(request, 1);
+          Resource[] resources = ResourceIndex.getResources(request[1]);
+          String[] response = new String[1 + 2 * resources.length];
+          response[0] = OK;
+          for (int i = 0; i < resources.length; ++i) {
+            response[1 + 2 * i] = resources[i].getName();
+            response[2 + 2 * i] = resources[i].getPrefixPath();
+          }
+          return response;
+        }
+        case "prefix":
+          IndexProtocol.expectArguments(request, 1);
+          return IndexProtocol.optional(PackageIndex.getPackagePrefix(request[1]));
+        case "share":
+          IndexProtocol.expectArguments(request, 1);
+          return IndexProtocol.optional(PackageIndex.getPackageShareDirectory(request[1]));
+        case "ping":
+          IndexProtocol.expectArguments(request, 0);
+          return new String[] {OK};
+        default:
+          throw new AmentIndexException("unknown command '" + request[0] + "'");
+      }
+    } catch (AmentIndexException | IOException | RuntimeException e) {
+      return new String[] {ERROR, String.valueOf(e.getMessage())};
+    }
+  }
+
+  /**
+   * Encode the fields of a request or response as a line, without the line terminator.
+   *
+   * @param fields The fields.
+   * @return The line.
+   */
+  static String encode(String... fields) {
+    StringBuilder line = new StringBuilder();
+    for (int i = 0; i < fields.length; ++i) {
+      if (i > 0) {
+        line.append('\t');
+      }
+      String field = fields[i];
+      for (int j = 0; j < field.length(); ++j) {
+        char c = field.charAt(j);
+        switch (c) {
+          case '\\':
+            line.append("\\\\");
+            break;
+          case '\t':
+            line.append("\\t");
+            break;
+          case '\r':
+            line.append("\\r");
+            break;
+          case '\n':
+            line.append("\\n");
+            break;
+          default:
+            line.append(c);
+        }
+      }
+    }
+    return line.toString();
+  }
+
+  /**
+   * Decode the fields of a line.
+   *
+   * @param line The line, without the line terminator.
+   * @return The fields.
+   */
+  static String[] decode(String line) {
+    List<String> fields = new ArrayList<String>();
+    StringBuilder field = new StringBuilder();
+    for (int i = 0; i < line.length(); ++i) {
+      char c = line.charAt(i);
+      if (c == '\t') {
+        fields.add(field.toString());
+        field.setLength(0);
+      } else if (c == '\\' && i + 1 < line.length()) {
+        char escaped = line.charAt(++i);
+        switch (escaped) {
+          case 't':
+            field.append('\t');
+            break;
+          case 'r':
+            field.append('\r');
+            break;
+          case 'n':
+            field.append('\n');
+            break;
+          default:
+            field.append(escaped);
+        }
+      } else {
+        field.append(c);
+      }
+    }
+    fields.add(field.toString());
+    return fields.toArray(new String[fields.size()]);
+  }
+
+  private static String[] optional(String value) {
+    if (value == null) {
+      return new String[] {NONE};
+    }
+    return new String[] {OK, value};
+  }
+
+  private static void expectArguments(String[] request, int count) throws AmentIndexException {
+    if (request.length != count + 1) {
+      throw new AmentIndexException(
+          String.format("'%s' expects %d arguments", request[0], count));
+    }
+  }
+}
@@ -0,0 +1,258 @@
+/* Copyright 2020 Open Source Robotics Foundation, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ros2.ament_index_java;
+
+import java.io.IOException;
+import java.lang.String;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ProtocolFamily;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+
+/**
+ * Opens the sockets connecting an {@link IndexDaemon} with its clients.
+ *
+ * Unix domain sockets are used where the JDK supports them, which is JDK 16 and later; they are
+ * looked up reflectively, so this class also loads on older JDKs. There, the daemon listens on a
+ * loopback TCP port instead, and the file at the socket path holds the port together with a
+ * random secret that clients must send before their first request. The file is only readable by
+ * its owner where the filesystem supports POSIX permissions.
+ */
+final class IndexSockets {
+  private static final String TCP_MAGIC = "ament_index_tcp";
+
+  private static final int SECRET_BYTES = 16;
+
+  // All null if Unix domain sockets are not supported
+  private static final ProtocolFamily UNIX_FAMILY;
+  private static final Method UNIX_ADDRESS_OF;
+  private static final Method OPEN_SERVER_CHANNEL;
+  private static final Method OPEN_CHANNEL;
+
+  static {
+    ProtocolFamily family;
+    Method addressOf;
+    Method openServerChannel;
+    Method openChannel;
+    try {
+      family = StandardProtocolFamily.valueOf("UNIX");
+      addressOf = Class.forName("java.net.UnixDomainSocketAddress").getMethod("of", Path.class);
+      openServerChannel = ServerSocketChannel.class.getMethod("open", ProtocolFamily.class);
+      openChannel = SocketChannel.class.getMethod("open", ProtocolFamily.class);
+    } catch (ReflectiveOperationException | IllegalArgumentException e) {
+      family = null;
+      addressOf = null;
+      openServerChannel = null;
+      openChannel = null;
+    }
+    UNIX_FAMILY = family;
+    UNIX_ADDRESS_OF = addressOf;
+    OPEN_SERVER_CHANNEL = openServerChannel;
+    OPEN_CHANNEL = openChannel;
+  }
+
+  /**
+   * A listening socket, with the secret clients must send if it is not a Unix domain socket.
+   */
+  static final class Endpoint {
+    final ServerSocketChannel channel;
+
+    // null for Unix domain sockets
+    final String secret;
+
+    private Endpoint(ServerSocketChannel channel, String secret) {
+      this.channel = channel;
+      this.secret = secret;
+    }
+  }
+
+  private IndexSockets() {}
+
+  /**
+   * @return true if Unix domain sockets are supported by the running JDK.
+   */
+  static boolean isUnixDomainSocketSupported() {
+    return UNIX_ADDRESS_OF != null;
+  }
+
+  /**
+   * Listen for clients at a socket path.
+   *
+   * A file left behind at the socket path by a daemon that is no longer running is replaced.
+   *
+   * @param socketPath The socket path.
+   * @param useUnixDomainSocket false to listen on a loopback TCP port, even if Unix domain
+   *     sockets are supported.
+   * @return The listening socket.
+   */
+  static Endpoint listen(Path socketPath, boolean useUnixDomainSocket) throws IOException {
+    if (Files.exists(socketPath, LinkOption.NOFOLLOW_LINKS)) {
+      boolean listening;
+      try {
+        IndexSockets.connect(socketPath).close();
+        listening = true;
+      } catch (IOException e) {
+        listening = false;
+      }
+      if (listening) {
+        throw new IOException("a daemon is already listening at '" + socketPath + "'");
+      }
+      // Never replace files that were not created by a daemon
+      if (Files.isDirectory(socketPath)
+          || Files.isRegularFile(socketPath) && IndexSockets.readTcpFile(socketPath) == null)
+      {
+        throw new IOException("'" + socketPath + "' is not the socket of an index daemon");
+      }
+      Files.delete(socketPath);
+    }
+
+    if (useUnixDomainSocket && IndexSockets.isUnixDomainSocketSupported()) {
+      ServerSocketChannel channel =
+          (ServerSocketChannel) IndexSockets.invoke(OPEN_SERVER_CHANNEL, UNIX_FAMILY);
+      try {
+        channel.bind(IndexSockets.unixAddress(socketPath));
+      } catch (IOException e) {
+        channel.close();
+        throw e;
+      }
+      return new Endpoint(channel, null);
+    }
+
+    ServerSocketChannel channel = ServerSocketChannel.open();
+    try {
+      channel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+      byte[] secretBytes = new byte[SECRET_BYTES];
+      new SecureRandom().nextBytes(secretBytes);
+      StringBuilder secret = new StringBuilder();
+      for (byte b : secretBytes) {
+        secret.append(String.format("%02x", b));
+      }
+      int port = ((InetSocketAddress) channel.getLocalAddress()).getPort();
+
+      // Written before it becomes visible at the socket path, so clients never read it partially
+      Path temporaryPath = socketPath.resolveSibling("." + socketPath.getFileName() + ".tmp");
+      Files.deleteIfExists(temporaryPath);
+      if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+        Files.createFile(temporaryPath, PosixFilePermissions.asFileAttribute(
+            PosixFilePermissions.fromString("rw-------")));
+      }
+      Files.write(
+          temporaryPath,
+          IndexProtocol.encode(TCP_MAGIC, Integer.toString(port), secret.toString())
+              .getBytes(StandardCharsets.UTF_8));
+      Files.move(temporaryPath, socketPath, StandardCopyOption.ATOMIC_MOVE);
+      return new Endpoint(channel, secret.toString());
+    } catch (IOException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Connect to the daemon listening at a socket path.
+   *
+   * @param socketPath The socket path.
+   * @return The connected socket, ready for the first request.
+   */
+  static SocketChannel connect(Path socketPath) throws IOException {
+    if (!Files.isRegularFile(socketPath)) {
+      if (!IndexSockets.isUnixDomainSocketSupported()) {
+        throw new IOException("Unix domain sockets are not supported by this JDK");
+      }
+      SocketChannel channel = (SocketChannel) IndexSockets.invoke(OPEN_CHANNEL, UNIX_FAMILY);
+      try {
+        channel.connect(IndexSockets.unixAddress(socketPath));
+      } catch (IOException e) {
+        channel.close();
+        throw e;
+      }
+      return channel;
+    }
+
+    String[] fields = IndexSockets.readTcpFile(socketPath);
+    if (fields == null) {
+      throw new IOException("'" + socketPath + "' is not the socket of an index daemon");
+    }
+    SocketChannel channel = SocketChannel.open();
+    try {
+      channel.connect(new InetSocketAddress(
+          InetAddress.getLoopbackAddress(), Integer.parseInt(fields[1])));
+      ByteBuffer secret = StandardCharsets.UTF_8.encode(fields[2] + "\n");
+      while (secret.hasRemaining()) {
+        channel.write(secret);
+      }
+    } catch (IOException e) {
+      channel.close();
+      throw e;
+    }
+    return channel;
+  }
+
+  /**
+   * Check the secret sent by a client, in constant time.
+   *
+   * @param endpoint The endpoint the client connected to.
+   * @param line The first line sent by the client.
+   * @return true if the client sent the secret of the endpoint.
+   */
+  static boolean checkSecret(Endpoint endpoint, String line) {
+    return line != null && MessageDigest.isEqual(
+        endpoint.secret.getBytes(StandardCharsets.UTF_8),
+        line.getBytes(StandardCharsets.UTF_8));
+  }
+
+  // The fields of the file written in place of a socket, or null if it was not written by a daemon
+  private static String[] readTcpFile(Path socketPath) throws IOException {
+    String[] fields = IndexProtocol.decode(
+        new String(Files.readAllBytes(socketPath), StandardCharsets.UTF_8));
+    if (fields.length != 3 || !fields[0].equals(TCP_MAGIC) || !fields[1].matches("[0-9]{1,5}")) {
+      return null;
+    }
+    return fields;
+  }
+
+  private static SocketAddress unixAddress(Path socketPath) throws IOException {
+    return (SocketAddress) IndexSockets.invoke(UNIX_ADDRESS_OF, socketPath);
+  }
+
+  private static Object invoke(Method method, Object argument) throws IOException {
+    try {
+      return method.invoke(null, argument);
+    } catch (InvocationTargetException e) {
+      if (e.getCause() instanceof IOException) {
+        throw (IOException) e.getCause();
+      }
+      throw new IOException(e.getCause());
+    } catch (IllegalAccessException e) {
+      throw new IOException(e);
+    }
+  }
+}
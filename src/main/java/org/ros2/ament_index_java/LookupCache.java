@@ -0,0 +1,173 @@
+/* Copyright 2020 Open Source Robotics Foundation, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ros2.ament_index_java;
+
+import java.io.File;
+import java.lang.String;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Answers lookups of {@link AmentIndex} from memory for a limited time.
+ *
+ * For every prefix path and resource type, the sorted names of the resources are kept after the
+ * resource type directory was listed once. A lookup only needs to search these names to know if
+ * a prefix path contains a resource, so prefix paths without it are skipped without accessing
+ * the filesystem.
+ * In addition, resources that were not found in any prefix path are remembered, so repeated
+ * lookups of the same missing resource return immediately.
+ *
+ * Both are discarded after the time to live, so changes on the filesystem become visible after at
+ * most that time.
+ */
+final class LookupCache {
+  private static final String[] NO_NAMES = new String[0];
+
+  private final Path[] indexDirectories;
+
+  private final String[] prefixPaths;
+
+  private final long timeToLiveNanos;
+
+  private final int maxMisses;
+
+  // For each prefix path: resource type -> sorted resource names
+  private final List<ConcurrentMap<String, Names>> membership;
+
+  // "type/name" -> time when the miss expires, least recently used first
+  private final LinkedHashMap<String, Long> misses;
+
+  private static final class Names {
+    private final String[] sortedNames;
+    private final long expiresAt;
+
+    private Names(String[] sortedNames, long expiresAt) {
+      this.sortedNames = sortedNames;
+      this.expiresAt = expiresAt;
+    }
+  }
+
+  /**
+   * @param prefixPaths The prefix paths, in order of precedence.
+   * @param indexDirectories The resource index directory of each prefix path.
+   * @param timeToLiveNanos How long cached names and misses are used, in nanoseconds.
+   * @param maxMisses The maximum number of misses to remember.
+   */
+  LookupCache(String[] prefixPaths, Path[] indexDirectories, long timeToLiveNanos, int maxMisses) {
+    this.prefixPaths = prefixPaths;
+    this.indexDirectories = indexDirectories;
+    this.timeToLiveNanos = timeToLiveNanos;
+    this.maxMisses = maxMisses;
+    this.membership = new ArrayList<ConcurrentMap<String, Names>>(prefixPaths.length);
+    for (int i = 0; i < prefixPaths.length; ++i) {
+      this.membership.add(new ConcurrentHashMap<String, Names>());
+    }
+    this.misses = new LinkedHashMap<String, Long>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+        return this.size() > LookupCache.this.maxMisses;
+      }
+    };
+  }
+
+  /**
+   * Check if a prefix path contains a resource.
+   *
+   * The resource type directory is listed if its names are not cached, or expired.
+   *
+   * @param prefixIndex The index of the prefix path.
+   * @param resourceType The type of the resource.
+   * @param resourceName The name of the resource.
+   * @return true if the prefix path contains the resource.
+   */
+  boolean contains(int prefixIndex, String resourceType, String resourceName) {
+    ConcurrentMap<String, Names> namesByType = this.membership.get(prefixIndex);
+    long now = System.nanoTime();
+    Names names = namesByType.get(resourceType);
+    if (names == null || now - names.expiresAt > 0) {
+      names = new Names(this.listNames(prefixIndex, resourceType), now + this.timeToLiveNanos);
+      namesByType.put(resourceType, names);
+    }
+    return Arrays.binarySearch(names.sortedNames, resourceName) >= 0;
+  }
+
+  /**
+   * @return true if the resource was recently not found in any prefix path.
+   */
+  synchronized boolean isMiss(String resourceType, String resourceName) {
+    String key = LookupCache.getKey(resourceType, resourceName);
+    Long expiresAt = this.misses.get(key);
+    if (expiresAt == null) {
+      return false;
+    }
+    if (System.nanoTime() - expiresAt > 0) {
+      this.misses.remove(key);
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Remember that a resource was not found in any prefix path.
+   */
+  synchronized void addMiss(String resourceType, String resourceName) {
+    if (this.maxMisses > 0) {
+      this.misses.put(
+          LookupCache.getKey(resourceType, resourceName),
+          System.nanoTime() + this.timeToLiveNanos);
+    }
+  }
+
+  /**
+   * Discard all cached names and misses.
+   */
+  synchronized void clear() {
+    for (ConcurrentMap<String, Names> namesByType : this.membership) {
+      namesByType.clear();
+    }
+    this.misses.clear();
+  }
+
+  private String[] listNames(int prefixIndex, String resourceType) {
+    IndexMetrics.prefixProbed(this.prefixPaths[prefixIndex]);
+    File typeDirectoryFile = this.indexDirectories[prefixIndex].resolve(resourceType).toFile();
+    String[] fileNames = typeDirectoryFile.list();
+    if (fileNames == null) {
+      return NO_NAMES;
+    }
+    List<String> resourceNames = new ArrayList<String>(fileNames.length);
+    for (String fileName : fileNames) {
+      // Ignore files starting with a dot
+      if (!fileName.startsWith(".")) {
+        resourceNames.add(fileName);
+      }
+    }
+    String[] sortedNames = resourceNames.toArray(new String[resourceNames.size()]);
+    Arrays.sort(sortedNames);
+    return sortedNames;
+  }
+
+  private static String getKey(String resourceType, String resourceName) {
+    // Neither part can contain a separator, as both are file names
+    return resourceType + File.separator + resourceName;
+  }
+}
@@ -0,0 +1,153 @@
+/* Copyright 2020 Open Source Robotics Foundation, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ros2.ament_index_java;
+
+import java.io.IOException;
+import java.lang.String;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Writes marker files so that they appear with their complete content, or not at all.
+ *
+ * The content is written to a temporary file starting with a dot, which readers of the index
+ * ignore, and the temporary file is then linked to the name of the marker file.
+ * Linking fails if the marker file already exists, so existing markers are never replaced.
+ * Deleting a marker leaves its type directory in place, since another writer may be about to
+ * create a marker in it.
+ */
+final class MarkerWriter {
+  private MarkerWriter() {}
+
+  /**
+   * Write a marker file unless it already exists.
+   *
+   * @param typeDirectory The resource type directory. Must exist.
+   * @param resourceName The name of the resource.
+   * @param content The content of the marker file.
+   * @param sync If true, the content is flushed to the storage device before the marker file is
+   *     created.
+   * @return true if the marker file was created, false if it already exists.
+   */
+  static boolean write(Path typeDirectory, String resourceName, String content, boolean sync)
+  throws IOException {
+    Path markerPath = typeDirectory.resolve(resourceName);
+    if (markerPath.toFile().exists()) {
+      return false;
+    }
+
+    Path temporaryPath = MarkerWriter.createTemporaryFile(typeDirectory, "." + resourceName);
+    try {
+      try (FileChannel channel = FileChannel.open(temporaryPath, StandardOpenOption.WRITE)) {
+        ByteBuffer buffer = StandardCharsets.UTF_8.encode(content);
+        while (buffer.hasRemaining()) {
+          channel.write(buffer);
+        }
+        if (sync) {
+          channel.force(false);
+        }
+      }
+      try {
+        Files.createLink(markerPath, temporaryPath);
+      } catch (FileAlreadyExistsException e) {
+        return false;
+      } catch (UnsupportedOperationException | IOException e) {
+        // The filesystem does not support hard links, a rename may replace a concurrent marker
+        if (markerPath.toFile().exists()) {
+          return false;
+        }
+        Files.move(temporaryPath, markerPath, StandardCopyOption.ATOMIC_MOVE);
+      }
+      return true;
+    } finally {
+      Files.deleteIfExists(temporaryPath);
+    }
+  }
+
+  /**
+   * Create an empty file with a random name that does not exist yet.
+   *
+   * Unlike {@link Files#createTempFile(Path, String, String)}, which only grants access to the
+   * owner, the file gets the default permissions of the process, so that files linked or moved
+   * to its place can be read by other users.
+   *
+   * @param directory The directory to create the file in.
+   * @param prefix The start of the file name, usually a dot so that readers ignore the file.
+   * @return The path of the new file.
+   */
+  static Path createTemporaryFile(Path directory, String prefix) throws IOException {
+    while (true) {
+      Path path = directory.resolve(
+          prefix + "." + Long.toUnsignedString(ThreadLocalRandom.current().nextLong()) + ".tmp");
+      try {
+        return Files.createFile(path);
+      } catch (FileAlreadyExistsException e) {
+        // Try another name
+      }
+    }
+  }
+
+  /**
+   * Delete a marker file if it exists.
+   *
+   * Only marker files directly within the type directory are deleted, never directories or files
+   * starting with a dot.
+   *
+   * @param typeDirectory The resource type directory.
+   * @param resourceName The name of the resource.
+   * @param sync If true, the removal is flushed to the storage device.
+   * @return true if the marker file was deleted, false if there is no such marker file.
+   */
+  static boolean delete(Path typeDirectory, String resourceName, boolean sync)
+  throws IOException {
+    Path markerPath = typeDirectory.resolve(resourceName);
+    if (resourceName.startsWith(".") || !typeDirectory.equals(markerPath.getParent())
+        || Files.isDirectory(markerPath, LinkOption.NOFOLLOW_LINKS))
+    {
+      return false;
+    }
+    if (!Files.deleteIfExists(markerPath)) {
+      return false;
+    }
+    if (sync) {
+      MarkerWriter.syncDirectory(typeDirectory);
+    }
+    return true;
+  }
+
+  /**
+   * Flush the entries of a directory to the storage device.
+   *
+   * This is not supported on every platform, in which case nothing happens.
+   *
+   * @param directory The directory.
+   */
+  static void syncDirectory(Path directory) {
+    try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+      channel.force(true);
+    } catch (IOException e) {
+      // Directories cannot be opened on all platforms
+    }
+  }
+}
@@ -0,0 +1,224 @@
+/* Copyright 2020 Open Source Robotics Foundation, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ros2.ament_index_java;
+
+import java.lang.String;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The sorted names of the resources of one type, answering range, prefix and glob queries.
+ *
+ * Names are kept in a sorted array, and a second sorted array holds every name reversed, so
+ * queries for a common prefix or a common suffix are answered with a binary search.
+ * The index is built once per snapshot and resource type, see {@link #get(AmentIndexSnapshot,
+ * String)}; a query costs time logarithmic in the number of resources, plus time linear in the
+ * number of candidates sharing the literal prefix or suffix of the query.
+ */
+final class NameIndex {
+  private static final Object NAME_INDEX_KEY = new Object();
+
+  private final Map<String, Resource> resources;
+
+  private final String[] names;
+
+  // Every name reversed, sorted
+  private final String[] reversedNames;
+
+  private NameIndex(Map<String, Resource> resources) {
+    this.resources = resources;
+    this.names = resources.keySet().toArray(new String[resources.size()]);
+    Arrays.sort(this.names);
+    this.reversedNames = new String[this.names.length];
+    for (int i = 0; i < this.names.length; ++i) {
+      this.reversedNames[i] = NameIndex.reverse(this.names[i]);
+    }
+    Arrays.sort(this.reversedNames);
+  }
+
+  /**
+   * Get the name index of a resource type, building it on first use.
+   *
+   * @param snapshot The snapshot containing the resources.
+   * @param resourceType The type of the resources.
+   * @return The name index, shared by all users of the snapshot.
+   */
+  static NameIndex get(AmentIndexSnapshot snapshot, String resourceType) {
+    return snapshot.getDerivedValue(
+        Arrays.<Object>asList(NAME_INDEX_KEY, resourceType),
+        s -> new NameIndex(s.getResourcesOfType(resourceType)));
+  }
+
+  /**
+   * Get the resources with names in a range.
+   *
+   * @param fromName The lowest name, inclusive, or null for no lower bound.
+   * @param toName The highest name, exclusive, or null for no upper bound.
+   * @return The resources sorted by name.
+   */
+  Resource[] getRange(String fromName, String toName) {
+    int from = fromName == null ? 0 : NameIndex.lowerBound(this.names, fromName);
+    int to = toName == null ? this.names.length : NameIndex.lowerBound(this.names, toName);
+    return this.getResources(this.names, from, Math.max(from, to));
+  }
+
+  /**
+   * Get the resources with names starting with a prefix.
+   *
+   * @param prefix The prefix.
+   * @return The resources sorted by name.
+   */
+  Resource[] getWithPrefix(String prefix) {
+    int from = NameIndex.lowerBound(this.names, prefix);
+    return this.getResources(this.names, from, NameIndex.prefixEnd(this.names, from, prefix));
+  }
+
+  /**
+   * Get the resources with names matching a glob pattern.
+   *
+   * In the pattern, '*' matches any sequence of characters and '?' matches a single character.
+   * All other characters match themselves.
+   *
+   * @param glob The pattern.
+   * @return The resources sorted by name.
+   */
+  Resource[] getMatching(String glob) {
+    int firstWildcard = NameIndex.indexOfWildcard(glob);
+    if (firstWildcard < 0) {
+      Resource resource = this.resources.get(glob);
+      return resource == null ? new Resource[0] : new Resource[] {resource};
+    }
+    int lastWildcard = Math.max(glob.lastIndexOf('*'), glob.lastIndexOf('?'));
+
+    // Candidates share the literal prefix and suffix of the pattern, use the smaller range
+    String prefix = glob.substring(0, firstWildcard);
+    int prefixFrom = NameIndex.lowerBound(this.names, prefix);
+    int prefixTo = NameIndex.prefixEnd(this.names, prefixFrom, prefix);
+    String reversedSuffix = NameIndex.reverse(glob.substring(lastWildcard + 1));
+    int suffixFrom = NameIndex.lowerBound(this.reversedNames, reversedSuffix);
+    int suffixTo = NameIndex.prefixEnd(this.reversedNames, suffixFrom, reversedSuffix);
+
+    List<String> matches = new ArrayList<String>();
+    if (prefixTo - prefixFrom <= suffixTo - suffixFrom) {
+      for (int i = prefixFrom; i < prefixTo; ++i) {
+        if (NameIndex.matches(glob, this.names[i])) {
+          matches.add(this.names[i]);
+        }
+      }
+    } else {
+      for (int i = suffixFrom; i < suffixTo; ++i) {
+        String name = NameIndex.reverse(this.reversedNames[i]);
+        if (NameIndex.matches(glob, name)) {
+          matches.add(name);
+        }
+      }
+      matches.sort(null);
+    }
+
+    Resource[] result = new Resource[matches.size()];
+    for (int i = 0; i < result.length; ++i) {
+      result[i] = this.resources.get(matches.get(i));
+    }
+    return result;
+  }
+
+  /**
+   * Check if a name matches a glob pattern.
+   *
+   * @param glob The pattern, see {@link #getMatching(String)}.
+   * @param name The name.
+   * @return true if the whole name matches the pattern.
+   */
+  static boolean matches(String glob, String name) {
+    int g = 0;
+    int n = 0;
+    // Position after the last '*', and the name position it was matched against
+    int starGlob = -1;
+    int starName = 0;
+    while (n < name.length()) {
+      if (g < glob.length() && glob.charAt(g) == '*') {
+        starGlob = ++g;
+        starName = n;
+      } else if (g < glob.length() && (glob.charAt(g) == '?' || glob.charAt(g) == name.charAt(n))) {
+        ++g;
+        ++n;
+      } else if (starGlob >= 0) {
+        // Let the last '*' match one more character
+        g = starGlob;
+        n = ++starName;
+      } else {
+        return false;
+      }
+    }
+    while (g < glob.length() && glob.charAt(g) == '*') {
+      ++g;
+    }
+    return g == glob.length();
+  }
+
+  private Resource[] getResources(String[] names, int from, int to) {
+    Resource[] result = new Resource[to - from];
+    for (int i = from; i < to; ++i) {
+      result[i - from] = this.resources.get(names[i]);
+    }
+    return result;
+  }
+
+  private static int indexOfWildcard(String glob) {
+    for (int i = 0; i < glob.length(); ++i) {
+      if (glob.charAt(i) == '*' || glob.charAt(i) == '?') {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  // The index of the first name not less than the key
+  private static int lowerBound(String[] names, String key) {
+    int low = 0;
+    int high = names.length;
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      if (names[middle].compareTo(key) < 0) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    return low;
+  }
+
+  // The index after the names starting with the prefix, which start at the given index
+  private static int prefixEnd(String[] names, int from, String prefix) {
+    int low = from;
+    int high = names.length;
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      if (names[middle].startsWith(prefix)) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    return low;
+  }
+
+  private static String reverse(String name) {
+    return new StringBuilder(name).reverse().toString();
+  }
+}
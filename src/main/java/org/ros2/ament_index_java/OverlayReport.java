@@ -0,0 +1,156 @@
+/* Copyright 2020 Open Source Robotics Foundation, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ros2.ament_index_java;
+
+import java.io.IOException;
+import java.lang.String;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The overlays of all resources in the prefix paths of an index.
+ *
+ * The prefix paths are crawled once, and the same crawl yields both the snapshot used for
+ * lookups and, for every resource, all prefix paths that contain it. Auditing which resources
+ * are shadowed by earlier prefix paths therefore costs no more filesystem access than creating
+ * a snapshot.
+ */
+public final class OverlayReport {
+  private final AmentIndexSnapshot snapshot;
+
+  // Resource type -> resource name -> overlay, both sorted by name
+  private final Map<String, Map<String, ResourceOverlay>> overlays;
+
+  private OverlayReport(
+      AmentIndexSnapshot snapshot, Map<String, Map<String, ResourceOverlay>> overlays)
+  {
+    this.snapshot = snapshot;
+    this.overlays = overlays;
+  }
+
+  /**
+   * Create a report of the prefix paths listed in the environment.
+   *
+   * @return The overlays of the ament index.
+   * @see ResourceIndex#getAmentIndexPaths()
+   */
+  public static OverlayReport create() throws AmentIndexException, IOException {
+    return OverlayReport.create(ResourceIndex.getAmentIndexPaths(), 1);
+  }
+
+  /**
+   * Create a report of the given prefix paths.
+   *
+   * @param prefixPaths The prefix paths to crawl, in order of precedence.
+   * @param parallelism The number of threads to crawl with, 1 to crawl on the calling thread.
+   * @return The overlays of the ament index.
+   */
+  public static OverlayReport create(String[] prefixPaths, int parallelism) throws IOException {
+    List<Map<String, Map<String, Resource>>> prefixResources =
+        new IndexCrawler(parallelism, true).crawl(prefixPaths);
+
+    // Resource type -> resource name -> occurances in order of precedence
+    Map<String, Map<String, List<Resource>>> occurances =
+        new HashMap<String, Map<String, List<Resource>>>();
+    for (Map<String, Map<String, Resource>> resourcesOfPrefix : prefixResources) {
+      for (Map.Entry<String, Map<String, Resource>> entry : resourcesOfPrefix.entrySet()) {
+        Map<String, List<Resource>> occurancesOfType = occurances.computeIfAbsent(
+            entry.getKey(), key -> new HashMap<String, List<Resource>>());
+        for (Resource resource : entry.getValue().values()) {
+          occurancesOfType.computeIfAbsent(
+              resource.getName(), key -> new ArrayList<Resource>(1)).add(resource);
+        }
+      }
+    }
+
+    Map<String, Map<String, ResourceOverlay>> overlays =
+        new TreeMap<String, Map<String, ResourceOverlay>>();
+    for (Map.Entry<String, Map<String, List<Resource>>> typeEntry : occurances.entrySet()) {
+      Map<String, ResourceOverlay> overlaysOfType = new TreeMap<String, ResourceOverlay>();
+      for (Map.Entry<String, List<Resource>> entry : typeEntry.getValue().entrySet()) {
+        List<Resource> resources = entry.getValue();
+        overlaysOfType.put(entry.getKey(), new ResourceOverlay(
+            typeEntry.getKey(), entry.getKey(),
+            resources.toArray(new Resource[resources.size()])));
+      }
+      overlays.put(typeEntry.getKey(), Collections.unmodifiableMap(overlaysOfType));
+    }
+
+    AmentIndexSnapshot snapshot =
+        AmentIndexSnapshot.merge(prefixPaths, true, prefixResources);
+    return new OverlayReport(snapshot, Collections.unmodifiableMap(overlays));
+  }
+
+  /**
+   * @return The snapshot created from the same crawl as this report.
+   */
+  public AmentIndexSnapshot getSnapshot() {
+    return this.snapshot;
+  }
+
+  /**
+   * Get the overlays of all resources.
+   *
+   * @return An unmodifiable map from resource type to a map from resource name to overlay, both
+   *     sorted by name.
+   */
+  public Map<String, Map<String, ResourceOverlay>> getOverlays() {
+    return this.overlays;
+  }
+
+  /**
+   * Get the overlay of a resource.
+   *
+   * @param resourceType The type of the resource. Must not be empty.
+   * @param resourceName The name of the resource. Must not be empty.
+   * @return The overlay, or null if the resource is not found.
+   */
+  public ResourceOverlay getOverlay(String resourceType, String resourceName)
+  throws AmentIndexException {
+    if (resourceType.isEmpty()) {
+      throw new AmentIndexException("resource type must not be empty");
+    }
+    if (resourceName.isEmpty()) {
+      throw new AmentIndexException("resource name must not be empty");
+    }
+    Map<String, ResourceOverlay> overlaysOfType = this.overlays.get(resourceType);
+    if (overlaysOfType == null) {
+      return null;
+    }
+    return overlaysOfType.get(resourceName);
+  }
+
+  /**
+   * Get the resources existing in more than one prefix path.
+   *
+   * @return The overlays of the shadowed resources, sorted by type and name.
+   */
+  public List<ResourceOverlay> getShadowedResources() {
+    List<ResourceOverlay> shadowed = new ArrayList<ResourceOverlay>();
+    for (Map<String, ResourceOverlay> overlaysOfType : this.overlays.values()) {
+      for (ResourceOverlay overlay : overlaysOfType.values()) {
+        if (overlay.isShadowed()) {
+          shadowed.add(overlay);
+        }
+      }
+    }
+    return shadowed;
+  }
+}
@@ -0,0 +1,292 @@
+/* Copyright 2020 Open Source Robotics Foundation, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ros2.ament_index_java;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.String;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The dependencies between the packages of an index, as declared in their package.xml files.
+ *
+ * The package.xml of every package is read from its share directory. Packages without one are
+ * not part of the graph, and neither are packages whose package.xml cannot be read or parsed;
+ * those are reported by {@link #getFailures()}. Dependencies on packages that are not part of
+ * the graph are kept, so they show up in the dependencies of a package but have no dependencies
+ * themselves.
+ * Conditions on dependencies are not evaluated, every declared dependency is included.
+ *
+ * Instances are immutable and can be shared between threads.
+ */
+public final class PackageDependencyGraph {
+  /**
+   * The kinds of dependencies declared in a package.xml.
+   */
+  public enum DependencyType {
+    /** Declared by build_depend and depend. */
+    BUILD,
+    /** Declared by build_export_depend, depend and run_depend. */
+    BUILD_EXPORT,
+    /** Declared by buildtool_depend. */
+    BUILDTOOL,
+    /** Declared by buildtool_export_depend. */
+    BUILDTOOL_EXPORT,
+    /** Declared by exec_depend, depend and run_depend. */
+    EXEC,
+    /** Declared by test_depend. */
+    TEST,
+    /** Declared by doc_depend. */
+    DOC
+  }
+
+  /**
+   * Number of threads reading package.xml files.
+   */
+  private static final int PARSE_PARALLELISM = 8;
+
+  private static final Logger logger = LoggerFactory.getLogger(PackageDependencyGraph.class);
+
+  // Package name -> manifest, sorted by name
+  private final Map<String, PackageManifest> manifests;
+
+  // Package name -> why its package.xml was not read, sorted by name
+  private final SortedMap<String, IOException> failures;
+
+  // Dependency type -> package name -> names of the packages depending on it
+  private final Map<DependencyType, Map<String, List<String>>> dependents;
+
+  private PackageDependencyGraph(
+      Map<String, PackageManifest> manifests, SortedMap<String, IOException> failures)
+  {
+    this.manifests = manifests;
+    this.failures = failures;
+    this.dependents = new HashMap<DependencyType, Map<String, List<String>>>();
+    for (DependencyType type : DependencyType.values()) {
+      Map<String, List<String>> dependentsOfType = new HashMap<String, List<String>>();
+      for (PackageManifest manifest : manifests.values()) {
+        for (String dependency : manifest.getDependencies(type)) {
+          dependentsOfType.computeIfAbsent(
+              dependency, key -> new ArrayList<String>()).add(manifest.getName());
+        }
+      }
+      this.dependents.put(type, dependentsOfType);
+    }
+  }
+
+  /**
+   * Build the dependency graph of the packages in a snapshot.
+   *
+   * The package.xml files are read in parallel. Files that did not change since they were last
+   * read, according to their modification time and size, are not parsed again.
+   * A package.xml that cannot be read or parsed is logged and leaves its package out of the
+   * graph, see {@link #getFailures()}.
+   *
+   * @param snapshot The snapshot to take the packages from.
+   * @return The dependency graph.
+   * @throws IOException If interrupted while reading the package.xml files.
+   */
+  public static PackageDependencyGraph create(AmentIndexSnapshot snapshot) throws IOException {
+    List<Resource> packages = new ArrayList<Resource>(
+        snapshot.getResourcesOfType(PackageIndex.PACKAGE_RESOURCE_TYPE).values());
+    Map<String, PackageManifest> manifests = new TreeMap<String, PackageManifest>();
+    if (packages.isEmpty()) {
+      return new PackageDependencyGraph(manifests, Collections.emptySortedMap());
+    }
+
+    SortedMap<String, IOException> failures = new TreeMap<String, IOException>();
+
+    ForkJoinPool pool = new ForkJoinPool(Math.min(PARSE_PARALLELISM, packages.size()));
+    try {
+      List<Future<PackageManifest>> reads =
+          new ArrayList<Future<PackageManifest>>(packages.size());
+      for (Resource resource : packages) {
+        reads.add(pool.submit(() -> {
+          try {
+            return PackageManifest.read(Path.of(
+                resource.getPrefixPath(), "share", resource.getName(), "package.xml"));
+          } catch (IOException e) {
+            throw new UncheckedIOException(e);
+          }
+        }));
+      }
+      for (int i = 0; i < packages.size(); ++i) {
+        String packageName = packages.get(i).getName();
+        PackageManifest manifest;
+        try {
+          manifest = reads.get(i).get();
+        } catch (ExecutionException e) {
+          IOException cause = e.getCause() instanceof UncheckedIOException
+              ? ((UncheckedIOException) e.getCause()).getCause() : new IOException(e.getCause());
+          logger.warn(
+              "Ignoring package '{}', failed to read its package.xml: {}",
+              packageName, cause.getMessage());
+          failures.put(packageName, cause);
+          continue;
+        }
+        if (manifest != null) {
+          // The name in the index is authoritative, the manifest may declare a different one
+          manifests.put(packageName, manifest);
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("interrupted while reading package manifests", e);
+    } finally {
+      pool.shutdownNow();
+    }
+    return new PackageDependencyGraph(manifests, Collections.unmodifiableSortedMap(failures));
+  }
+
+  /**
+   * @return The sorted names of all packages with a package.xml.
+   */
+  public SortedSet<String> getPackages() {
+    return Collections.unmodifiableSortedSet(new TreeSet<String>(this.manifests.keySet()));
+  }
+
+  /**
+   * Get the packages whose package.xml could not be read or parsed.
+   *
+   * @return A map from package name to the error, sorted by package name.
+   */
+  public SortedMap<String, IOException> getFailures() {
+    return this.failures;
+  }
+
+  /**
+   * Get the direct dependencies of a package.
+   *
+   * @param packageName The name of the package.
+   * @param types The types of dependencies to follow.
+   * @return The sorted names of the dependencies, empty if the package is not part of the graph.
+   */
+  public SortedSet<String> getDependencies(String packageName, Set<DependencyType> types) {
+    SortedSet<String> dependencies = new TreeSet<String>();
+    PackageManifest manifest = this.manifests.get(packageName);
+    if (manifest != null) {
+      for (DependencyType type : types) {
+        dependencies.addAll(manifest.getDependencies(type));
+      }
+    }
+    return dependencies;
+  }
+
+  /**
+   * Get the direct dependencies of a package, of all types.
+   *
+   * @param packageName The name of the package.
+   * @return The sorted names of the dependencies, empty if the package is not part of the graph.
+   */
+  public SortedSet<String> getDependencies(String packageName) {
+    return this.getDependencies(packageName, EnumSet.allOf(DependencyType.class));
+  }
+
+  /**
+   * Get the dependencies of a package, and all of their dependencies.
+   *
+   * @param packageName The name of the package.
+   * @param types The types of dependencies to follow.
+   * @return The sorted names of all packages the package depends on, not including the package
+   *     itself.
+   */
+  public SortedSet<String> getTransitiveDependencies(
+      String packageName, Set<DependencyType> types)
+  {
+    return this.traverse(packageName, name -> this.getDependencies(name, types));
+  }
+
+  /**
+   * Get the packages depending directly on a package.
+   *
+   * @param packageName The name of the package.
+   * @param types The types of dependencies to follow.
+   * @return The sorted names of the packages depending on the package.
+   */
+  public SortedSet<String> getDependents(String packageName, Set<DependencyType> types) {
+    SortedSet<String> dependents = new TreeSet<String>();
+    for (DependencyType type : types) {
+      List<String> dependentsOfType = this.dependents.get(type).get(packageName);
+      if (dependentsOfType != null) {
+        dependents.addAll(dependentsOfType);
+      }
+    }
+    return dependents;
+  }
+
+  /**
+   * Get the packages depending directly on a package, with dependencies of any type.
+   *
+   * @param packageName The name of the package.
+   * @return The sorted names of the packages depending on the package.
+   */
+  public SortedSet<String> getDependents(String packageName) {
+    return this.getDependents(packageName, EnumSet.allOf(DependencyType.class));
+  }
+
+  /**
+   * Get the packages depending on a package, directly or through other packages.
+   *
+   * @param packageName The name of the package.
+   * @param types The types of dependencies to follow.
+   * @return The sorted names of all packages depending on the package, not including the
+   *     package itself.
+   */
+  public SortedSet<String> getTransitiveDependents(
+      String packageName, Set<DependencyType> types)
+  {
+    return this.traverse(packageName, name -> this.getDependents(name, types));
+  }
+
+  private interface Edges {
+    Set<String> get(String packageName);
+  }
+
+  private SortedSet<String> traverse(String packageName, Edges edges) {
+    SortedSet<String> visited = new TreeSet<String>();
+    Deque<String> pending = new ArrayDeque<String>();
+    pending.add(packageName);
+    while (!pending.isEmpty()) {
+      for (String next : edges.get(pending.poll())) {
+        if (visited.add(next)) {
+          pending.add(next);
+        }
+      }
+    }
+    // Cycles lead back to the package itself
+    visited.remove(packageName);
+    return visited;
+  }
+}
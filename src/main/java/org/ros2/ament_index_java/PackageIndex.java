@@ -16,9 +16,23 @@
 package org.ros2.ament_index_java;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.lang.String;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Hashtable;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 /**
  * Implementation of the ament package index.
@@ -29,6 +43,23 @@ import java.util.Hashtable;
  */
 public class PackageIndex {
   public static final String PACKAGE_RESOURCE_TYPE = "packages";
+
+  // Key of the package map derived from a snapshot
+  private static final Object PACKAGES_KEY = new Object();
+
+  // Key of the share file searches derived from a snapshot
+  private static final Object SHARE_FILE_KEY = new Object();
+
+  /**
+   * Maximum number of share file searches whose result is kept per snapshot.
+   */
+  static final int MAX_CACHED_SHARE_FILE_SEARCHES = 256;
+
+  /**
+   * Number of threads checking share directories for a file.
+   */
+  private static final int SHARE_FILE_SEARCH_PARALLELISM = 8;
+
   /**
    * Get the installation prefix of a package.
    *
@@ -37,13 +68,36 @@ public class PackageIndex {
    */
   public static String
   getPackagePrefix(String packageName) throws AmentIndexException, IOException {
+    long start = IndexMetrics.start();
     Resource resource = ResourceIndex.getResource(PACKAGE_RESOURCE_TYPE, packageName);
+    IndexMetrics.lookupCompleted("PackageIndex.getPackagePrefix", start, resource != null);
     if (resource == null) {
       return null;
     }
     return resource.getPrefixPath();
   }
 
+  /**
+   * Get the installation prefixes of several packages at once.
+   *
+   * @param packageNames The names of the packages. Must not be empty.
+   * @return A map from package name to installation prefix, in the order of the given names.
+   *     Packages that are not found are not included.
+   */
+  public static Map<String, String>
+  getPackagePrefixes(Collection<String> packageNames) throws AmentIndexException, IOException {
+    long start = IndexMetrics.start();
+    Map<String, String> packagePrefixes = new LinkedHashMap<String, String>();
+    Map<String, Resource> resources =
+        ResourceIndex.getResources(PACKAGE_RESOURCE_TYPE, packageNames);
+    for (Resource resource : resources.values()) {
+      packagePrefixes.put(resource.getName(), resource.getPrefixPath());
+    }
+    IndexMetrics.lookupCompleted(
+        "PackageIndex.getPackagePrefixes", start, packagePrefixes.size() == packageNames.size());
+    return packagePrefixes;
+  }
+
   /**
    * Get the share directory prefix of a package.
    *
@@ -59,25 +113,253 @@ public class PackageIndex {
     return Path.of(packagePrefix, "share", packageName).toString();
   }
 
+  /**
+   * Get the installation prefix of a package without blocking the calling thread.
+   *
+   * Concurrent calls for the same package share a single lookup.
+   *
+   * @param packageName The name of the package. Must not be empty.
+   * @return A future completed with the installation prefix of the package, or null if the
+   *     package is not found.
+   * @see ResourceIndex#setAsyncExecutor(java.util.concurrent.Executor)
+   */
+  public static CompletableFuture<String> getPackagePrefixAsync(String packageName) {
+    return AsyncLookups.submit(
+        Arrays.<Object>asList("getPackagePrefix", packageName),
+        () -> PackageIndex.getPackagePrefix(packageName));
+  }
+
+  /**
+   * Get the share directory prefix of a package without blocking the calling thread.
+   *
+   * Concurrent calls for the same package share a single lookup.
+   *
+   * @param packageName The name of the package. Must not be empty.
+   * @return A future completed with the share directory prefix of the package, or null if the
+   *     package is not found.
+   * @see ResourceIndex#setAsyncExecutor(java.util.concurrent.Executor)
+   */
+  public static CompletableFuture<String> getPackageShareDirectoryAsync(String packageName) {
+    return AsyncLookups.submit(
+        Arrays.<Object>asList("getPackageShareDirectory", packageName),
+        () -> PackageIndex.getPackageShareDirectory(packageName));
+  }
+
+  /**
+   * Find all packages whose share directory contains a file.
+   *
+   * The share directories of all packages are checked in parallel. The result is computed once
+   * per snapshot of the index, so repeated searches for the same file return immediately until
+   * the index changes. Only the results of the {@link #MAX_CACHED_SHARE_FILE_SEARCHES} most
+   * recently searched files are kept. Files added to share directories without changing the index
+   * are only found after {@link ResourceIndex#invalidate()}.
+   *
+   * @param relativePath The path of the file relative to the share directory of a package, for
+   *     example "package.xml". Must not be empty or absolute, and must stay inside the share
+   *     directory.
+   * @return An unmodifiable map from package name to the path of the file, sorted by package
+   *     name.
+   */
+  public static SortedMap<String, String>
+  findPackagesWithShareFile(String relativePath) throws AmentIndexException, IOException {
+    if (relativePath.isEmpty()) {
+      throw new AmentIndexException("relative path must not be empty");
+    }
+    Path path = Path.of(relativePath);
+    if (path.isAbsolute()) {
+      throw new AmentIndexException("relative path must not be absolute");
+    }
+    Path normalizedPath = path.normalize();
+    if (normalizedPath.toString().isEmpty() || normalizedPath.startsWith("..")) {
+      throw new AmentIndexException("relative path must not leave the share directory");
+    }
+    String searchedPath = normalizedPath.toString();
+
+    long start = IndexMetrics.start();
+    AmentIndexSnapshot snapshot = ResourceIndex.getSnapshot();
+    Map<String, SortedMap<String, String>> searches = snapshot.getDerivedValue(
+        SHARE_FILE_KEY, current -> PackageIndex.createShareFileSearches());
+    SortedMap<String, String> packageFiles;
+    synchronized (searches) {
+      packageFiles = searches.get(searchedPath);
+    }
+    if (packageFiles == null) {
+      try {
+        packageFiles = PackageIndex.searchShareFile(snapshot, searchedPath);
+      } catch (UncheckedIOException e) {
+        throw e.getCause();
+      }
+      synchronized (searches) {
+        SortedMap<String, String> previous = searches.putIfAbsent(searchedPath, packageFiles);
+        if (previous != null) {
+          packageFiles = previous;
+        }
+      }
+    }
+    IndexMetrics.lookupCompleted(
+        "PackageIndex.findPackagesWithShareFile", start, !packageFiles.isEmpty());
+    return packageFiles;
+  }
+
+  // Relative path -> packages whose share directory contains it, least recently used first
+  private static Map<String, SortedMap<String, String>> createShareFileSearches() {
+    return new LinkedHashMap<String, SortedMap<String, String>>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, SortedMap<String, String>> eldest) {
+        return this.size() > PackageIndex.MAX_CACHED_SHARE_FILE_SEARCHES;
+      }
+    };
+  }
+
+  private static SortedMap<String, String>
+  searchShareFile(AmentIndexSnapshot snapshot, String relativePath) {
+    List<Resource> packages = new ArrayList<Resource>(
+        snapshot.getResourcesOfType(PACKAGE_RESOURCE_TYPE).values());
+    SortedMap<String, String> packageFiles = new TreeMap<String, String>();
+    if (packages.isEmpty()) {
+      return Collections.unmodifiableSortedMap(packageFiles);
+    }
+
+    ForkJoinPool pool = new ForkJoinPool(
+        Math.min(SHARE_FILE_SEARCH_PARALLELISM, packages.size()));
+    try {
+      List<Future<String>> searches = new ArrayList<Future<String>>(packages.size());
+      for (Resource resource : packages) {
+        searches.add(pool.submit(() -> {
+          Path filePath = Path.of(
+              resource.getPrefixPath(), "share", resource.getName(), relativePath);
+          return filePath.toFile().isFile() ? filePath.toString() : null;
+        }));
+      }
+      for (int i = 0; i < packages.size(); ++i) {
+        String filePath = searches.get(i).get();
+        if (filePath != null) {
+          packageFiles.put(packages.get(i).getName(), filePath);
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new UncheckedIOException(
+          new IOException("interrupted while searching share directories", e));
+    } catch (ExecutionException e) {
+      throw new UncheckedIOException(new IOException(e.getCause()));
+    } finally {
+      pool.shutdownNow();
+    }
+    return Collections.unmodifiableSortedMap(packageFiles);
+  }
+
+  /**
+   * Get the dependency graph of all packages, from the package.xml in their share directories.
+   *
+   * Only package.xml files that changed since they were last read are parsed again.
+   *
+   * @return The dependency graph.
+   * @see PackageDependencyGraph#create(AmentIndexSnapshot)
+   */
+  public static PackageDependencyGraph getDependencyGraph()
+  throws AmentIndexException, IOException {
+    return PackageDependencyGraph.create(ResourceIndex.getSnapshot());
+  }
+
   /**
    * Get all packages and their install prefixes.
    *
    * Only the install prefix for the first occurance of a package is returned.
+   * The map is built from the listings of the package directories of the resource index, the
+   * marker files are not read. It is computed once per snapshot of the index, so repeated calls
+   * return the same map until the index changes.
+   *
+   * @return An unmodifiable map from package name to the install prefix, sorted by package name.
+   *     Reading it needs no synchronization.
+   */
+  public static SortedMap<String, String> getPackages() throws AmentIndexException, IOException {
+    long start = IndexMetrics.start();
+    SortedMap<String, String> packages = ResourceIndex.getSnapshot().getDerivedValue(
+        PACKAGES_KEY, snapshot -> {
+          SortedMap<String, String> packagePrefixes = new TreeMap<String, String>();
+          for (Resource resource :
+              snapshot.getResourcesOfType(PACKAGE_RESOURCE_TYPE).values())
+          {
+            packagePrefixes.put(resource.getName(), resource.getPrefixPath());
+          }
+          return Collections.unmodifiableSortedMap(packagePrefixes);
+        });
+    IndexMetrics.lookupCompleted("PackageIndex.getPackages", start, !packages.isEmpty());
+    return packages;
+  }
+
+  /**
+   * Get the packages with names in a range.
+   *
+   * @param fromName The lowest package name, inclusive, or null for no lower bound.
+   * @param toName The highest package name, exclusive, or null for no upper bound.
+   * @return A map from package name to the install prefix, sorted by package name.
+   */
+  public static SortedMap<String, String> getPackagesInRange(String fromName, String toName)
+  throws AmentIndexException, IOException {
+    long start = IndexMetrics.start();
+    SortedMap<String, String> packages = PackageIndex.toPackageMap(
+        ResourceIndex.getSnapshot().getResourcesInRange(PACKAGE_RESOURCE_TYPE, fromName, toName));
+    IndexMetrics.lookupCompleted("PackageIndex.getPackagesInRange", start, !packages.isEmpty());
+    return packages;
+  }
+
+  /**
+   * Get the packages with names starting with a prefix.
+   *
+   * @param prefix The prefix of the package names, for example "rclcpp_".
+   * @return A map from package name to the install prefix, sorted by package name.
+   */
+  public static SortedMap<String, String> getPackagesWithPrefix(String prefix)
+  throws AmentIndexException, IOException {
+    long start = IndexMetrics.start();
+    SortedMap<String, String> packages = PackageIndex.toPackageMap(
+        ResourceIndex.getSnapshot().getResourcesWithPrefix(PACKAGE_RESOURCE_TYPE, prefix));
+    IndexMetrics.lookupCompleted("PackageIndex.getPackagesWithPrefix", start, !packages.isEmpty());
+    return packages;
+  }
+
+  /**
+   * Get the packages with names matching a glob pattern.
+   *
+   * @param glob The pattern the whole package name must match, for example "*_msgs".
+   * @return A map from package name to the install prefix, sorted by package name.
+   * @see AmentIndexSnapshot#getResourcesMatching(String, String)
+   */
+  public static SortedMap<String, String> getPackagesMatching(String glob)
+  throws AmentIndexException, IOException {
+    long start = IndexMetrics.start();
+    SortedMap<String, String> packages = PackageIndex.toPackageMap(
+        ResourceIndex.getSnapshot().getResourcesMatching(PACKAGE_RESOURCE_TYPE, glob));
+    IndexMetrics.lookupCompleted("PackageIndex.getPackagesMatching", start, !packages.isEmpty());
+    return packages;
+  }
+
+  private static SortedMap<String, String> toPackageMap(Resource[] resources) {
+    SortedMap<String, String> packages = new TreeMap<String, String>();
+    for (Resource resource : resources) {
+      packages.put(resource.getName(), resource.getPrefixPath());
+    }
+    return packages;
+  }
+
+  /**
+   * Get all packages and their install prefixes.
+   *
+   * Only the install prefix for the first occurance of a package is returned.
+   * Every access to a Hashtable is synchronized, prefer {@link #getPackages()}.
    *
    * @return A map from package name to the install prefix.
    */
   public static Hashtable<String, String>
   getPackagesWithPrefixes() throws IOException {
-    Hashtable<String, String> packages_with_prefixes = new Hashtable<String, String>();
     try {
-      Resource[] resources =  ResourceIndex.getResources(PACKAGE_RESOURCE_TYPE);
-      for (Resource resource : resources) {
-        packages_with_prefixes.put(resource.getName(), resource.getPrefixPath());
-      }
+      return new Hashtable<String, String>(PackageIndex.getPackages());
     } catch (AmentIndexException e) {
       // There must be no packages installed
+      return new Hashtable<String, String>();
     }
-    return packages_with_prefixes;
   }
 
   /**
@@ -91,4 +373,44 @@ public class PackageIndex {
   registerPackage(String packageName, String prefixPath) throws AmentIndexException, IOException {
     return ResourceIndex.registerResource(PACKAGE_RESOURCE_TYPE, packageName, prefixPath);
   }
+
+  /**
+   * Remove a package from a resource index.
+   *
+   * Only the marker of the package in {@link #PACKAGE_RESOURCE_TYPE} is deleted. If the package is
+   * installed in a later prefix path as well, that installation becomes visible in its place.
+   *
+   * @param packageName The name of the package to remove. Must not be empty.
+   * @param prefixPath The prefix path to the ament index.
+   * @return true if the package was removed, false if it is not registered in the prefix path.
+   */
+  public static boolean
+  unregisterPackage(String packageName, String prefixPath) throws AmentIndexException, IOException {
+    return ResourceIndex.unregisterResource(PACKAGE_RESOURCE_TYPE, packageName, prefixPath);
+  }
+
+  /**
+   * Remove a package and resources it registered from a resource index.
+   *
+   * Besides the marker of the package, the markers named after the package are deleted from the
+   * given resource types. Resource names are not owned by packages, so only the types the package
+   * is known to have registered resources in should be given.
+   * The manifest of the prefix path is updated once.
+   *
+   * @param packageName The name of the package to remove. Must not be empty.
+   * @param prefixPath The prefix path to the ament index.
+   * @param resourceTypes The resource types the package registered resources in.
+   * @return The sorted resource types that a resource was removed from.
+   */
+  public static String[] unregisterPackage(
+      String packageName, String prefixPath, Collection<String> resourceTypes)
+  throws AmentIndexException, IOException
+  {
+    if (packageName.isEmpty()) {
+      throw new AmentIndexException("package name must not be empty");
+    }
+    List<String> types = new ArrayList<String>(resourceTypes);
+    types.add(PACKAGE_RESOURCE_TYPE);
+    return ResourceIndex.unregisterResources(types, packageName, prefixPath);
+  }
 }
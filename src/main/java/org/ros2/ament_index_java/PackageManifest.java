@@ -0,0 +1,239 @@
+/* Copyright 2020 Open Source Robotics Foundation, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ros2.ament_index_java;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.String;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * The name and dependencies declared in the package.xml of a package.
+ *
+ * Parsed manifests are cached by path, together with the modification time and size of the
+ * file, and are only parsed again once either changes. The least recently used manifests are
+ * dropped once more than {@link #MAX_CACHED_MANIFESTS} are cached.
+ */
+final class PackageManifest {
+  /**
+   * Maximum number of parsed manifests to keep, enough for the packages of large workspaces.
+   */
+  static final int MAX_CACHED_MANIFESTS = 4096;
+
+  private static final XMLInputFactory inputFactory = PackageManifest.createInputFactory();
+
+  // Path of the package.xml -> the manifest parsed from it, least recently used first
+  private static final LinkedHashMap<Path, PackageManifest> cache =
+      new LinkedHashMap<Path, PackageManifest>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Path, PackageManifest> eldest) {
+          return this.size() > PackageManifest.MAX_CACHED_MANIFESTS;
+        }
+      };
+
+  private final String name;
+
+  private final Map<PackageDependencyGraph.DependencyType, List<String>> dependencies;
+
+  private final long modifiedTime;
+
+  private final long size;
+
+  private PackageManifest(
+      String name, Map<PackageDependencyGraph.DependencyType, List<String>> dependencies,
+      long modifiedTime, long size)
+  {
+    this.name = name;
+    this.dependencies = dependencies;
+    this.modifiedTime = modifiedTime;
+    this.size = size;
+  }
+
+  String getName() {
+    return this.name;
+  }
+
+  /**
+   * @return The names of the dependencies of the given type, in the order they are declared.
+   */
+  List<String> getDependencies(PackageDependencyGraph.DependencyType type) {
+    List<String> dependencies = this.dependencies.get(type);
+    if (dependencies == null) {
+      return Collections.emptyList();
+    }
+    return dependencies;
+  }
+
+  /**
+   * Read a package.xml, or return the cached manifest if the file did not change.
+   *
+   * @param path The path of the package.xml.
+   * @return The manifest, or null if the file does not exist.
+   */
+  static PackageManifest read(Path path) throws IOException {
+    BasicFileAttributes attributes;
+    try {
+      attributes = Files.readAttributes(path, BasicFileAttributes.class);
+    } catch (NoSuchFileException e) {
+      PackageManifest.uncache(path);
+      return null;
+    }
+    long modifiedTime = attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS);
+    PackageManifest cached;
+    synchronized (PackageManifest.cache) {
+      cached = PackageManifest.cache.get(path);
+    }
+    if (cached != null && cached.modifiedTime == modifiedTime
+        && cached.size == attributes.size())
+    {
+      return cached;
+    }
+    PackageManifest manifest;
+    try {
+      manifest = PackageManifest.parse(path, modifiedTime, attributes.size());
+    } catch (IOException e) {
+      PackageManifest.uncache(path);
+      throw e;
+    }
+    synchronized (PackageManifest.cache) {
+      PackageManifest.cache.put(path, manifest);
+    }
+    return manifest;
+  }
+
+  private static void uncache(Path path) {
+    synchronized (PackageManifest.cache) {
+      PackageManifest.cache.remove(path);
+    }
+  }
+
+  private static PackageManifest parse(Path path, long modifiedTime, long size)
+  throws IOException {
+    String name = null;
+    Map<PackageDependencyGraph.DependencyType, List<String>> dependencies =
+        new EnumMap<PackageDependencyGraph.DependencyType, List<String>>(
+            PackageDependencyGraph.DependencyType.class);
+    try (InputStream stream = Files.newInputStream(path)) {
+      XMLStreamReader reader;
+      // Factories are not guaranteed to be thread safe
+      synchronized (PackageManifest.inputFactory) {
+        reader = PackageManifest.inputFactory.createXMLStreamReader(stream);
+      }
+      try {
+        int depth = 0;
+        while (reader.hasNext()) {
+          int event = reader.next();
+          if (event == XMLStreamConstants.END_ELEMENT) {
+            --depth;
+            continue;
+          }
+          if (event != XMLStreamConstants.START_ELEMENT) {
+            continue;
+          }
+          ++depth;
+          // Only the children of the package element are of interest
+          if (depth != 2) {
+            continue;
+          }
+          String element = reader.getLocalName();
+          EnumSet<PackageDependencyGraph.DependencyType> types =
+              PackageManifest.getDependencyTypes(element);
+          if (!element.equals("name") && types == null) {
+            continue;
+          }
+          String text = reader.getElementText().trim();
+          // Reading the text consumed the end of the element
+          --depth;
+          if (element.equals("name")) {
+            name = text;
+            continue;
+          }
+          for (PackageDependencyGraph.DependencyType type : types) {
+            dependencies.computeIfAbsent(type, key -> new ArrayList<String>()).add(text);
+          }
+        }
+      } finally {
+        reader.close();
+      }
+    } catch (XMLStreamException e) {
+      throw new IOException(String.format("failed to parse '%s'", path), e);
+    }
+    if (name == null || name.isEmpty()) {
+      throw new IOException(String.format("'%s' does not declare a package name", path));
+    }
+    return new PackageManifest(name, dependencies, modifiedTime, size);
+  }
+
+  /**
+   * @return The dependency types declared by an element of a package.xml, or null if the
+   *     element does not declare a dependency.
+   */
+  private static EnumSet<PackageDependencyGraph.DependencyType>
+  getDependencyTypes(String element) {
+    switch (element) {
+      case "depend":
+        return EnumSet.of(
+            PackageDependencyGraph.DependencyType.BUILD,
+            PackageDependencyGraph.DependencyType.BUILD_EXPORT,
+            PackageDependencyGraph.DependencyType.EXEC);
+      case "build_depend":
+        return EnumSet.of(PackageDependencyGraph.DependencyType.BUILD);
+      case "build_export_depend":
+        return EnumSet.of(PackageDependencyGraph.DependencyType.BUILD_EXPORT);
+      case "buildtool_depend":
+        return EnumSet.of(PackageDependencyGraph.DependencyType.BUILDTOOL);
+      case "buildtool_export_depend":
+        return EnumSet.of(PackageDependencyGraph.DependencyType.BUILDTOOL_EXPORT);
+      case "exec_depend":
+        return EnumSet.of(PackageDependencyGraph.DependencyType.EXEC);
+      // Format 1 of package.xml
+      case "run_depend":
+        return EnumSet.of(
+            PackageDependencyGraph.DependencyType.BUILD_EXPORT,
+            PackageDependencyGraph.DependencyType.EXEC);
+      case "test_depend":
+        return EnumSet.of(PackageDependencyGraph.DependencyType.TEST);
+      case "doc_depend":
+        return EnumSet.of(PackageDependencyGraph.DependencyType.DOC);
+      default:
+        return null;
+    }
+  }
+
+  private static XMLInputFactory createInputFactory() {
+    XMLInputFactory factory = XMLInputFactory.newFactory();
+    // Manifests never need external entities or a DTD
+    factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+    factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    return factory;
+  }
+}
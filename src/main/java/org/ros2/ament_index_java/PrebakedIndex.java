@@ -0,0 +1,176 @@
+/* Copyright 2020 Open Source Robotics Foundation, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ros2.ament_index_java;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.String;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A single file holding the resource index of all prefix paths of a workspace.
+ *
+ * The file is meant to be written when an immutable installation, like a container image, is
+ * built. If the system property {@link ResourceIndex#PREBAKED_INDEX_PROPERTY} names such a file,
+ * {@link ResourceIndex} loads its snapshot from the file instead of crawling the prefix paths,
+ * and answers all lookups, including the content of resources, without reading marker files.
+ *
+ * The file records the prefix paths it was created from, and for every prefix path the
+ * modification times of its resource index directories, like an {@link IndexManifest}. It is
+ * only used if the prefix paths are the same and none of the directories changed, otherwise the
+ * prefix paths are crawled as usual.
+ */
+public final class PrebakedIndex {
+  private static final Logger logger = LoggerFactory.getLogger(PrebakedIndex.class);
+
+  private static final int MAGIC = 0x414d5042;  // "AMPB"
+
+  private static final int VERSION = 1;
+
+  private PrebakedIndex() {}
+
+  /**
+   * Write the resource index of prefix paths to a file.
+   *
+   * The file is replaced atomically, so a concurrent reader never sees a partial file. It gets
+   * the default permissions of the process, so that other users can read it.
+   *
+   * @param prefixPaths The prefix paths, in order of precedence.
+   * @param file The file to write.
+   */
+  public static void write(String[] prefixPaths, Path file) throws IOException {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    DataOutputStream stream = new DataOutputStream(output);
+    stream.writeInt(MAGIC);
+    stream.writeInt(VERSION);
+    stream.writeInt(prefixPaths.length);
+    for (String prefixPath : prefixPaths) {
+      byte[] path = prefixPath.getBytes(StandardCharsets.UTF_8);
+      stream.writeInt(path.length);
+      stream.write(path);
+      byte[] manifest = IndexManifest.encode(prefixPath);
+      stream.writeInt(manifest.length);
+      stream.write(manifest);
+    }
+
+    Path absoluteFile = file.toAbsolutePath();
+    Path temporaryFile = MarkerWriter.createTemporaryFile(
+        absoluteFile.getParent(), "." + absoluteFile.getFileName());
+    try {
+      Files.write(temporaryFile, output.toByteArray());
+      Files.move(temporaryFile, absoluteFile, StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(temporaryFile);
+    }
+  }
+
+  /**
+   * Load a snapshot from a file if it matches the prefix paths.
+   *
+   * @param file The file written by {@link #write(String[], Path)}.
+   * @param prefixPaths The prefix paths the snapshot must be of, in order of precedence.
+   * @param memoizeContent Whether the resources keep their content after it was decoded.
+   * @return The snapshot, or null if the file does not exist, cannot be read, was created from
+   *     different prefix paths, is out of date or is corrupt.
+   */
+  static AmentIndexSnapshot read(Path file, String[] prefixPaths, boolean memoizeContent)
+  throws IOException {
+    MappedByteBuffer buffer;
+    try (FileChannel channel = FileChannel.open(file)) {
+      buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    } catch (NoSuchFileException e) {
+      logger.debug("Prebaked index '{}' does not exist", file);
+      return null;
+    } catch (IOException e) {
+      logger.warn("Ignoring prebaked index '{}' that cannot be read: {}", file, e.toString());
+      return null;
+    }
+
+    try {
+      if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+        logger.debug("Ignoring prebaked index '{}' with unknown format", file);
+        return null;
+      }
+      int prefixCount = buffer.getInt();
+      if (prefixCount != prefixPaths.length) {
+        logger.debug("Prebaked index '{}' was created for other prefix paths", file);
+        return null;
+      }
+      List<Map<String, Map<String, Resource>>> prefixResources =
+          new ArrayList<Map<String, Map<String, Resource>>>(prefixCount);
+      for (int i = 0; i < prefixCount; ++i) {
+        if (!prefixPaths[i].equals(IndexManifest.getString(buffer))) {
+          logger.debug("Prebaked index '{}' was created for other prefix paths", file);
+          return null;
+        }
+        int length = buffer.getInt();
+        if (length < 0 || length > buffer.remaining()) {
+          throw new IllegalArgumentException("manifest length " + length + " is out of range");
+        }
+        ByteBuffer manifest = buffer.slice();
+        manifest.limit(length);
+        buffer.position(buffer.position() + length);
+
+        Map<String, Map<String, Resource>> resources =
+            IndexManifest.decode(prefixPaths[i], manifest, memoizeContent);
+        if (resources == null) {
+          logger.debug("Prebaked index '{}' is out of date for '{}'", file, prefixPaths[i]);
+          return null;
+        }
+        prefixResources.add(resources);
+      }
+      return AmentIndexSnapshot.merge(prefixPaths, memoizeContent, prefixResources);
+    } catch (BufferUnderflowException | IllegalArgumentException e) {
+      logger.debug("Ignoring corrupt prebaked index '{}': {}", file, e.getMessage());
+      return null;
+    }
+  }
+
+  /**
+   * Write the resource index of prefix paths to a file.
+   *
+   * The first argument is the file to write, the remaining arguments are the prefix paths.
+   * Without prefix paths, the prefix paths in @{link ResourceIndex.AMENT_PREFIX_PATH_ENV_VAR}
+   * are used.
+   */
+  public static void main(String[] args) throws AmentIndexException, IOException {
+    if (args.length < 1) {
+      System.err.println("usage: PrebakedIndex FILE [PREFIX...]");
+      System.exit(1);
+    }
+    String[] prefixPaths = args.length > 1
+        ? Arrays.copyOfRange(args, 1, args.length) : ResourceIndex.getAmentIndexPaths();
+    Path file = Path.of(args[0]);
+    PrebakedIndex.write(prefixPaths, file);
+    System.out.println("Wrote " + file + " for " + prefixPaths.length + " prefix paths");
+  }
+}
@@ -0,0 +1,66 @@
+/* Copyright 2020 Open Source Robotics Foundation, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ros2.ament_index_java;
+
+import java.lang.String;
+
+/**
+ * The outcome of registering one resource with {@link ResourceIndex#registerResources}.
+ */
+public final class RegistrationResult {
+  /**
+   * The possible outcomes of registering a resource.
+   */
+  public enum Status {
+    /** The marker file was created. */
+    REGISTERED,
+    /** The marker file already existed and was not modified. */
+    ALREADY_EXISTS,
+    /** The marker file could not be created. */
+    FAILED
+  }
+
+  private final Resource resource;
+  private final Status status;
+  private final Exception error;
+
+  RegistrationResult(Resource resource, Status status, Exception error) {
+    this.resource = resource;
+    this.status = status;
+    this.error = error;
+  }
+
+  /**
+   * @return The resource that was registered.
+   */
+  public Resource getResource() {
+    return this.resource;
+  }
+
+  /**
+   * @return The outcome of the registration.
+   */
+  public Status getStatus() {
+    return this.status;
+  }
+
+  /**
+   * @return The reason the registration failed, or null if it did not fail.
+   */
+  public Exception getError() {
+    return this.error;
+  }
+}
@@ -15,13 +15,32 @@
 
 package org.ros2.ament_index_java;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.lang.String;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
 
 public class Resource {
   private final String type;
   private final String name;
   private final String prefixPath;
-  private final String content;
+
+  // null until the content of a lazy resource is loaded
+  private volatile String content;
+
+  // Encoded content of a lazy resource, or null if it is read from the marker file
+  private final ByteBuffer encodedContent;
+
+  // Whether the content of a lazy resource is kept after it was loaded
+  private final boolean memoizeContent;
+
+  // Parsed forms of the content, null until one is first requested
+  private volatile ContentViews contentViews;
 
   /**
    * Construct a resource.
@@ -31,6 +50,8 @@ public class Resource {
     this.name = name;
     this.prefixPath = prefixPath;
     this.content = content;
+    this.encodedContent = null;
+    this.memoizeContent = true;
   }
 
   /**
@@ -40,6 +61,40 @@ public class Resource {
     this(type, name, prefixPath, "");
   }
 
+  /**
+   * Construct a resource whose content is read from its marker file on first access.
+   *
+   * @param memoizeContent If true, the content is kept after it was read, otherwise it is read
+   *     again on every access.
+   */
+  Resource(String type, String name, String prefixPath, boolean memoizeContent) {
+    this.type = type;
+    this.name = name;
+    this.prefixPath = prefixPath;
+    this.content = null;
+    this.encodedContent = null;
+    this.memoizeContent = memoizeContent;
+  }
+
+  /**
+   * Construct a resource whose content is decoded from a buffer on first access.
+   *
+   * @param encodedContent The UTF-8 encoded content. The buffer must not be modified afterwards.
+   * @param memoizeContent If true, the content is kept after it was decoded, otherwise it is
+   *     decoded again on every access.
+   */
+  Resource(
+      String type, String name, String prefixPath, ByteBuffer encodedContent,
+      boolean memoizeContent)
+  {
+    this.type = type;
+    this.name = name;
+    this.prefixPath = prefixPath;
+    this.content = null;
+    this.encodedContent = encodedContent;
+    this.memoizeContent = memoizeContent;
+  }
+
   /**
    * @return The type of the resource.
    */
@@ -62,9 +117,112 @@ public class Resource {
   }
 
   /**
+   * Get the content of the resource.
+   *
+   * The content of resources found in the index is read from the marker file, or from the index
+   * manifest of the prefix path, when this method is first called.
+   *
    * @return The content of the resource.
+   * @throws UncheckedIOException If the marker file cannot be read.
    */
   public String getContent() {
-    return this.content;
+    String content = this.content;
+    if (content != null) {
+      return content;
+    }
+    if (this.encodedContent != null) {
+      content = StandardCharsets.UTF_8.decode(this.encodedContent.duplicate()).toString();
+    } else {
+      Path markerPath = Path.of(
+          this.prefixPath, ResourceIndex.RESOURCE_INDEX_SUBDIRECTORY, this.type, this.name);
+      try {
+        byte[] bytes = Files.readAllBytes(markerPath);
+        IndexMetrics.markerRead(this.prefixPath, bytes.length);
+        content = new String(bytes, StandardCharsets.UTF_8);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+    if (this.memoizeContent) {
+      this.content = content;
+    }
+    return content;
+  }
+
+  /**
+   * Get the lines of the content.
+   *
+   * Lines are split like {@link String#lines()}. The result is parsed once and kept with the
+   * resource, unless the content of the resource is not memoized.
+   *
+   * @return An unmodifiable list of the lines, as views of the content.
+   * @throws UncheckedIOException If the marker file cannot be read.
+   */
+  public List<CharSequence> getContentLines() {
+    return this.getContentViews().getLines();
+  }
+
+  /**
+   * Get the fields of the content.
+   *
+   * Fields are separated by the delimiter or by line breaks. Whitespace around fields is removed,
+   * and empty fields are omitted. The result is parsed once and kept with the resource, unless
+   * the content of the resource is not memoized.
+   *
+   * @param delimiter The character separating the fields, for example ';'.
+   * @return An unmodifiable list of the fields, as views of the content.
+   * @throws UncheckedIOException If the marker file cannot be read.
+   */
+  public List<CharSequence> getContentFields(char delimiter) {
+    return this.getContentViews().getFields(delimiter);
+  }
+
+  /**
+   * Get the key/value pairs of the content.
+   *
+   * Every line containing the separator is split at its first occurance into a key and a value.
+   * Whitespace around keys and values is removed, and lines without the separator are ignored.
+   * If a key occurs more than once, the last value is kept. The result is parsed once and kept
+   * with the resource, unless the content of the resource is not memoized.
+   *
+   * @param separator The character separating keys from values, for example '='.
+   * @return An unmodifiable map from key to value, in the order of the keys in the content.
+   * @throws UncheckedIOException If the marker file cannot be read.
+   */
+  public Map<String, CharSequence> getContentKeyValues(char separator) {
+    return this.getContentViews().getKeyValues(separator);
+  }
+
+  /**
+   * Get the paths listed in the content.
+   *
+   * The paths are the fields of the content, see {@link #getContentFields(char)}. They are
+   * returned as they are written in the content, relative paths are not resolved.
+   *
+   * @param delimiter The character separating the paths, for example ';'.
+   * @return An unmodifiable list of paths.
+   * @throws UncheckedIOException If the marker file cannot be read.
+   */
+  public List<Path> getContentPaths(char delimiter) {
+    return this.getContentViews().getPaths(delimiter);
+  }
+
+  private ContentViews getContentViews() {
+    ContentViews contentViews = this.contentViews;
+    if (contentViews != null) {
+      return contentViews;
+    }
+    contentViews = new ContentViews(this.getContent());
+    if (this.memoizeContent) {
+      this.contentViews = contentViews;
+    }
+    return contentViews;
+  }
+
+  /**
+   * @return true if the content is held in memory, false if it would be read from the marker file.
+   */
+  boolean isContentLoaded() {
+    return this.content != null;
   }
 }
@@ -17,12 +17,29 @@ package org.ros2.ament_index_java;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.lang.String;
 import java.nio.file.Files;
 import java.nio.file.OpenOption;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * Implementation of the ament resource index.
@@ -30,6 +47,8 @@ import java.util.HashSet;
  * See the following document for information on the purpose and design of the resource index:
  *
  * https://github.com/ament/ament_cmake/blob/master/ament_cmake_core/doc/resource_index.md
+ *
+ * Lookups are answered from a cached {@link AmentIndexSnapshot}, see {@link #getSnapshot()}.
  */
 public class ResourceIndex {
   /**
@@ -43,6 +62,288 @@ public class ResourceIndex {
   public static final String RESOURCE_INDEX_SUBDIRECTORY = Path.of(
       "share", "ament_index", "resource_index").toString();
 
+  /**
+   * System property with the path of a {@link PrebakedIndex} file to load snapshots from.
+   */
+  public static final String PREBAKED_INDEX_PROPERTY = "ament_index.prebaked_index";
+
+  private static final Logger logger = LoggerFactory.getLogger(ResourceIndex.class);
+
+  /**
+   * Number of threads used to crawl the prefix paths.
+   */
+  private static volatile int crawlParallelism = 1;
+
+  /**
+   * Whether resources keep their content in memory once it was read.
+   */
+  private static volatile boolean memoizeContent = true;
+
+  /**
+   * Snapshot backing the static lookups, together with the environment value it was created for.
+   *
+   * Every modification installs a new instance, so a crawl that started before a modification
+   * cannot install its outdated result.
+   */
+  private static final AtomicReference<CachedSnapshot> cachedSnapshot =
+      new AtomicReference<CachedSnapshot>(new CachedSnapshot());
+
+  private static final ResourceLocks resourceLocks = new ResourceLocks();
+
+  private static final class CachedSnapshot {
+    // null if there is no valid snapshot
+    private final String envValue;
+    private final AmentIndexSnapshot snapshot;
+    // Keeps the snapshot up to date if watching is enabled, otherwise null
+    private final AmentIndexWatcher watcher;
+
+    private CachedSnapshot() {
+      this.envValue = null;
+      this.snapshot = null;
+      this.watcher = null;
+    }
+
+    private CachedSnapshot(String envValue, AmentIndexSnapshot snapshot) {
+      this.envValue = envValue;
+      this.snapshot = snapshot;
+      this.watcher = null;
+    }
+
+    private CachedSnapshot(String envValue, AmentIndexWatcher watcher) {
+      this.envValue = envValue;
+      this.snapshot = null;
+      this.watcher = watcher;
+    }
+
+    private AmentIndexSnapshot getSnapshot() {
+      if (this.watcher != null) {
+        return this.watcher.getSnapshot();
+      }
+      return this.snapshot;
+    }
+
+    private void close() {
+      if (this.watcher != null) {
+        try {
+          this.watcher.close();
+        } catch (IOException e) {
+          logger.warn("Failed to stop watching the resource index: {}", e.getMessage());
+        }
+      }
+    }
+  }
+
+  /**
+   * Get the snapshot used to answer lookups.
+   *
+   * The prefix paths are crawled on first use, and again whenever
+   * @{link ResourceIndex.AMENT_PREFIX_PATH_ENV_VAR} changes or the snapshot is invalidated.
+   * Instead of crawling, the snapshot can be loaded from a {@link PrebakedIndex}, see
+   * {@link #PREBAKED_INDEX_PROPERTY}.
+   *
+   * @return A snapshot of the ament index.
+   */
+  public static AmentIndexSnapshot getSnapshot() throws AmentIndexException, IOException {
+    String envValue = System.getenv(ResourceIndex.AMENT_PREFIX_PATH_ENV_VAR);
+    CachedSnapshot cached = ResourceIndex.cachedSnapshot.get();
+    if (cached.envValue != null && cached.envValue.equals(envValue)) {
+      IndexMetrics.snapshotCacheAccessed(true);
+      return cached.getSnapshot();
+    }
+    IndexMetrics.snapshotCacheAccessed(false);
+    AmentIndexSnapshot snapshot = ResourceIndex.createSnapshot();
+    // Fails if the index was modified or invalidated while crawling
+    if (ResourceIndex.cachedSnapshot.compareAndSet(
+        cached, new CachedSnapshot(envValue, snapshot)))
+    {
+      cached.close();
+    }
+    return snapshot;
+  }
+
+  /**
+   * Create a snapshot of the prefix paths in the environment.
+   *
+   * If {@link #PREBAKED_INDEX_PROPERTY} is set and the prebaked index matches the prefix paths,
+   * the snapshot is loaded from it, otherwise the prefix paths are crawled.
+   */
+  private static AmentIndexSnapshot createSnapshot() throws AmentIndexException, IOException {
+    return ResourceIndex.createSnapshot(ResourceIndex.getAmentIndexPaths());
+  }
+
+  // Also used by the watcher to rescan with the same settings
+  private static AmentIndexSnapshot createSnapshot(String[] prefixPaths) throws IOException {
+    String prebakedIndex = System.getProperty(ResourceIndex.PREBAKED_INDEX_PROPERTY);
+    if (prebakedIndex != null) {
+      AmentIndexSnapshot snapshot = PrebakedIndex.read(
+          Path.of(prebakedIndex), prefixPaths, ResourceIndex.memoizeContent);
+      if (snapshot != null) {
+        return snapshot;
+      }
+      logger.info(
+          "Prebaked index '{}' does not match the prefix paths, crawling them instead",
+          prebakedIndex);
+    }
+    return AmentIndexSnapshot.create(
+        prefixPaths, ResourceIndex.crawlParallelism, ResourceIndex.memoizeContent);
+  }
+
+  /**
+   * Set the number of threads used to crawl the prefix paths.
+   *
+   * Crawling in parallel helps when the prefix paths are on a filesystem with a high latency, like
+   * a network mount. The precedence of the prefix paths does not depend on the parallelism.
+   * Takes effect the next time the prefix paths are crawled.
+   *
+   * @param parallelism The number of threads, 1 to crawl on the calling thread. Defaults to 1.
+   */
+  public static void setCrawlParallelism(int parallelism) {
+    if (parallelism < 1) {
+      throw new IllegalArgumentException("parallelism must be at least 1");
+    }
+    ResourceIndex.crawlParallelism = parallelism;
+  }
+
+  /**
+   * Set whether resources keep their content in memory once it was read.
+   *
+   * Without memoization, every call to {@link Resource#getContent()} reads the marker file again,
+   * which saves memory if the content of many resources is only needed once.
+   * Takes effect the next time the prefix paths are crawled.
+   *
+   * @param memoize true to keep the content of resources in memory. Defaults to true.
+   */
+  public static void setMemoizeContent(boolean memoize) {
+    ResourceIndex.memoizeContent = memoize;
+  }
+
+  /**
+   * Install a listener receiving measurements of lookups in the index.
+   *
+   * The listener measures lookups of both this class and {@link PackageIndex}, as well as the
+   * filesystem accesses of {@link AmentIndex}. Without a listener, measuring costs a single
+   * volatile read per lookup.
+   *
+   * @param listener The listener, or null to stop measuring. Defaults to null.
+   */
+  public static void setMetricsListener(IndexMetricsListener listener) {
+    IndexMetrics.listener = listener;
+  }
+
+  /**
+   * Keep the snapshot used to answer lookups up to date by watching the filesystem.
+   *
+   * Calling this again while already watching returns the same watcher.
+   * Watching ends when @{link ResourceIndex.AMENT_PREFIX_PATH_ENV_VAR} changes or
+   * {@link #stopWatching()} is called.
+   *
+   * @return The watcher, which can be used to register listeners.
+   */
+  public static synchronized AmentIndexWatcher startWatching()
+  throws AmentIndexException, IOException {
+    String envValue = System.getenv(ResourceIndex.AMENT_PREFIX_PATH_ENV_VAR);
+    CachedSnapshot cached = ResourceIndex.cachedSnapshot.get();
+    if (cached.watcher != null && cached.envValue.equals(envValue)) {
+      return cached.watcher;
+    }
+    AmentIndexWatcher watcher = new AmentIndexWatcher(
+        ResourceIndex.createSnapshot(), ResourceIndex::createSnapshot);
+    ResourceIndex.replaceCachedSnapshot(new CachedSnapshot(envValue, watcher));
+    return watcher;
+  }
+
+  /**
+   * Stop watching the filesystem and discard the cached snapshot.
+   */
+  public static synchronized void stopWatching() {
+    ResourceIndex.replaceCachedSnapshot(new CachedSnapshot());
+  }
+
+  /**
+   * Discard the cached snapshot.
+   *
+   * The next lookup crawls the prefix paths again, or, while watching, the prefix paths are
+   * crawled again immediately.
+   * Call this after the resource index was modified outside of this class.
+   */
+  public static void invalidate() {
+    CachedSnapshot cached = ResourceIndex.cachedSnapshot.get();
+    if (cached.watcher != null) {
+      try {
+        cached.watcher.rescan();
+        return;
+      } catch (IOException e) {
+        logger.warn("Failed to rescan the resource index: {}", e.getMessage());
+      }
+    }
+    ResourceIndex.replaceCachedSnapshot(new CachedSnapshot());
+  }
+
+  private static void replaceCachedSnapshot(CachedSnapshot cached) {
+    ResourceIndex.cachedSnapshot.getAndSet(cached).close();
+  }
+
+  /**
+   * Bring the cached snapshot up to date after a marker file was created or deleted.
+   *
+   * @see #resourcesChanged(Collection)
+   */
+  private static void resourceChanged(String prefixPath, String resourceType, String resourceName)
+  throws IOException {
+    ResourceIndex.resourcesChanged(
+        Collections.singletonList(new Resource(resourceType, resourceName, prefixPath)));
+  }
+
+  /**
+   * Bring the cached snapshot up to date after marker files were created or deleted.
+   *
+   * Without a watcher, a copy of the cached snapshot with the resources read again is installed,
+   * so lookups running concurrently see the index either before or after the changes. The map of
+   * every affected resource type is copied once, however many resources changed.
+   *
+   * @param resources The changed resources, only their prefix path, type and name are used.
+   */
+  private static void resourcesChanged(Collection<Resource> resources) throws IOException {
+    // Resource type -> names
+    Map<String, Set<String>> resourceNames = new HashMap<String, Set<String>>();
+    for (Resource resource : resources) {
+      resourceNames.computeIfAbsent(resource.getType(), key -> new HashSet<String>())
+          .add(resource.getName());
+    }
+    // Reading and publishing under the lock keeps concurrent updates of the resources in order
+    int[] locked = ResourceIndex.resourceLocks.lock(resourceNames);
+    try {
+      Map<String, Map<String, Resource>> read = null;
+      String[] readPrefixPaths = null;
+      while (true) {
+        CachedSnapshot cached = ResourceIndex.cachedSnapshot.get();
+        if (cached.watcher != null) {
+          for (Resource resource : resources) {
+            cached.watcher.update(
+                resource.getPrefixPath(), resource.getType(), resource.getName());
+          }
+          return;
+        }
+        CachedSnapshot updated;
+        if (cached.snapshot == null) {
+          updated = new CachedSnapshot();
+        } else {
+          // Read outside of the retries, unless the prefix paths changed in the meantime
+          if (!Arrays.equals(readPrefixPaths, cached.snapshot.getPrefixPaths())) {
+            read = cached.snapshot.readResources(resourceNames);
+            readPrefixPaths = cached.snapshot.getPrefixPaths();
+          }
+          updated = new CachedSnapshot(cached.envValue, cached.snapshot.withResources(read));
+        }
+        if (ResourceIndex.cachedSnapshot.compareAndSet(cached, updated)) {
+          return;
+        }
+      }
+    } finally {
+      ResourceIndex.resourceLocks.unlock(locked);
+    }
+  }
+
   /**
    * Get the content of a resource.
    *
@@ -59,16 +360,10 @@ public class ResourceIndex {
       throw new AmentIndexException("resource name must not be empty");
     }
 
-    String[] searchPaths = ResourceIndex.getAmentIndexPaths();
-    for (String basePath : searchPaths) {
-      Path resourcePath = Path.of(
-          basePath, RESOURCE_INDEX_SUBDIRECTORY, resourceType, resourceName);
-      File resourceFile = resourcePath.toFile();
-      if (resourceFile.isFile()) {
-        return new Resource(resourceType, resourceName, basePath, Files.readString(resourcePath));
-      }
-    }
-    return null;
+    long start = IndexMetrics.start();
+    Resource resource = ResourceIndex.getSnapshot().getResource(resourceType, resourceName);
+    IndexMetrics.lookupCompleted("ResourceIndex.getResource", start, resource != null);
+    return resource;
   }
 
   /**
@@ -86,34 +381,143 @@ public class ResourceIndex {
       throw new AmentIndexException("resource type must not be empty");
     }
 
-    String[] searchPaths = ResourceIndex.getAmentIndexPaths();
+    long start = IndexMetrics.start();
+    Resource[] resources = ResourceIndex.getSnapshot().getResources(resourceType);
+    IndexMetrics.lookupCompleted("ResourceIndex.getResources", start, resources.length > 0);
+    return resources;
+  }
 
-    ArrayList<Resource> resources = new ArrayList<Resource>();
-    HashSet<String> names = new HashSet<String>();  // used to detect duplicates
-    for (String basePath : searchPaths) {
-      Path resourceDirectoryPath = Path.of(
-          basePath, RESOURCE_INDEX_SUBDIRECTORY, resourceType);
-      File resourceDirectoryFile = resourceDirectoryPath.toFile();
-      // Ignore if not a directory
-      if (!resourceDirectoryFile.isDirectory()) {
-        continue;
-      }
-      File[] directoryFiles = resourceDirectoryFile.listFiles();
-      for (File file : directoryFiles) {
-        String fileName = file.getName();
-        // Ignore files starting with a dot
-        if (fileName.startsWith(".")) {
-          continue;
-        }
-        // Only add the first occurance to the result
-        if (!names.contains(fileName)) {
-          names.add(fileName);
-          resources.add(
-              new Resource(resourceType, fileName, basePath, Files.readString(file.toPath())));
-        }
-      }
+  /**
+   * Stream all resources for a given resource type.
+   *
+   * The resources are taken from the cached snapshot. To read the filesystem lazily while the
+   * stream is consumed instead, use {@link AmentIndex#streamResources(String)}.
+   *
+   * @param resourceType The type of resource. Must not be empty.
+   * @return A sequential stream of resources.
+   */
+  public static Stream<Resource>
+  streamResources(String resourceType) throws AmentIndexException, IOException {
+    return ResourceIndex.getSnapshot().streamResources(resourceType);
+  }
+
+  /**
+   * Get several resources of the same type at once.
+   *
+   * If the same resource exists in multiple prefix paths, only the resource from the first
+   * prefix path is returned.
+   *
+   * @param resourceType The type of the resources. Must not be empty.
+   * @param resourceNames The names of the resources. Must not be empty.
+   * @return A map from resource name to resource, in the order of the given names. Names of
+   *     resources that are not found are not included.
+   */
+  public static Map<String, Resource>
+  getResources(String resourceType, Collection<String> resourceNames)
+  throws AmentIndexException, IOException {
+    long start = IndexMetrics.start();
+    Map<String, Resource> resources =
+        ResourceIndex.getSnapshot().getResources(resourceType, resourceNames);
+    IndexMetrics.lookupCompleted(
+        "ResourceIndex.getResources", start, resources.size() == resourceNames.size());
+    return resources;
+  }
+
+  /**
+   * Get all resource names for a given resource type.
+   *
+   * Unlike {@link #getResources(String)}, this only needs to list the resource index directories.
+   *
+   * @param resourceType The type of resource. Must not be empty.
+   * @return An array of resource names.
+   */
+  public static String[]
+  getResourceNames(String resourceType) throws AmentIndexException, IOException {
+    if (resourceType.isEmpty()) {
+      throw new AmentIndexException("resource type must not be empty");
     }
-    return resources.toArray(new Resource[resources.size()]);
+
+    long start = IndexMetrics.start();
+    String[] resourceNames = ResourceIndex.getSnapshot().getResourceNames(resourceType);
+    IndexMetrics.lookupCompleted(
+        "ResourceIndex.getResourceNames", start, resourceNames.length > 0);
+    return resourceNames;
+  }
+
+  /**
+   * Get the resources of a type with names in a range.
+   *
+   * @param resourceType The type of resource. Must not be empty.
+   * @param fromName The lowest name, inclusive, or null for no lower bound.
+   * @param toName The highest name, exclusive, or null for no upper bound.
+   * @return The resources, sorted by name.
+   * @see AmentIndexSnapshot#getResourcesInRange(String, String, String)
+   */
+  public static Resource[]
+  getResourcesInRange(String resourceType, String fromName, String toName)
+  throws AmentIndexException, IOException {
+    long start = IndexMetrics.start();
+    Resource[] resources =
+        ResourceIndex.getSnapshot().getResourcesInRange(resourceType, fromName, toName);
+    IndexMetrics.lookupCompleted(
+        "ResourceIndex.getResourcesInRange", start, resources.length > 0);
+    return resources;
+  }
+
+  /**
+   * Get the resources of a type with names starting with a prefix.
+   *
+   * @param resourceType The type of resource. Must not be empty.
+   * @param prefix The prefix of the names.
+   * @return The resources, sorted by name.
+   * @see AmentIndexSnapshot#getResourcesWithPrefix(String, String)
+   */
+  public static Resource[] getResourcesWithPrefix(String resourceType, String prefix)
+  throws AmentIndexException, IOException {
+    long start = IndexMetrics.start();
+    Resource[] resources = ResourceIndex.getSnapshot().getResourcesWithPrefix(resourceType, prefix);
+    IndexMetrics.lookupCompleted(
+        "ResourceIndex.getResourcesWithPrefix", start, resources.length > 0);
+    return resources;
+  }
+
+  /**
+   * Get the resources of a type with names matching a glob pattern.
+   *
+   * @param resourceType The type of resource. Must not be empty.
+   * @param glob The pattern the whole name must match, for example "*_msgs".
+   * @return The resources, sorted by name.
+   * @see AmentIndexSnapshot#getResourcesMatching(String, String)
+   */
+  public static Resource[] getResourcesMatching(String resourceType, String glob)
+  throws AmentIndexException, IOException {
+    long start = IndexMetrics.start();
+    Resource[] resources = ResourceIndex.getSnapshot().getResourcesMatching(resourceType, glob);
+    IndexMetrics.lookupCompleted(
+        "ResourceIndex.getResourcesMatching", start, resources.length > 0);
+    return resources;
+  }
+
+  /**
+   * Get the names of all resource types.
+   *
+   * @return The sorted names of the resource type directories in all prefix paths.
+   */
+  public static String[] getResourceTypes() throws AmentIndexException, IOException {
+    return ResourceIndex.getSnapshot().getResourceTypes();
+  }
+
+  /**
+   * Get all resources of all resource types.
+   *
+   * If the same resource exists in multiple prefix paths, only the resource from the first
+   * prefix path is returned.
+   *
+   * @return An unmodifiable map from resource type to a map from resource name to resource.
+   */
+  public static Map<String, Map<String, Resource>>
+  getAllResources() throws AmentIndexException, IOException {
+    return ResourceIndex.getSnapshot().getAllResources();
   }
 
   /**
@@ -146,9 +550,7 @@ public class ResourceIndex {
       }
       outputPaths.add(path);
     }
-    for (String output : outputPaths) {
-    }
-    return outputPaths.toArray(searchPaths);
+    return outputPaths.toArray(new String[outputPaths.size()]);
   }
 
   /**
@@ -166,22 +568,104 @@ public class ResourceIndex {
       throw new AmentIndexException("resource name must not be empty");
     }
 
-    // Get search paths
-    String[] searchPaths = ResourceIndex.getAmentIndexPaths();
-    for (String basePath : searchPaths) {
-      Path resourcePath = Path.of(
-          basePath, RESOURCE_INDEX_SUBDIRECTORY, resourceType, resourceName);
-      if (resourcePath.toFile().exists()) {
-        return basePath;
-      }
+    try {
+      long start = IndexMetrics.start();
+      String prefixPath = ResourceIndex.getSnapshot().hasResource(resourceType, resourceName);
+      IndexMetrics.lookupCompleted("ResourceIndex.hasResource", start, prefixPath != null);
+      return prefixPath;
+    } catch (IOException e) {
+      throw new AmentIndexException("failed to read the resource index", e);
     }
-    return null;
+  }
+
+  /**
+   * Set the executor running the asynchronous lookups.
+   *
+   * By default, lookups run on at most four daemon threads. While too many lookups are waiting
+   * for them, new lookups fail with a {@link java.util.concurrent.RejectedExecutionException}
+   * instead of running on the calling thread.
+   * On Java 21 and later, an executor starting a virtual thread per task can be used instead.
+   *
+   * @param executor The executor, or null to use the default executor.
+   */
+  public static void setAsyncExecutor(Executor executor) {
+    AsyncLookups.setExecutor(executor);
+  }
+
+  /**
+   * Get a resource without blocking the calling thread.
+   *
+   * Concurrent calls with the same arguments share a single lookup.
+   *
+   * @param resourceType The type of the resource. Must not be empty.
+   * @param resourceName The name of the resource. Must not be empty.
+   * @return A future completed with the resource, or null if the resource is not found.
+   * @see #getResource(String, String)
+   */
+  public static CompletableFuture<Resource>
+  getResourceAsync(String resourceType, String resourceName) {
+    return AsyncLookups.submit(
+        Arrays.<Object>asList("getResource", resourceType, resourceName),
+        () -> ResourceIndex.getResource(resourceType, resourceName));
+  }
+
+  /**
+   * Get all resources for a given resource type without blocking the calling thread.
+   *
+   * Concurrent calls with the same arguments share a single lookup.
+   *
+   * @param resourceType The type of resource. Must not be empty.
+   * @return A future completed with an array of resources.
+   * @see #getResources(String)
+   */
+  public static CompletableFuture<Resource[]> getResourcesAsync(String resourceType) {
+    return AsyncLookups.submit(
+        Arrays.<Object>asList("getResources", resourceType),
+        () -> ResourceIndex.getResources(resourceType));
+  }
+
+  /**
+   * Get several resources of the same type without blocking the calling thread.
+   *
+   * Concurrent calls with the same arguments share a single lookup.
+   *
+   * @param resourceType The type of the resources. Must not be empty.
+   * @param resourceNames The names of the resources. Must not be empty.
+   * @return A future completed with a map from resource name to resource.
+   * @see #getResources(String, Collection)
+   */
+  public static CompletableFuture<Map<String, Resource>>
+  getResourcesAsync(String resourceType, Collection<String> resourceNames) {
+    List<String> names = new ArrayList<String>(resourceNames);
+    return AsyncLookups.submit(
+        Arrays.<Object>asList("getResources", resourceType, names),
+        () -> ResourceIndex.getResources(resourceType, names));
+  }
+
+  /**
+   * Check if a resource exists without blocking the calling thread.
+   *
+   * Concurrent calls with the same arguments share a single lookup.
+   *
+   * @param resourceType The type of the resource. Must not be empty.
+   * @param resourceName The name of the resource. Must not be empty.
+   * @return A future completed with the prefix path of the resource, or null if the resource is
+   *     not found.
+   * @see #hasResource(String, String)
+   */
+  public static CompletableFuture<String>
+  hasResourceAsync(String resourceType, String resourceName) {
+    return AsyncLookups.submit(
+        Arrays.<Object>asList("hasResource", resourceType, resourceName),
+        () -> ResourceIndex.hasResource(resourceType, resourceName));
   }
 
   /**
    * Register a resource to the index.
    *
    * If the resource already exists, nothing happens and this method returns false.
+   * The marker file appears with its complete content, readers never see a partial marker.
+   * If the prefix path has an {@link IndexManifest}, it is updated.
    *
    * @param resourceType The type of the resource. Must not be empty.
    * @param resourceName The name of the resource. Must not be empty.
@@ -201,24 +685,24 @@ public class ResourceIndex {
     }
 
     String[] amentIndexPaths = ResourceIndex.getAmentIndexPaths();
-    Path resourcePath = Path.of(
-        prefixPath, RESOURCE_INDEX_SUBDIRECTORY, resourceType, resourceName);
-    File resourceFile = resourcePath.toFile();
+    Path typeDirectory = Path.of(prefixPath, RESOURCE_INDEX_SUBDIRECTORY, resourceType);
 
     // Ensure path to file exists
-    resourceFile.getParentFile().mkdirs();
+    Files.createDirectories(typeDirectory);
 
-    // Create the file
-    if (!resourceFile.createNewFile()) {
-      // File already exists
+    // Create the file with its content, unless it already exists
+    if (!MarkerWriter.write(typeDirectory, resourceName, content, false)) {
       return false;
     }
 
-    // Write content to file if given
-    if (!content.isEmpty()) {
-      Files.writeString(resourcePath, content);
+    // Keep the manifest of the prefix path up to date
+    if (IndexManifest.exists(prefixPath)) {
+      IndexManifest.update(prefixPath);
     }
 
+    // The cached snapshot no longer reflects the index
+    ResourceIndex.resourceChanged(prefixPath, resourceType, resourceName);
+
     return true;
   }
 
@@ -256,4 +740,211 @@ public class ResourceIndex {
     return ResourceIndex.registerResource(
       resource.getType(), resource.getName(), resource.getPrefixPath(), resource.getContent());
   }
+
+  /**
+   * Register several resources to the index.
+   *
+   * @param resources The resources to register.
+   * @return The outcome for each resource, in the order of the given resources.
+   * @see #registerResources(Collection, boolean)
+   */
+  public static List<RegistrationResult>
+  registerResources(Collection<Resource> resources) throws AmentIndexException, IOException {
+    return ResourceIndex.registerResources(resources, false);
+  }
+
+  /**
+   * Register several resources to the index.
+   *
+   * Every marker file appears with its complete content or not at all, even if the process
+   * crashes while registering. Existing resources are not modified.
+   * The resources are grouped by resource type directory, so that each directory is created
+   * once, and the {@link IndexManifest} of each affected prefix path is regenerated once.
+   *
+   * A failure to write one marker file does not stop the other resources from being registered,
+   * the failure is reported in the result of that resource instead.
+   *
+   * @param resources The resources to register. None of them may be null.
+   * @param sync If true, the marker files and their directories are flushed to the storage
+   *     device before this method returns, so that the registration survives a power loss.
+   * @return The outcome for each resource, in the order of the given resources.
+   */
+  public static List<RegistrationResult>
+  registerResources(Collection<Resource> resources, boolean sync)
+  throws AmentIndexException, IOException {
+    // Validate everything before touching the filesystem
+    for (Resource resource : resources) {
+      if (resource == null) {
+        throw new AmentIndexException("resource object is null");
+      }
+      if (resource.getType().isEmpty()) {
+        throw new AmentIndexException("resource type must not be empty");
+      }
+      if (resource.getName().isEmpty()) {
+        throw new AmentIndexException("resource name must not be empty");
+      }
+    }
+
+    // Resource type directory -> positions of its resources in the input
+    List<Resource> resourceList = new ArrayList<Resource>(resources);
+    Map<Path, List<Integer>> resourcesByDirectory = new LinkedHashMap<Path, List<Integer>>();
+    for (int i = 0; i < resourceList.size(); ++i) {
+      Resource resource = resourceList.get(i);
+      Path typeDirectory = Path.of(
+          resource.getPrefixPath(), RESOURCE_INDEX_SUBDIRECTORY, resource.getType());
+      resourcesByDirectory.computeIfAbsent(
+          typeDirectory, key -> new ArrayList<Integer>()).add(i);
+    }
+
+    RegistrationResult[] results = new RegistrationResult[resourceList.size()];
+    Set<String> modifiedPrefixPaths = new LinkedHashSet<String>();
+    for (Map.Entry<Path, List<Integer>> entry : resourcesByDirectory.entrySet()) {
+      Path typeDirectory = entry.getKey();
+      IOException directoryError = null;
+      try {
+        Files.createDirectories(typeDirectory);
+      } catch (IOException e) {
+        directoryError = e;
+      }
+
+      boolean directoryModified = false;
+      for (int i : entry.getValue()) {
+        Resource resource = resourceList.get(i);
+        if (directoryError != null) {
+          results[i] = new RegistrationResult(
+              resource, RegistrationResult.Status.FAILED, directoryError);
+          continue;
+        }
+        try {
+          if (MarkerWriter.write(
+              typeDirectory, resource.getName(), resource.getContent(), sync))
+          {
+            results[i] = new RegistrationResult(
+                resource, RegistrationResult.Status.REGISTERED, null);
+            directoryModified = true;
+          } else {
+            results[i] = new RegistrationResult(
+                resource, RegistrationResult.Status.ALREADY_EXISTS, null);
+          }
+        } catch (IOException | UncheckedIOException e) {
+          results[i] = new RegistrationResult(resource, RegistrationResult.Status.FAILED, e);
+        }
+      }
+
+      if (directoryModified) {
+        modifiedPrefixPaths.add(resourceList.get(entry.getValue().get(0)).getPrefixPath());
+        if (sync) {
+          MarkerWriter.syncDirectory(typeDirectory);
+        }
+      }
+    }
+
+    if (modifiedPrefixPaths.isEmpty()) {
+      return Arrays.asList(results);
+    }
+
+    // Keep the manifests of the prefix paths up to date
+    for (String prefixPath : modifiedPrefixPaths) {
+      if (IndexManifest.exists(prefixPath)) {
+        IndexManifest.update(prefixPath);
+      }
+    }
+
+    // Update the cached snapshot once for all registered resources instead of crawling again
+    List<Resource> registered = new ArrayList<Resource>();
+    for (RegistrationResult result : results) {
+      if (result.getStatus() == RegistrationResult.Status.REGISTERED) {
+        registered.add(result.getResource());
+      }
+    }
+    ResourceIndex.resourcesChanged(registered);
+
+    return Arrays.asList(results);
+  }
+
+  /**
+   * Remove a resource from the index.
+   *
+   * Only the marker file in the given prefix path is deleted. If the same resource exists in a
+   * later prefix path, it becomes visible in its place.
+   * If the prefix path has an {@link IndexManifest}, it is updated.
+   *
+   * @param resourceType The type of the resource. Must not be empty.
+   * @param resourceName The name of the resource. Must not be empty.
+   * @param prefixPath The prefix path of the ament index.
+   * @return true if the resource was removed, false if it does not exist in the prefix path.
+   */
+  public static boolean
+  unregisterResource(String resourceType, String resourceName, String prefixPath)
+  throws AmentIndexException, IOException {
+    if (resourceType.isEmpty()) {
+      throw new AmentIndexException("resource type must not be empty");
+    }
+    if (resourceName.isEmpty()) {
+      throw new AmentIndexException("resource name must not be empty");
+    }
+
+    Path typeDirectory = Path.of(prefixPath, RESOURCE_INDEX_SUBDIRECTORY, resourceType);
+    if (!MarkerWriter.delete(typeDirectory, resourceName, false)) {
+      return false;
+    }
+
+    // Keep the manifest of the prefix path up to date
+    if (IndexManifest.exists(prefixPath)) {
+      IndexManifest.update(prefixPath);
+    }
+
+    // The cached snapshot no longer reflects the index
+    ResourceIndex.resourceChanged(prefixPath, resourceType, resourceName);
+
+    return true;
+  }
+
+  /**
+   * Remove the resources with one name from several resource types of a prefix path.
+   *
+   * The manifest of the prefix path is updated once, after all markers were deleted.
+   *
+   * @param resourceTypes The resource types. Must not be empty strings.
+   * @param resourceName The name of the resources. Must not be empty.
+   * @param prefixPath The prefix path of the ament index.
+   * @return The sorted resource types that a resource was removed from.
+   */
+  static String[]
+  unregisterResources(Collection<String> resourceTypes, String resourceName, String prefixPath)
+  throws AmentIndexException, IOException {
+    for (String resourceType : resourceTypes) {
+      if (resourceType.isEmpty()) {
+        throw new AmentIndexException("resource type must not be empty");
+      }
+    }
+    if (resourceName.isEmpty()) {
+      throw new AmentIndexException("resource name must not be empty");
+    }
+
+    List<String> removedTypes = new ArrayList<String>();
+    for (String resourceType : new LinkedHashSet<String>(resourceTypes)) {
+      Path typeDirectory = Path.of(prefixPath, RESOURCE_INDEX_SUBDIRECTORY, resourceType);
+      if (MarkerWriter.delete(typeDirectory, resourceName, false)) {
+        removedTypes.add(resourceType);
+      }
+    }
+    if (removedTypes.isEmpty()) {
+      return new String[0];
+    }
+
+    // Keep the manifest of the prefix path up to date
+    if (IndexManifest.exists(prefixPath)) {
+      IndexManifest.update(prefixPath);
+    }
+
+    // The cached snapshot no longer reflects the index
+    for (String resourceType : removedTypes) {
+      ResourceIndex.resourceChanged(prefixPath, resourceType, resourceName);
+    }
+
+    String[] result = removedTypes.toArray(new String[removedTypes.size()]);
+    Arrays.sort(result);
+    return result;
+  }
 }
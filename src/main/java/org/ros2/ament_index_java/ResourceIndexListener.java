@@ -0,0 +1,61 @@
+/* Copyright 2020 Open Source Robotics Foundation, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ros2.ament_index_java;
+
+/**
+ * Receives notifications about changes to the visible resources of a watched index.
+ *
+ * A resource is visible if it is the first occurance of its name in the prefix paths.
+ * All methods are called from the thread that detected the change, and have an empty default
+ * implementation.
+ *
+ * @see AmentIndexWatcher
+ */
+public interface ResourceIndexListener {
+  /**
+   * A resource became visible for a name that was not in the index before.
+   *
+   * @param resource The new resource.
+   */
+  default void resourceAdded(Resource resource) {}
+
+  /**
+   * A resource was removed and no other prefix path provides its name.
+   *
+   * @param resource The removed resource.
+   */
+  default void resourceRemoved(Resource resource) {}
+
+  /**
+   * A resource is hidden by a resource with the same name from an earlier prefix path.
+   *
+   * This is reported both when a new resource hides the previously visible one, and when a new
+   * resource is installed behind an already visible one.
+   *
+   * @param shadowed The resource that is hidden.
+   * @param visible The resource that is visible for the name.
+   */
+  default void resourceShadowed(Resource shadowed, Resource visible) {}
+
+  /**
+   * The visible resource for a name was replaced, for example because its content changed or
+   * because it was removed and a resource from a later prefix path is revealed.
+   *
+   * @param previous The previously visible resource.
+   * @param current The resource that is visible now.
+   */
+  default void resourceReplaced(Resource previous, Resource current) {}
+}
@@ -0,0 +1,76 @@
+/* Copyright 2020 Open Source Robotics Foundation, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ros2.ament_index_java;
+
+import java.lang.String;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Serializes the updates of a snapshot for the same resources.
+ *
+ * Reading a marker file and publishing the result are two steps. Without a lock, an update that
+ * read the marker before a concurrent one could publish its outdated result after it.
+ * Each resource maps to one of a fixed number of locks, so updates of different resources
+ * rarely wait for each other, and readers of the snapshot never do.
+ */
+final class ResourceLocks {
+  private static final int STRIPES = 64;
+
+  private final ReentrantLock[] stripes = new ReentrantLock[STRIPES];
+
+  ResourceLocks() {
+    for (int i = 0; i < STRIPES; ++i) {
+      this.stripes[i] = new ReentrantLock();
+    }
+  }
+
+  /**
+   * Lock the given resources.
+   *
+   * Locks are taken in a fixed order, so callers locking overlapping resources do not deadlock.
+   *
+   * @param resourceNames A map from resource type to the names of the resources.
+   * @return The locks that were taken, to be passed to {@link #unlock(int[])}.
+   */
+  int[] lock(Map<String, ? extends Collection<String>> resourceNames) {
+    TreeSet<Integer> indices = new TreeSet<Integer>();
+    for (Map.Entry<String, ? extends Collection<String>> entry : resourceNames.entrySet()) {
+      for (String resourceName : entry.getValue()) {
+        indices.add(Math.floorMod(Objects.hash(entry.getKey(), resourceName), STRIPES));
+      }
+    }
+    int[] locked = new int[indices.size()];
+    int count = 0;
+    for (int index : indices) {
+      this.stripes[index].lock();
+      locked[count++] = index;
+    }
+    return locked;
+  }
+
+  /**
+   * @param locked The locks returned by {@link #lock(Map)}.
+   */
+  void unlock(int[] locked) {
+    for (int i = locked.length - 1; i >= 0; --i) {
+      this.stripes[locked[i]].unlock();
+    }
+  }
+}
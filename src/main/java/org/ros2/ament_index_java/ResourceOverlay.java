@@ -0,0 +1,112 @@
+/* Copyright 2020 Open Source Robotics Foundation, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ros2.ament_index_java;
+
+import java.io.UncheckedIOException;
+import java.lang.String;
+
+/**
+ * All occurances of a resource in the prefix paths of an index.
+ *
+ * Lookups only return the resource from the first prefix path containing it, the occurances in
+ * later prefix paths are shadowed by it.
+ */
+public final class ResourceOverlay {
+  private final String type;
+  private final String name;
+
+  // In order of precedence, the first one is visible
+  private final Resource[] resources;
+
+  // null until the content was compared
+  private volatile Boolean contentDiffers;
+
+  ResourceOverlay(String type, String name, Resource[] resources) {
+    this.type = type;
+    this.name = name;
+    this.resources = resources;
+  }
+
+  /**
+   * @return The type of the resource.
+   */
+  public String getType() {
+    return this.type;
+  }
+
+  /**
+   * @return The name of the resource.
+   */
+  public String getName() {
+    return this.name;
+  }
+
+  /**
+   * @return Every occurance of the resource, in order of precedence of their prefix paths.
+   */
+  public Resource[] getResources() {
+    return this.resources.clone();
+  }
+
+  /**
+   * @return The prefix paths containing the resource, in order of precedence.
+   */
+  public String[] getPrefixPaths() {
+    String[] prefixPaths = new String[this.resources.length];
+    for (int i = 0; i < this.resources.length; ++i) {
+      prefixPaths[i] = this.resources[i].getPrefixPath();
+    }
+    return prefixPaths;
+  }
+
+  /**
+   * @return The occurance returned by lookups.
+   */
+  public Resource getVisibleResource() {
+    return this.resources[0];
+  }
+
+  /**
+   * @return true if the resource exists in more than one prefix path.
+   */
+  public boolean isShadowed() {
+    return this.resources.length > 1;
+  }
+
+  /**
+   * Check if the occurances of the resource have different content.
+   *
+   * The marker files are read when this method is first called, the result is kept afterwards.
+   *
+   * @return true if any occurance has a different content than the visible one.
+   * @throws UncheckedIOException If a marker file cannot be read.
+   */
+  public boolean contentDiffers() {
+    Boolean contentDiffers = this.contentDiffers;
+    if (contentDiffers == null) {
+      contentDiffers = false;
+      String visibleContent = this.resources[0].getContent();
+      for (int i = 1; i < this.resources.length; ++i) {
+        if (!visibleContent.equals(this.resources[i].getContent())) {
+          contentDiffers = true;
+          break;
+        }
+      }
+      this.contentDiffers = contentDiffers;
+    }
+    return contentDiffers;
+  }
+}
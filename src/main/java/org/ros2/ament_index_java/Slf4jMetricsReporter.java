@@ -0,0 +1,249 @@
+/* Copyright 2020 Open Source Robotics Foundation, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ros2.ament_index_java;
+
+import java.lang.String;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Collects index metrics in memory and writes a summary to an SLF4J logger.
+ *
+ * Latencies are kept in histograms with power of two buckets, so percentiles are reported as the
+ * upper bound of their bucket.
+ * Call {@link #report()} to log the summary, for example periodically or when the process exits.
+ */
+public class Slf4jMetricsReporter implements IndexMetricsListener {
+  private static final int HISTOGRAM_BUCKETS = 64;
+
+  private final Logger logger;
+
+  private final ConcurrentMap<String, OperationStatistics> operations =
+      new ConcurrentHashMap<String, OperationStatistics>();
+
+  private final ConcurrentMap<String, LongAdder> prefixProbes =
+      new ConcurrentHashMap<String, LongAdder>();
+
+  private final LongAdder markersRead = new LongAdder();
+
+  private final LongAdder bytesRead = new LongAdder();
+
+  private final LongAdder cacheHits = new LongAdder();
+
+  private final LongAdder cacheMisses = new LongAdder();
+
+  private static final class OperationStatistics {
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    // Bucket i counts durations in [2^(i-1), 2^i) nanoseconds
+    private final AtomicLongArray histogram = new AtomicLongArray(HISTOGRAM_BUCKETS);
+
+    private void record(long durationNanos, boolean hit) {
+      if (hit) {
+        this.hits.increment();
+      } else {
+        this.misses.increment();
+      }
+      this.totalNanos.add(durationNanos);
+      this.histogram.incrementAndGet(
+          Math.min(HISTOGRAM_BUCKETS - 1, 64 - Long.numberOfLeadingZeros(durationNanos)));
+    }
+
+    private long getCount() {
+      return this.hits.sum() + this.misses.sum();
+    }
+
+    /**
+     * @return The upper bound of the bucket containing the given fraction of all durations, or
+     *     Long.MAX_VALUE for the last bucket, whose upper bound does not fit into a long.
+     */
+    private long getPercentileNanos(double fraction) {
+      long[] counts = new long[HISTOGRAM_BUCKETS];
+      long total = 0;
+      for (int i = 0; i < HISTOGRAM_BUCKETS; ++i) {
+        counts[i] = this.histogram.get(i);
+        total += counts[i];
+      }
+      long threshold = (long) Math.ceil(total * fraction);
+      long seen = 0;
+      for (int i = 0; i < HISTOGRAM_BUCKETS; ++i) {
+        seen += counts[i];
+        if (seen >= threshold && seen > 0) {
+          if (i == HISTOGRAM_BUCKETS - 1) {
+            return Long.MAX_VALUE;
+          }
+          return i == 0 ? 0 : 1L << i;
+        }
+      }
+      return 0;
+    }
+  }
+
+  /**
+   * Construct a reporter logging to the logger of this class.
+   */
+  public Slf4jMetricsReporter() {
+    this(LoggerFactory.getLogger(Slf4jMetricsReporter.class));
+  }
+
+  /**
+   * Construct a reporter logging to the given logger.
+   *
+   * @param logger The logger to write the summary to.
+   */
+  public Slf4jMetricsReporter(Logger logger) {
+    this.logger = logger;
+  }
+
+  @Override
+  public void lookupCompleted(String operation, long durationNanos, boolean hit) {
+    this.operations.computeIfAbsent(operation, key -> new OperationStatistics())
+        .record(durationNanos, hit);
+  }
+
+  @Override
+  public void prefixProbed(String prefixPath) {
+    this.prefixProbes.computeIfAbsent(prefixPath, key -> new LongAdder()).increment();
+  }
+
+  @Override
+  public void markerRead(String prefixPath, long bytes) {
+    this.markersRead.increment();
+    this.bytesRead.add(bytes);
+  }
+
+  @Override
+  public void snapshotCacheAccessed(boolean hit) {
+    if (hit) {
+      this.cacheHits.increment();
+    } else {
+      this.cacheMisses.increment();
+    }
+  }
+
+  /**
+   * @param operation The name of a lookup.
+   * @return The number of times the lookup completed.
+   */
+  public long getCallCount(String operation) {
+    OperationStatistics statistics = this.operations.get(operation);
+    return statistics == null ? 0 : statistics.getCount();
+  }
+
+  /**
+   * @param operation The name of a lookup.
+   * @return The number of times the lookup found everything it looked for.
+   */
+  public long getHitCount(String operation) {
+    OperationStatistics statistics = this.operations.get(operation);
+    return statistics == null ? 0 : statistics.hits.sum();
+  }
+
+  /**
+   * @param operation The name of a lookup.
+   * @return The number of times the lookup did not find everything it looked for.
+   */
+  public long getMissCount(String operation) {
+    OperationStatistics statistics = this.operations.get(operation);
+    return statistics == null ? 0 : statistics.misses.sum();
+  }
+
+  /**
+   * @param operation The name of a lookup.
+   * @param fraction The fraction of calls, between 0 and 1.
+   * @return An upper bound of the duration of the given fraction of calls, in nanoseconds.
+   */
+  public long getPercentileNanos(String operation, double fraction) {
+    OperationStatistics statistics = this.operations.get(operation);
+    return statistics == null ? 0 : statistics.getPercentileNanos(fraction);
+  }
+
+  /**
+   * @param prefixPath A prefix path.
+   * @return The number of filesystem accesses to the resource index of the prefix path.
+   */
+  public long getProbeCount(String prefixPath) {
+    LongAdder probes = this.prefixProbes.get(prefixPath);
+    return probes == null ? 0 : probes.sum();
+  }
+
+  /**
+   * @return The number of bytes read from marker files.
+   */
+  public long getBytesRead() {
+    return this.bytesRead.sum();
+  }
+
+  /**
+   * @return The fraction of lookups answered from the cached snapshot, or NaN if there were none.
+   */
+  public double getCacheHitRatio() {
+    long hits = this.cacheHits.sum();
+    long total = hits + this.cacheMisses.sum();
+    return total == 0 ? Double.NaN : (double) hits / total;
+  }
+
+  /**
+   * Log a summary of all metrics collected so far at info level.
+   */
+  public void report() {
+    if (!this.logger.isInfoEnabled()) {
+      return;
+    }
+    // Sort by name so consecutive reports are easy to compare
+    for (Map.Entry<String, OperationStatistics> entry :
+        new TreeMap<String, OperationStatistics>(this.operations).entrySet())
+    {
+      OperationStatistics statistics = entry.getValue();
+      long count = statistics.getCount();
+      this.logger.info(
+          "{}: calls={} hits={} misses={} mean={}us p50<={}us p90<={}us p99<={}us",
+          entry.getKey(), count, statistics.hits.sum(), statistics.misses.sum(),
+          count == 0 ? 0 : statistics.totalNanos.sum() / count / 1000,
+          statistics.getPercentileNanos(0.5) / 1000, statistics.getPercentileNanos(0.9) / 1000,
+          statistics.getPercentileNanos(0.99) / 1000);
+    }
+    for (Map.Entry<String, LongAdder> entry :
+        new TreeMap<String, LongAdder>(this.prefixProbes).entrySet())
+    {
+      this.logger.info("probes of '{}': {}", entry.getKey(), entry.getValue().sum());
+    }
+    this.logger.info(
+        "marker files read: {} ({} bytes), snapshot cache hits: {} misses: {}",
+        this.markersRead.sum(), this.bytesRead.sum(), this.cacheHits.sum(),
+        this.cacheMisses.sum());
+  }
+
+  /**
+   * Discard all metrics collected so far.
+   */
+  public void reset() {
+    this.operations.clear();
+    this.prefixProbes.clear();
+    this.markersRead.reset();
+    this.bytesRead.reset();
+    this.cacheHits.reset();
+    this.cacheMisses.reset();
+  }
+}
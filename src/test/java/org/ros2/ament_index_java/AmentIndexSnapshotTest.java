@@ -0,0 +1,223 @@
+/* Copyright 2020 Open Source Robotics Foundation, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ros2.ament_index_java;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.lang.String;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+public class AmentIndexSnapshotTest extends AmentIndexTestFixture {
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test public void testGetResource() throws Exception {
+    AmentIndexSnapshot snapshot = AmentIndexSnapshot.create();
+    // Non-existent resource type and name
+    {
+      assertNull(snapshot.getResource("this_type_does_not_exist", "foo"));
+      assertNull(snapshot.getResource("packages", "this_name_does_not_exist"));
+    }
+    // Marker with content
+    {
+      Resource result = snapshot.getResource("foo_type", "foo");
+      assertEquals("foo", result.getName());
+      assertEquals(prefixPath2, result.getPrefixPath());
+      assertEquals(
+          String.format("This is dummy content for test purposes.%n"), result.getContent());
+    }
+    // The first prefix path wins
+    {
+      Resource result = snapshot.getResource("test_duplicate_resource", "foo");
+      assertEquals(prefixPath1, result.getPrefixPath());
+      assertEquals(
+          String.format("This content is from the first prefix path%n"), result.getContent());
+    }
+  }
+
+  @Test public void testPrecedenceFollowsPrefixOrder() throws Exception {
+    AmentIndexSnapshot snapshot = AmentIndexSnapshot.create(
+        new String[] {prefixPath2, prefixPath1});
+    assertEquals(prefixPath2, snapshot.hasResource("test_duplicate_resource", "foo"));
+    assertArrayEquals(new String[] {prefixPath2, prefixPath1}, snapshot.getPrefixPaths());
+  }
+
+  @Test public void testParallelCrawl() throws Exception {
+    String[][] prefixOrders = {{prefixPath1, prefixPath2}, {prefixPath2, prefixPath1}};
+    for (String[] prefixPaths : prefixOrders) {
+      AmentIndexSnapshot sequential = AmentIndexSnapshot.create(prefixPaths);
+      AmentIndexSnapshot parallel = AmentIndexSnapshot.create(prefixPaths, 4);
+      for (String resourceType : new String[] {"packages", "foo_type", "test_duplicate_resource"}) {
+        Resource[] expected = sequential.getResources(resourceType);
+        Resource[] result = parallel.getResources(resourceType);
+        assertEquals(expected.length, result.length);
+        for (int i = 0; i < expected.length; ++i) {
+          assertEquals(expected[i].getName(), result[i].getName());
+          assertEquals(expected[i].getPrefixPath(), result[i].getPrefixPath());
+          assertEquals(expected[i].getContent(), result[i].getContent());
+        }
+      }
+    }
+  }
+
+  @Test public void testNameQueries() throws Exception {
+    Path typeDirectory = temporaryFolder.getRoot().toPath().resolve(
+        Path.of(ResourceIndex.RESOURCE_INDEX_SUBDIRECTORY, "packages"));
+    Files.createDirectories(typeDirectory);
+    String[] names = {
+        "rclcpp_components", "std_msgs", "rcl", "rclcpp", "geometry_msgs", "rclcpp_action",
+        "msgs_tools", "rclpy"};
+    for (String name : names) {
+      Files.writeString(typeDirectory.resolve(name), "");
+    }
+    AmentIndexSnapshot snapshot = AmentIndexSnapshot.create(
+        new String[] {temporaryFolder.getRoot().toString()});
+
+    assertArrayEquals(
+        new String[] {"rclcpp", "rclcpp_action", "rclcpp_components"},
+        names(snapshot.getResourcesWithPrefix("packages", "rclcpp")));
+    assertArrayEquals(
+        new String[] {"rclcpp_action", "rclcpp_components"},
+        names(snapshot.getResourcesMatching("packages", "rclcpp_*")));
+    assertArrayEquals(
+        new String[] {"geometry_msgs", "std_msgs"},
+        names(snapshot.getResourcesMatching("packages", "*_msgs")));
+    assertArrayEquals(
+        new String[] {"rclcpp_components"},
+        names(snapshot.getResourcesMatching("packages", "rcl*comp?nents")));
+    assertArrayEquals(
+        new String[] {"msgs_tools"}, names(snapshot.getResourcesMatching("packages", "*s*l*")));
+    assertArrayEquals(
+        new String[] {"rclpy"}, names(snapshot.getResourcesMatching("packages", "rclpy")));
+    assertEquals(8, snapshot.getResourcesMatching("packages", "*").length);
+    assertEquals(0, snapshot.getResourcesMatching("packages", "rcl?").length);
+    assertEquals(0, snapshot.getResourcesMatching("this_type_does_not_exist", "*").length);
+
+    // Ranges include the lower bound and exclude the upper bound
+    assertArrayEquals(
+        new String[] {"rcl", "rclcpp", "rclcpp_action", "rclcpp_components"},
+        names(snapshot.getResourcesInRange("packages", "rcl", "rclpy")));
+    assertArrayEquals(
+        new String[] {"geometry_msgs", "msgs_tools"},
+        names(snapshot.getResourcesInRange("packages", null, "rcl")));
+    assertArrayEquals(
+        new String[] {"std_msgs"}, names(snapshot.getResourcesInRange("packages", "s", null)));
+    assertEquals(0, snapshot.getResourcesInRange("packages", "z", "a").length);
+  }
+
+  private static String[] names(Resource[] resources) {
+    String[] names = new String[resources.length];
+    for (int i = 0; i < resources.length; ++i) {
+      names[i] = resources[i].getName();
+    }
+    return names;
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidParallelism() throws Exception {
+    AmentIndexSnapshot.create(new String[] {prefixPath1}, 0);
+  }
+
+  @Test public void testGetResources() throws Exception {
+    AmentIndexSnapshot snapshot = AmentIndexSnapshot.create();
+    assertEquals(0, snapshot.getResources("this_type_does_not_exist").length);
+    assertEquals(2, snapshot.getResources("packages").length);
+    Resource[] result = snapshot.getResources("test_duplicate_resource");
+    assertEquals(1, result.length);
+    assertEquals(prefixPath1, result[0].getPrefixPath());
+  }
+
+  @Test public void testSnapshotIsImmutable() throws Exception {
+    filesCreated = new File[1];
+    AmentIndexSnapshot snapshot = AmentIndexSnapshot.create();
+    filesCreated[0] = Path.of(
+        prefixPath1, "share", "ament_index", "resource_index", "packages", "late_package").toFile();
+    assertTrue(ResourceIndex.registerResource("packages", "late_package", prefixPath1));
+    // The snapshot does not see the new resource, the static lookup does
+    assertNull(snapshot.hasResource("packages", "late_package"));
+    assertEquals(prefixPath1, ResourceIndex.hasResource("packages", "late_package"));
+  }
+
+  @Test public void testWithResources() throws Exception {
+    AmentIndexSnapshot snapshot = AmentIndexSnapshot.create();
+    Map<String, Resource> packages = new HashMap<String, Resource>();
+    packages.put("new_package", new Resource("packages", "new_package", prefixPath2));
+    packages.put("foo", null);
+    packages.put("this_name_does_not_exist", null);
+    AmentIndexSnapshot changed =
+        snapshot.withResources(Collections.singletonMap("packages", packages));
+
+    assertEquals(prefixPath2, changed.hasResource("packages", "new_package"));
+    assertNull(changed.hasResource("packages", "foo"));
+    assertEquals(prefixPath1, changed.hasResource("packages", "bar"));
+    // Unaffected types are shared, the original snapshot is unchanged
+    assertSame(snapshot.getResourcesOfType("foo_type"), changed.getResourcesOfType("foo_type"));
+    assertEquals(prefixPath1, snapshot.hasResource("packages", "foo"));
+    // Removing names that do not exist changes nothing
+    assertSame(snapshot, snapshot.withResource("packages", "this_name_does_not_exist", null));
+  }
+
+  @Test public void testLazyContent() throws Exception {
+    Path prefix = temporaryFolder.getRoot().toPath();
+    Path marker = prefix.resolve(Path.of(ResourceIndex.RESOURCE_INDEX_SUBDIRECTORY, "t", "r"));
+    Files.createDirectories(marker.getParent());
+    Files.writeString(marker, "before crawl");
+
+    String[] prefixPaths = {prefix.toString()};
+    AmentIndexSnapshot memoized = AmentIndexSnapshot.create(prefixPaths, 1, true);
+    AmentIndexSnapshot unmemoized = AmentIndexSnapshot.create(prefixPaths, 1, false);
+    Resource memoizedResource = memoized.getResource("t", "r");
+    Resource unmemoizedResource = unmemoized.getResource("t", "r");
+
+    // Content is not read while crawling
+    Files.writeString(marker, "first access");
+    assertEquals("first access", memoizedResource.getContent());
+    assertEquals("first access", unmemoizedResource.getContent());
+
+    Files.writeString(marker, "second access");
+    assertEquals("first access", memoizedResource.getContent());
+    assertEquals("second access", unmemoizedResource.getContent());
+  }
+
+  @Test public void testGetResourceNames() throws Exception {
+    AmentIndexSnapshot snapshot = AmentIndexSnapshot.create();
+    assertEquals(0, snapshot.getResourceNames("this_type_does_not_exist").length);
+    String[] result = snapshot.getResourceNames("test_duplicate_resource");
+    assertArrayEquals(new String[] {"foo"}, result);
+  }
+
+  @Test(expected = AmentIndexException.class)
+  public void testEmptyResourceName() throws Exception {
+    AmentIndexSnapshot.create().getResource("packages", "");
+  }
+
+  @Test(expected = AmentIndexException.class)
+  public void testNullNamePrefix() throws Exception {
+    AmentIndexSnapshot.create().getResourcesWithPrefix("packages", null);
+  }
+
+  @Test(expected = AmentIndexException.class)
+  public void testNullGlob() throws Exception {
+    AmentIndexSnapshot.create().getResourcesMatching("packages", null);
+  }
+}
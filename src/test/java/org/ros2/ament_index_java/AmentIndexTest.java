@@ -0,0 +1,191 @@
+/* Copyright 2020 Open Source Robotics Foundation, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ros2.ament_index_java;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+import java.lang.String;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+public class AmentIndexTest extends AmentIndexTestFixture {
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test public void testFromEnvironment() throws Exception {
+    AmentIndex index = AmentIndex.fromEnvironment();
+    assertArrayEquals(ResourceIndex.getAmentIndexPaths(), index.getPrefixPaths());
+  }
+
+  @Test public void testInvalidPrefixPathsAreIgnored() throws Exception {
+    AmentIndex index = new AmentIndex(
+        Arrays.asList(Path.of(prefixPath1), Path.of("this_path_does_not_exist")));
+    assertArrayEquals(new String[] {prefixPath1}, index.getPrefixPaths());
+  }
+
+  @Test public void testGetResource() throws Exception {
+    AmentIndex index = new AmentIndex(Arrays.asList(Path.of(prefixPath2), Path.of(prefixPath1)));
+    assertNull(index.getResource("this_type_does_not_exist", "foo"));
+    assertNull(index.getResource("packages", "this_name_does_not_exist"));
+    // The prefix paths of this index take precedence over the environment
+    Resource result = index.getResource("test_duplicate_resource", "foo");
+    assertEquals(prefixPath2, result.getPrefixPath());
+    assertEquals(
+        String.format(
+          "We should not expect to get this content since the resource exists in the first "
+          + "prefix path%n"),
+        result.getContent());
+  }
+
+  @Test public void testGetResources() throws Exception {
+    AmentIndex index = AmentIndex.fromEnvironment();
+    assertEquals(0, index.getResources("this_type_does_not_exist").length);
+    Resource[] result = index.getResources("test_duplicate_resource");
+    assertEquals(1, result.length);
+    assertEquals(prefixPath1, result[0].getPrefixPath());
+    assertArrayEquals(new String[] {"foo"}, index.getResourceNames("foo_type"));
+  }
+
+  @Test public void testStreamResources() throws Exception {
+    AmentIndex index = AmentIndex.fromEnvironment();
+    try (Stream<Resource> resources = index.streamResources("test_duplicate_resource")) {
+      // Duplicates from later prefix paths are dropped
+      assertEquals(1, resources.filter(resource -> resource.getName().equals("foo")).count());
+    }
+    try (Stream<Resource> resources = index.streamResources("this_type_does_not_exist")) {
+      assertFalse(resources.findFirst().isPresent());
+    }
+    // Stops at the first match
+    try (Stream<Resource> resources = index.streamResources("packages")) {
+      Optional<Resource> result = resources.filter(resource -> resource.getName().equals("bar"))
+          .findFirst();
+      assertEquals(prefixPath1, result.get().getPrefixPath());
+    }
+  }
+
+  @Test public void testGetResourcesByName() throws Exception {
+    AmentIndex index = AmentIndex.fromEnvironment();
+    Map<String, Resource> result = index.getResources(
+        "test_duplicate_resource", Arrays.asList("not_a_resource", "foo"));
+    assertEquals(1, result.size());
+    assertEquals(prefixPath1, result.get("foo").getPrefixPath());
+  }
+
+  @Test public void testGetResourceTypes() throws Exception {
+    assertArrayEquals(
+        new String[] {"bar_type", "foo_type", "packages", "test_duplicate_resource"},
+        AmentIndex.fromEnvironment().getResourceTypes());
+  }
+
+  @Test public void testGetAllResources() throws Exception {
+    Map<String, Map<String, Resource>> result = AmentIndex.fromEnvironment().getAllResources();
+    assertEquals(4, result.size());
+    assertEquals(2, result.get("packages").size());
+    assertEquals(prefixPath1, result.get("test_duplicate_resource").get("foo").getPrefixPath());
+    assertEquals(prefixPath2, result.get("bar_type").get("bar").getPrefixPath());
+  }
+
+  @Test public void testGetAllResourcesFollowsLinks() throws Exception {
+    Path prefixPath = temporaryFolder.newFolder("prefix").toPath();
+    Path indexDirectory = prefixPath.resolve(ResourceIndex.RESOURCE_INDEX_SUBDIRECTORY);
+    Path target = temporaryFolder.newFolder("target").toPath();
+    Files.writeString(target.resolve("linked"), "");
+    Files.createDirectories(indexDirectory.resolve("plugins"));
+    Files.createSymbolicLink(indexDirectory.resolve("plugins").resolve("linked"),
+        target.resolve("linked"));
+    Files.createSymbolicLink(indexDirectory.resolve("linked_type"), target);
+
+    AmentIndex index = new AmentIndex(Arrays.asList(prefixPath));
+    Map<String, Map<String, Resource>> result = index.getAllResources();
+    assertEquals(index.getResourceNames("plugins").length, result.get("plugins").size());
+    assertTrue(result.get("plugins").containsKey("linked"));
+    assertTrue(result.get("linked_type").containsKey("linked"));
+    try {
+      result.get("plugins").clear();
+      fail("resources must not be modifiable");
+    } catch (UnsupportedOperationException e) {
+      // Expected
+    }
+  }
+
+  @Test public void testHasResource() throws Exception {
+    AmentIndex index = AmentIndex.fromEnvironment();
+    assertNull(index.hasResource("packages", "this_name_does_not_exist"));
+    assertEquals(prefixPath1, index.hasResource("packages", "foo"));
+    assertEquals(prefixPath2, index.hasResource("bar_type", "bar"));
+  }
+
+  @Test public void testCreateSnapshot() throws Exception {
+    AmentIndexSnapshot snapshot = AmentIndex.fromEnvironment().createSnapshot(2);
+    assertEquals(prefixPath2, snapshot.hasResource("foo_type", "foo"));
+  }
+
+  @Test(expected = AmentIndexException.class)
+  public void testEmptyResourceType() throws Exception {
+    AmentIndex.fromEnvironment().getResources("");
+  }
+
+  @Test public void testLookupCache() throws Exception {
+    Path prefixPath = temporaryFolder.newFolder("prefix").toPath();
+    Path typeDirectory = prefixPath.resolve(
+        Path.of(ResourceIndex.RESOURCE_INDEX_SUBDIRECTORY, "plugins"));
+    Files.createDirectories(typeDirectory);
+    Files.writeString(typeDirectory.resolve("existing"), "");
+
+    AmentIndex index = new AmentIndex(Arrays.asList(prefixPath, Path.of(prefixPath1)))
+        .withLookupCache(Duration.ofHours(1), 16);
+    Slf4jMetricsReporter reporter = new Slf4jMetricsReporter();
+    ResourceIndex.setMetricsListener(reporter);
+    try {
+      assertNull(index.getResource("plugins", "missing"));
+      assertEquals(prefixPath.toString(), index.hasResource("plugins", "existing"));
+      assertEquals(prefixPath1, index.hasResource("packages", "foo"));
+      assertEquals(1, index.getResources("plugins", Arrays.asList("existing", "missing")).size());
+      // Each resource type directory was listed once
+      assertEquals(2, reporter.getProbeCount(prefixPath.toString()));
+      assertEquals(2, reporter.getProbeCount(prefixPath1));
+
+      // Changes are not visible until the cache is invalidated
+      Files.writeString(typeDirectory.resolve("missing"), "");
+      assertNull(index.getResource("plugins", "missing"));
+      index.invalidateLookupCache();
+      assertEquals(prefixPath.toString(), index.hasResource("plugins", "missing"));
+    } finally {
+      ResourceIndex.setMetricsListener(null);
+    }
+  }
+
+  @Test public void testLookupCacheExpires() throws Exception {
+    Path prefixPath = temporaryFolder.newFolder("prefix").toPath();
+    Path typeDirectory = prefixPath.resolve(
+        Path.of(ResourceIndex.RESOURCE_INDEX_SUBDIRECTORY, "plugins"));
+    Files.createDirectories(typeDirectory);
+
+    AmentIndex index = new AmentIndex(Arrays.asList(prefixPath))
+        .withLookupCache(Duration.ZERO, 16);
+    assertNull(index.hasResource("plugins", "new"));
+    Files.writeString(typeDirectory.resolve("new"), "");
+    Thread.sleep(1);
+    assertEquals(prefixPath.toString(), index.hasResource("plugins", "new"));
+  }
+}
@@ -52,6 +52,8 @@ public class AmentIndexTestFixture {
         }
       }
     }
+    // Files were removed behind the back of the cached snapshot
+    ResourceIndex.invalidate();
   }
 }
 
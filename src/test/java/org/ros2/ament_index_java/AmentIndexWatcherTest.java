@@ -0,0 +1,196 @@
+/* Copyright 2020 Open Source Robotics Foundation, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ros2.ament_index_java;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.String;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class AmentIndexWatcherTest {
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private final BlockingQueue<String> events = new LinkedBlockingQueue<String>();
+
+  private final ResourceIndexListener listener = new ResourceIndexListener() {
+    @Override public void resourceAdded(Resource resource) {
+      events.add("added " + describe(resource));
+    }
+
+    @Override public void resourceRemoved(Resource resource) {
+      events.add("removed " + describe(resource));
+    }
+
+    @Override public void resourceShadowed(Resource shadowed, Resource visible) {
+      events.add("shadowed " + describe(shadowed) + " by " + describe(visible));
+    }
+
+    @Override public void resourceReplaced(Resource previous, Resource current) {
+      events.add("replaced " + describe(previous) + " with " + describe(current));
+    }
+  };
+
+  private String describe(Resource resource) {
+    return resource.getType() + "/" + resource.getName() + "@"
+        + new File(resource.getPrefixPath()).getName();
+  }
+
+  private String nextEvent() throws InterruptedException {
+    String event = events.poll(10, TimeUnit.SECONDS);
+    assertNotNull("timed out waiting for an event", event);
+    return event;
+  }
+
+  private Path createIndex(String prefixName, String resourceType) throws Exception {
+    Path prefix = temporaryFolder.newFolder(prefixName).toPath();
+    Files.createDirectories(
+        prefix.resolve(Path.of(ResourceIndex.RESOURCE_INDEX_SUBDIRECTORY, resourceType)));
+    return prefix;
+  }
+
+  private Path marker(Path prefix, String resourceType, String resourceName) {
+    return prefix.resolve(
+        Path.of(ResourceIndex.RESOURCE_INDEX_SUBDIRECTORY, resourceType, resourceName));
+  }
+
+  // Write a marker in one step, so the watcher never sees it without content
+  private void writeMarker(Path marker, String content) throws Exception {
+    Path temporary = marker.resolveSibling("." + marker.getFileName());
+    Files.writeString(temporary, content);
+    Files.move(temporary, marker, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  @Test public void testIncrementalUpdates() throws Exception {
+    Path prefix1 = createIndex("prefix1", "packages");
+    Path prefix2 = createIndex("prefix2", "packages");
+    AmentIndexSnapshot snapshot = AmentIndexSnapshot.create(
+        new String[] {prefix1.toString(), prefix2.toString()});
+
+    try (AmentIndexWatcher watcher = new AmentIndexWatcher(snapshot)) {
+      watcher.addListener(listener);
+
+      writeMarker(marker(prefix2, "packages", "foo"), "second");
+      assertEquals("added packages/foo@prefix2", nextEvent());
+      assertEquals(prefix2.toString(), watcher.getSnapshot().hasResource("packages", "foo"));
+
+      writeMarker(marker(prefix1, "packages", "foo"), "first");
+      assertEquals("shadowed packages/foo@prefix2 by packages/foo@prefix1", nextEvent());
+      assertEquals("first", watcher.getSnapshot().getResource("packages", "foo").getContent());
+
+      Files.delete(marker(prefix1, "packages", "foo"));
+      assertEquals("replaced packages/foo@prefix1 with packages/foo@prefix2", nextEvent());
+
+      Files.delete(marker(prefix2, "packages", "foo"));
+      assertEquals("removed packages/foo@prefix2", nextEvent());
+      assertNull(watcher.getSnapshot().getResource("packages", "foo"));
+
+      // The original snapshot is not modified
+      assertEquals(0, snapshot.getResources("packages").length);
+    }
+  }
+
+  @Test public void testNewResourceType() throws Exception {
+    Path prefix = createIndex("prefix", "packages");
+    AmentIndexSnapshot snapshot = AmentIndexSnapshot.create(new String[] {prefix.toString()});
+
+    try (AmentIndexWatcher watcher = new AmentIndexWatcher(snapshot)) {
+      watcher.addListener(listener);
+      Files.createDirectory(marker(prefix, "new_type", "bar").getParent());
+      writeMarker(marker(prefix, "new_type", "bar"), "content");
+      assertEquals("added new_type/bar@prefix", nextEvent());
+      assertEquals("content", watcher.getSnapshot().getResource("new_type", "bar").getContent());
+    }
+  }
+
+  @Test public void testRescanKeepsSettings() throws Exception {
+    Path prefix = createIndex("prefix", "packages");
+    String[] prefixPaths = new String[] {prefix.toString()};
+    AmentIndexSnapshot snapshot = AmentIndexSnapshot.create(prefixPaths, 2, false);
+
+    // The content memoization is kept without a factory
+    try (AmentIndexWatcher watcher = new AmentIndexWatcher(snapshot)) {
+      watcher.rescan();
+      assertNotSame(snapshot, watcher.getSnapshot());
+      assertFalse(watcher.getSnapshot().isMemoizeContent());
+    }
+
+    AtomicInteger created = new AtomicInteger();
+    try (AmentIndexWatcher watcher = new AmentIndexWatcher(snapshot, paths -> {
+      created.incrementAndGet();
+      return AmentIndexSnapshot.create(paths, 2, false);
+    }))
+    {
+      writeMarker(marker(prefix, "packages", "foo"), "");
+      watcher.rescan();
+      assertEquals(1, created.get());
+      assertEquals(prefix.toString(), watcher.getSnapshot().hasResource("packages", "foo"));
+    }
+  }
+
+  @Test public void testFailedRescanIsRetried() throws Exception {
+    Path prefix = createIndex("prefix", "packages");
+    Files.createDirectory(marker(prefix, "removed_type", "foo").getParent());
+    String[] prefixPaths = new String[] {prefix.toString()};
+    AmentIndexSnapshot snapshot = AmentIndexSnapshot.create(prefixPaths);
+
+    AtomicInteger created = new AtomicInteger();
+    try (AmentIndexWatcher watcher = new AmentIndexWatcher(snapshot, paths -> {
+      if (created.incrementAndGet() == 1) {
+        throw new UncheckedIOException(new IOException("marker removed while crawling"));
+      }
+      return AmentIndexSnapshot.create(paths);
+    }))
+    {
+      watcher.addListener(listener);
+      // Removing a watched directory requires a rescan, which fails the first time
+      Files.delete(marker(prefix, "removed_type", "foo").getParent());
+      long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+      while (created.get() == 0 && System.nanoTime() < deadline) {
+        Thread.sleep(10);
+      }
+      assertEquals(1, created.get());
+
+      // The watcher keeps running and rescans after the next event
+      writeMarker(marker(prefix, "packages", "foo"), "");
+      assertEquals("added packages/foo@prefix", nextEvent());
+      assertEquals(2, created.get());
+    }
+  }
+
+  @Test public void testSynchronousUpdate() throws Exception {
+    Path prefix = createIndex("prefix", "packages");
+    AmentIndexSnapshot snapshot = AmentIndexSnapshot.create(new String[] {prefix.toString()});
+
+    try (AmentIndexWatcher watcher = new AmentIndexWatcher(snapshot)) {
+      writeMarker(marker(prefix, "packages", "foo"), "");
+      watcher.update(prefix.toString(), "packages", "foo");
+      // Visible right away, without waiting for the filesystem notification
+      assertEquals(prefix.toString(), watcher.getSnapshot().hasResource("packages", "foo"));
+    }
+  }
+}
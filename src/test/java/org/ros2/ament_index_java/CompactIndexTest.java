@@ -0,0 +1,66 @@
+/* Copyright 2020 Open Source Robotics Foundation, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ros2.ament_index_java;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.lang.String;
+
+public class CompactIndexTest extends AmentIndexTestFixture {
+  @Test public void testMatchesSnapshot() throws Exception {
+    AmentIndexSnapshot snapshot = AmentIndexSnapshot.create();
+    CompactIndex index = CompactIndex.create();
+    assertArrayEquals(snapshot.getResourceTypes(), index.getResourceTypes());
+    int resourceCount = 0;
+    for (String resourceType : snapshot.getResourceTypes()) {
+      for (Resource expected : snapshot.getResources(resourceType)) {
+        Resource resource = index.getResource(resourceType, expected.getName());
+        assertEquals(expected.getPrefixPath(), resource.getPrefixPath());
+        assertEquals(expected.getType(), resource.getType());
+        assertEquals(expected.getContent(), resource.getContent());
+        ++resourceCount;
+      }
+    }
+    assertEquals(resourceCount, index.size());
+  }
+
+  @Test public void testLookups() throws Exception {
+    CompactIndex index = CompactIndex.create(new String[] {prefixPath1, prefixPath2}, 1, true);
+    assertNull(index.getResource("this_type_does_not_exist", "foo"));
+    assertNull(index.getResource("packages", "this_name_does_not_exist"));
+    assertNull(index.getResource("packages", "fo"));
+    assertNull(index.getResource("packages", "fooo"));
+    assertArrayEquals(new String[] {"bar", "foo"}, index.getResourceNames("packages"));
+    assertEquals(0, index.getResources("this_type_does_not_exist").length);
+
+    Resource[] resources = index.getResources("packages");
+    assertEquals(2, resources.length);
+    assertEquals("foo", resources[1].getName());
+    assertEquals(prefixPath1, resources[1].getPrefixPath());
+
+    // Preloaded content does not depend on the marker files
+    assertEquals(
+        String.format("This content is from the first prefix path%n"),
+        index.getResource("test_duplicate_resource", "foo").getContent());
+    assertEquals(prefixPath2, index.hasResource("foo_type", "foo"));
+  }
+
+  @Test(expected = AmentIndexException.class)
+  public void testEmptyResourceName() throws Exception {
+    CompactIndex.create().getResource("packages", "");
+  }
+}
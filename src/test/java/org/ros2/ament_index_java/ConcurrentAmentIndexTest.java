@@ -0,0 +1,262 @@
+/* Copyright 2020 Open Source Robotics Foundation, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ros2.ament_index_java;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+import java.lang.String;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class ConcurrentAmentIndexTest extends AmentIndexTestFixture {
+  private static final int WRITERS = 4;
+
+  private static final int READERS = 4;
+
+  private static final int RESOURCES_PER_WRITER = 50;
+
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private String[] createPrefixPaths(int count) throws Exception {
+    String[] prefixPaths = new String[count];
+    for (int i = 0; i < count; ++i) {
+      prefixPaths[i] = temporaryFolder.newFolder("prefix" + i).toString();
+    }
+    return prefixPaths;
+  }
+
+  @Test public void testLinearizableRegistration() throws Exception {
+    String[] prefixPaths = this.createPrefixPaths(2);
+    ConcurrentAmentIndex index = ConcurrentAmentIndex.create(prefixPaths);
+
+    // Names whose registration completed
+    Set<String> registered = ConcurrentHashMap.newKeySet();
+    AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+    CountDownLatch start = new CountDownLatch(1);
+    CountDownLatch writersDone = new CountDownLatch(WRITERS);
+    List<Thread> threads = new ArrayList<Thread>();
+
+    for (int i = 0; i < WRITERS; ++i) {
+      int writer = i;
+      threads.add(new Thread(() -> {
+        try {
+          start.await();
+          for (int j = 0; j < RESOURCES_PER_WRITER; ++j) {
+            String name = "resource_" + writer + "_" + j;
+            assertTrue(index.registerResource(
+                "plugins", name, prefixPaths[j % prefixPaths.length], name));
+            registered.add(name);
+          }
+        } catch (Throwable e) {
+          failure.compareAndSet(null, e);
+        } finally {
+          writersDone.countDown();
+        }
+      }));
+    }
+    for (int i = 0; i < READERS; ++i) {
+      threads.add(new Thread(() -> {
+        try {
+          start.await();
+          int previousCount = 0;
+          while (writersDone.getCount() > 0 && failure.get() == null) {
+            Set<String> completed = new HashSet<String>(registered);
+            AmentIndexSnapshot snapshot = index.getSnapshot();
+            // Every registration that completed before the snapshot was taken is visible
+            for (String name : completed) {
+              assertNotNull(name, snapshot.getResource("plugins", name));
+            }
+            // Snapshots never go back in time, and are consistent in themselves
+            String[] names = snapshot.getResourceNames("plugins");
+            assertTrue(names.length >= previousCount);
+            assertEquals(names.length, snapshot.getResources("plugins").length);
+            previousCount = names.length;
+          }
+        } catch (Throwable e) {
+          failure.compareAndSet(null, e);
+        }
+      }));
+    }
+
+    for (Thread thread : threads) {
+      thread.start();
+    }
+    start.countDown();
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    if (failure.get() != null) {
+      throw new AssertionError(failure.get());
+    }
+
+    assertEquals(WRITERS * RESOURCES_PER_WRITER, index.getResources("plugins").length);
+    Resource resource = index.getResource("plugins", "resource_0_1");
+    assertEquals(prefixPaths[1], resource.getPrefixPath());
+    assertEquals("resource_0_1", resource.getContent());
+
+    // A rescan finds the same resources
+    index.rescan();
+    assertEquals(WRITERS * RESOURCES_PER_WRITER, index.getResources("plugins").length);
+  }
+
+  @Test public void testRescanKeepsConcurrentRegistrations() throws Exception {
+    String[] prefixPaths = this.createPrefixPaths(2);
+    ConcurrentAmentIndex index = ConcurrentAmentIndex.create(prefixPaths);
+
+    AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+    Thread writer = new Thread(() -> {
+      try {
+        for (int i = 0; i < RESOURCES_PER_WRITER; ++i) {
+          String name = "resource_" + i;
+          assertTrue(index.registerResource("plugins", name, prefixPaths[i % 2], name));
+          assertTrue(index.registerResource("messages", name, prefixPaths[0], name));
+          assertTrue(index.unregisterResource("messages", name, prefixPaths[0]));
+        }
+      } catch (Throwable e) {
+        failure.compareAndSet(null, e);
+      }
+    });
+    writer.start();
+    while (writer.isAlive()) {
+      index.rescan();
+    }
+    writer.join();
+    if (failure.get() != null) {
+      throw new AssertionError(failure.get());
+    }
+
+    // Registrations published during a crawl are applied to its result
+    assertEquals(RESOURCES_PER_WRITER, index.getResources("plugins").length);
+    assertEquals(0, index.getResources("messages").length);
+  }
+
+  @Test public void testConcurrentRegisterAndUnregister() throws Exception {
+    String[] prefixPaths = this.createPrefixPaths(2);
+    ConcurrentAmentIndex index = ConcurrentAmentIndex.create(prefixPaths);
+    assertTrue(index.registerResource("plugins", "plugin", prefixPaths[0], ""));
+
+    // Pause unregistering after it found no marker in the first prefix path, before publishing
+    CountDownLatch paused = new CountDownLatch(1);
+    CountDownLatch resume = new CountDownLatch(1);
+    ResourceIndex.setMetricsListener(new IndexMetricsListener() {
+      @Override
+      public void prefixProbed(String prefixPath) {
+        if (prefixPath.equals(prefixPaths[1])
+            && Thread.currentThread().getName().equals("unregistering"))
+        {
+          paused.countDown();
+          try {
+            resume.await();
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        }
+      }
+    });
+    AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+    try {
+      Thread unregistering = new Thread(() -> {
+        try {
+          assertTrue(index.unregisterResource("plugins", "plugin", prefixPaths[0]));
+        } catch (Throwable e) {
+          failure.compareAndSet(null, e);
+        }
+      }, "unregistering");
+      Thread registering = new Thread(() -> {
+        try {
+          assertTrue(index.registerResource("plugins", "plugin", prefixPaths[0], ""));
+        } catch (Throwable e) {
+          failure.compareAndSet(null, e);
+        }
+      }, "registering");
+      unregistering.start();
+      paused.await();
+      registering.start();
+      // Registering waits for the unregistering to publish, give it a chance not to
+      registering.join(100);
+      resume.countDown();
+      unregistering.join();
+      registering.join();
+    } finally {
+      resume.countDown();
+      ResourceIndex.setMetricsListener(null);
+    }
+    if (failure.get() != null) {
+      throw new AssertionError(failure.get());
+    }
+
+    // The registration came last, so the resource is visible
+    assertEquals(prefixPaths[0], index.hasResource("plugins", "plugin"));
+  }
+
+  @Test public void testShadowing() throws Exception {
+    String[] prefixPaths = this.createPrefixPaths(2);
+    ConcurrentAmentIndex index = ConcurrentAmentIndex.create(prefixPaths);
+    AmentIndexSnapshot initial = index.getSnapshot();
+
+    assertTrue(index.registerResource("plugins", "plugin", prefixPaths[1], "second"));
+    assertEquals(prefixPaths[1], index.hasResource("plugins", "plugin"));
+    assertTrue(index.registerResource("plugins", "plugin", prefixPaths[0], "first"));
+    assertEquals("first", index.getResource("plugins", "plugin").getContent());
+    assertFalse(index.registerResource("plugins", "plugin", prefixPaths[0], "again"));
+
+    // Removing the visible marker reveals the shadowed one
+    assertTrue(index.unregisterResource("plugins", "plugin", prefixPaths[0]));
+    assertEquals("second", index.getResource("plugins", "plugin").getContent());
+
+    // Markers removed by others become visible after a refresh
+    Files.delete(Path.of(
+        prefixPaths[1], ResourceIndex.RESOURCE_INDEX_SUBDIRECTORY, "plugins", "plugin"));
+    assertNotNull(index.getResource("plugins", "plugin"));
+    index.refresh("plugins", "plugin");
+    assertNull(index.getResource("plugins", "plugin"));
+
+    // Earlier snapshots are not affected
+    assertNull(initial.getResource("plugins", "plugin"));
+  }
+
+  @Test(expected = AmentIndexException.class)
+  public void testRegisterOutsideOfIndex() throws Exception {
+    String[] prefixPaths = this.createPrefixPaths(2);
+    ConcurrentAmentIndex index = ConcurrentAmentIndex.create(new String[] {prefixPaths[0]});
+    index.registerResource("plugins", "plugin", prefixPaths[1], "");
+  }
+
+  @Test(expected = AmentIndexException.class)
+  public void testUnregisterOutsideOfIndex() throws Exception {
+    String[] prefixPaths = this.createPrefixPaths(2);
+    Path marker = Path.of(
+        prefixPaths[1], ResourceIndex.RESOURCE_INDEX_SUBDIRECTORY, "plugins", "plugin");
+    Files.createDirectories(marker.getParent());
+    Files.writeString(marker, "");
+    ConcurrentAmentIndex index = ConcurrentAmentIndex.create(new String[] {prefixPaths[0]});
+    try {
+      index.unregisterResource("plugins", "plugin", prefixPaths[1]);
+    } finally {
+      assertTrue(Files.exists(marker));
+    }
+  }
+}
@@ -0,0 +1,155 @@
+/* Copyright 2020 Open Source Robotics Foundation, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ros2.ament_index_java;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.lang.String;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+public class IndexDaemonTest extends AmentIndexTestFixture {
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private IndexDaemon daemon;
+
+  @After public void stopDaemon() throws Exception {
+    if (daemon != null) {
+      daemon.close();
+    }
+    ResourceIndex.stopWatching();
+  }
+
+  private void checkQueries(Path socketPath) throws Exception {
+    try (IndexClient client = IndexClient.connect(socketPath)) {
+      assertEquals(prefixPath1, client.getPackagePrefix("foo"));
+      assertNull(client.getPackagePrefix("this_package_does_not_exist"));
+      assertEquals(
+          Path.of(prefixPath1, "share", "bar").toString(), client.getPackageShareDirectory("bar"));
+      assertEquals(prefixPath2, client.hasResource("foo_type", "foo"));
+
+      // Content with line breaks survives the line-oriented protocol
+      Resource resource = client.getResource("bar_type", "bar");
+      assertEquals(prefixPath2, resource.getPrefixPath());
+      assertEquals(String.format("Multi-line%ntest%ndata%n.%n"), resource.getContent());
+      assertNull(client.getResource("bar_type", "this_name_does_not_exist"));
+
+      Map<String, String> packages = client.getResources("packages");
+      assertEquals(2, packages.size());
+      assertEquals(prefixPath1, packages.get("bar"));
+
+      try {
+        client.hasResource("", "foo");
+        fail("expected an exception");
+      } catch (AmentIndexException e) {
+        assertEquals("resource type must not be empty", e.getMessage());
+      }
+    }
+  }
+
+  @Test public void testQueriesOverTcp() throws Exception {
+    Path socketPath = temporaryFolder.getRoot().toPath().resolve("index.sock");
+    daemon = IndexDaemon.start(socketPath, false);
+    assertTrue(Files.isRegularFile(socketPath));
+    checkQueries(socketPath);
+  }
+
+  @Test public void testQueriesOverUnixDomainSocket() throws Exception {
+    Assume.assumeTrue(IndexSockets.isUnixDomainSocketSupported());
+    Path socketPath = temporaryFolder.getRoot().toPath().resolve("index.sock");
+    daemon = IndexDaemon.start(socketPath);
+    assertFalse(Files.isRegularFile(socketPath));
+    checkQueries(socketPath);
+  }
+
+  @Test public void testBatchedQueries() throws Exception {
+    Path socketPath = temporaryFolder.getRoot().toPath().resolve("index.sock");
+    daemon = IndexDaemon.start(socketPath, false);
+    try (IndexClient client = IndexClient.connect(socketPath)) {
+      List<String[]> responses = client.query(Arrays.asList(
+          new String[] {"ping"},
+          new String[] {"prefix", "bar"},
+          new String[] {"unknown_command"},
+          new String[] {"has", "packages"},
+          new String[] {"has", "packages", "foo"}));
+      assertEquals(5, responses.size());
+      assertArrayEquals(new String[] {"OK"}, responses.get(0));
+      assertArrayEquals(new String[] {"OK", prefixPath1}, responses.get(1));
+      assertEquals("ERROR", responses.get(2)[0]);
+      assertEquals("ERROR", responses.get(3)[0]);
+      assertArrayEquals(new String[] {"OK", prefixPath1}, responses.get(4));
+    }
+  }
+
+  @Test(timeout = 30000)
+  public void testLargeBatch() throws Exception {
+    Path socketPath = temporaryFolder.getRoot().toPath().resolve("index.sock");
+    daemon = IndexDaemon.start(socketPath, false);
+    // Far more responses than fit into the socket buffers while the requests are written
+    List<String[]> requests = new ArrayList<String[]>();
+    for (int i = 0; i < 200000; ++i) {
+      requests.add(new String[] {"has", "packages", i % 2 == 0 ? "foo" : "bar"});
+    }
+    try (IndexClient client = IndexClient.connect(socketPath)) {
+      List<String[]> responses = client.query(requests);
+      assertEquals(requests.size(), responses.size());
+      assertArrayEquals(new String[] {"OK", prefixPath1}, responses.get(responses.size() - 1));
+      // The connection is still usable afterwards
+      assertArrayEquals(new String[] {"OK"}, client.query("ping"));
+    }
+  }
+
+  @Test public void testSocketPathIsReleased() throws Exception {
+    Path socketPath = temporaryFolder.getRoot().toPath().resolve("index.sock");
+    daemon = IndexDaemon.start(socketPath, false);
+    // Only one daemon listens at a socket path
+    try {
+      IndexDaemon.start(socketPath, false);
+      fail("expected an exception");
+    } catch (IOException e) {
+      // Expected
+    }
+    daemon.close();
+    daemon = null;
+    assertFalse(Files.exists(socketPath));
+
+    // Other files are never replaced
+    Files.writeString(socketPath, "not a socket");
+    try {
+      daemon = IndexDaemon.start(socketPath, false);
+      fail("expected an exception");
+    } catch (IOException e) {
+      assertEquals("not a socket", Files.readString(socketPath));
+    }
+  }
+
+  @Test public void testProtocolEscaping() throws Exception {
+    String[] fields = {"a\tb", "c\\nd", "e\nf\r", ""};
+    String line = IndexProtocol.encode(fields);
+    assertFalse(line.contains("\n"));
+    assertArrayEquals(fields, IndexProtocol.decode(line));
+  }
+}
@@ -0,0 +1,172 @@
+/* Copyright 2020 Open Source Robotics Foundation, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ros2.ament_index_java;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+import java.lang.String;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+public class IndexManifestTest extends AmentIndexTestFixture {
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private Path prefix;
+
+  private Path marker(String resourceType, String resourceName) {
+    return prefix.resolve(
+        Path.of(ResourceIndex.RESOURCE_INDEX_SUBDIRECTORY, resourceType, resourceName));
+  }
+
+  @Before public void setUp() throws Exception {
+    prefix = temporaryFolder.getRoot().toPath();
+    Files.createDirectories(marker("packages", "foo").getParent());
+    Files.createDirectories(marker("empty_type", "foo").getParent());
+    Files.writeString(marker("packages", "foo"), "");
+    Files.writeString(marker("packages", "bar"), "bar content");
+  }
+
+  @Test public void testReadManifest() throws Exception {
+    assertFalse(IndexManifest.exists(prefix.toString()));
+    assertNull(IndexManifest.read(prefix.toString(), true));
+
+    IndexManifest.write(prefix.toString());
+    assertTrue(IndexManifest.exists(prefix.toString()));
+
+    AmentIndexSnapshot snapshot = AmentIndexSnapshot.create(new String[] {prefix.toString()});
+    assertEquals(2, snapshot.getResources("packages").length);
+    assertEquals("", snapshot.getResource("packages", "foo").getContent());
+    assertEquals("bar content", snapshot.getResource("packages", "bar").getContent());
+    assertEquals(0, snapshot.getResources("empty_type").length);
+    // The manifest itself is not a resource type
+    assertNull(snapshot.getResource(IndexManifest.MANIFEST_FILE_NAME, "foo"));
+  }
+
+  @Test public void testContentIsReadFromManifest() throws Exception {
+    IndexManifest.write(prefix.toString());
+    // Modifying the content of a marker in place does not invalidate the manifest
+    Files.writeString(marker("packages", "bar"), "modified content");
+    AmentIndexSnapshot snapshot = AmentIndexSnapshot.create(new String[] {prefix.toString()});
+    assertEquals("bar content", snapshot.getResource("packages", "bar").getContent());
+  }
+
+  @Test public void testOutdatedManifestIsIgnored() throws Exception {
+    IndexManifest.write(prefix.toString());
+    // Let the directory modification times advance past the ones in the manifest
+    Thread.sleep(50);
+    Files.writeString(marker("packages", "baz"), "");
+    assertNull(IndexManifest.read(prefix.toString(), true));
+
+    AmentIndexSnapshot snapshot = AmentIndexSnapshot.create(new String[] {prefix.toString()});
+    assertEquals(prefix.toString(), snapshot.hasResource("packages", "baz"));
+  }
+
+  @Test public void testRegisterResourceUpdatesManifest() throws Exception {
+    IndexManifest.write(prefix.toString());
+    Thread.sleep(50);
+    assertTrue(ResourceIndex.registerResource("new_type", "qux", prefix.toString(), "qux"));
+
+    Map<String, Map<String, Resource>> resources = IndexManifest.read(prefix.toString(), true);
+    assertNotNull(resources);
+    assertEquals("qux", resources.get("new_type").get("qux").getContent());
+  }
+
+  @Test public void testUnregisterResourceUpdatesManifest() throws Exception {
+    Files.createDirectories(marker("other_type", "qux").getParent());
+    Files.writeString(marker("other_type", "qux"), "");
+    IndexManifest.write(prefix.toString());
+    Files.writeString(marker("packages", "bar"), "modified content");
+    Thread.sleep(50);
+    assertTrue(ResourceIndex.unregisterResource("other_type", "qux", prefix.toString()));
+
+    Map<String, Map<String, Resource>> resources = IndexManifest.read(prefix.toString(), true);
+    assertNotNull(resources);
+    assertTrue(resources.get("other_type").isEmpty());
+    // Unmodified resource types are copied from the previous manifest
+    assertEquals("bar content", resources.get("packages").get("bar").getContent());
+  }
+
+  @Test public void testConcurrentRegistrationsUpdateManifest() throws Exception {
+    IndexManifest.write(prefix.toString());
+    AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+    List<Thread> threads = new ArrayList<Thread>();
+    for (int i = 0; i < 4; ++i) {
+      String resourceName = "resource" + i;
+      threads.add(new Thread(() -> {
+        try {
+          assertTrue(ResourceIndex.registerResource(
+              "packages", resourceName, prefix.toString(), resourceName));
+        } catch (Throwable e) {
+          failure.compareAndSet(null, e);
+        }
+      }));
+    }
+    for (Thread thread : threads) {
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    if (failure.get() != null) {
+      throw new AssertionError(failure.get());
+    }
+
+    // The manifest written last contains every resource, and no temporary files are left behind
+    assertEquals(6, IndexManifest.read(prefix.toString(), true).get("packages").size());
+    try (Stream<Path> files = Files.list(marker("packages", "foo").getParent().getParent())) {
+      assertEquals(
+          Arrays.asList(IndexManifest.MANIFEST_FILE_NAME, "empty_type", "packages"),
+          files.map(path -> path.getFileName().toString()).sorted()
+              .collect(Collectors.toList()));
+    }
+  }
+
+  @Test public void testCorruptManifestIsIgnored() throws Exception {
+    Path manifest = prefix.resolve(
+        Path.of(ResourceIndex.RESOURCE_INDEX_SUBDIRECTORY, IndexManifest.MANIFEST_FILE_NAME));
+    Files.write(manifest, new byte[] {1, 2, 3});
+    assertNull(IndexManifest.read(prefix.toString(), true));
+  }
+
+  @Test public void testCorruptStringLengthIsIgnored() throws Exception {
+    IndexManifest.write(prefix.toString());
+    Path manifest = prefix.resolve(
+        Path.of(ResourceIndex.RESOURCE_INDEX_SUBDIRECTORY, IndexManifest.MANIFEST_FILE_NAME));
+    // The length of the first resource type name follows the magic, version, time and count
+    try (FileChannel channel = FileChannel.open(manifest, StandardOpenOption.WRITE)) {
+      channel.write(ByteBuffer.allocate(4).putInt(0, Integer.MAX_VALUE), 20);
+    }
+    assertNull(IndexManifest.read(prefix.toString(), true));
+
+    // The prefix path is crawled instead
+    AmentIndexSnapshot snapshot = AmentIndexSnapshot.create(new String[] {prefix.toString()});
+    assertEquals("bar content", snapshot.getResource("packages", "bar").getContent());
+  }
+}
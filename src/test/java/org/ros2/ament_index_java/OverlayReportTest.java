@@ -0,0 +1,70 @@
+/* Copyright 2020 Open Source Robotics Foundation, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ros2.ament_index_java;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+import java.lang.String;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+public class OverlayReportTest extends AmentIndexTestFixture {
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test public void testShadowedResources() throws Exception {
+    OverlayReport report = OverlayReport.create();
+
+    List<ResourceOverlay> shadowed = report.getShadowedResources();
+    assertEquals(1, shadowed.size());
+    ResourceOverlay overlay = shadowed.get(0);
+    assertEquals("test_duplicate_resource", overlay.getType());
+    assertEquals("foo", overlay.getName());
+    assertArrayEquals(new String[] {prefixPath1, prefixPath2}, overlay.getPrefixPaths());
+    assertEquals(prefixPath1, overlay.getVisibleResource().getPrefixPath());
+    assertTrue(overlay.contentDiffers());
+
+    // Resources in a single prefix path
+    ResourceOverlay single = report.getOverlay("foo_type", "foo");
+    assertFalse(single.isShadowed());
+    assertFalse(single.contentDiffers());
+    assertArrayEquals(new String[] {prefixPath2}, single.getPrefixPaths());
+    assertNull(report.getOverlay("foo_type", "this_name_does_not_exist"));
+
+    // The snapshot is consistent with the report
+    assertEquals(
+        prefixPath1, report.getSnapshot().hasResource("test_duplicate_resource", "foo"));
+    assertEquals(2, report.getOverlays().get("packages").size());
+  }
+
+  @Test public void testSameContent() throws Exception {
+    String[] prefixPaths = new String[2];
+    for (int i = 0; i < prefixPaths.length; ++i) {
+      Path typeDirectory = temporaryFolder.newFolder("prefix" + i).toPath().resolve(
+          Path.of(ResourceIndex.RESOURCE_INDEX_SUBDIRECTORY, "plugins"));
+      Files.createDirectories(typeDirectory);
+      Files.writeString(typeDirectory.resolve("plugin"), "same content");
+      prefixPaths[i] = temporaryFolder.getRoot().toPath().resolve("prefix" + i).toString();
+    }
+
+    ResourceOverlay overlay = OverlayReport.create(prefixPaths, 2).getOverlay("plugins", "plugin");
+    assertTrue(overlay.isShadowed());
+    assertFalse(overlay.contentDiffers());
+  }
+}
@@ -0,0 +1,127 @@
+/* Copyright 2020 Open Source Robotics Foundation, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ros2.ament_index_java;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.lang.String;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.TreeSet;
+
+public class PackageDependencyGraphTest extends AmentIndexTestFixture {
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private Path prefixPath;
+
+  private void addPackage(String name, String dependencies) throws IOException {
+    if (this.prefixPath == null) {
+      this.prefixPath = temporaryFolder.newFolder("prefix").toPath();
+    }
+    Path markerPath = this.prefixPath.resolve(
+        Path.of(ResourceIndex.RESOURCE_INDEX_SUBDIRECTORY, "packages", name));
+    Files.createDirectories(markerPath.getParent());
+    Files.writeString(markerPath, "");
+    this.writeManifest(name, dependencies);
+  }
+
+  private void writeManifest(String name, String dependencies) throws IOException {
+    Path shareDirectory = this.prefixPath.resolve(Path.of("share", name));
+    Files.createDirectories(shareDirectory);
+    Files.writeString(
+        shareDirectory.resolve("package.xml"),
+        "<?xml version=\"1.0\"?>\n<package format=\"3\">\n  <name>" + name + "</name>\n"
+        + "  <version>0.1.0</version>\n" + dependencies + "</package>\n");
+  }
+
+  private PackageDependencyGraph createGraph() throws IOException {
+    return PackageDependencyGraph.create(
+        AmentIndexSnapshot.create(new String[] {this.prefixPath.toString()}));
+  }
+
+  private static Set<String> names(String... names) {
+    return new TreeSet<String>(Arrays.asList(names));
+  }
+
+  @Test public void testDependencies() throws Exception {
+    this.addPackage("app", "  <depend>lib</depend>\n  <test_depend>test_tools</test_depend>\n");
+    this.addPackage("lib", "  <exec_depend>base</exec_depend>\n"
+        + "  <buildtool_depend>ament_cmake</buildtool_depend>\n");
+    this.addPackage("base", "");
+    this.addPackage("test_tools", "  <exec_depend>base</exec_depend>\n");
+
+    PackageDependencyGraph graph = this.createGraph();
+    assertEquals(names("app", "base", "lib", "test_tools"), graph.getPackages());
+    assertEquals(names("lib", "test_tools"), graph.getDependencies("app"));
+    assertEquals(
+        names("lib"),
+        graph.getDependencies("app", EnumSet.of(PackageDependencyGraph.DependencyType.EXEC)));
+
+    Set<PackageDependencyGraph.DependencyType> exec =
+        EnumSet.of(PackageDependencyGraph.DependencyType.EXEC);
+    assertEquals(names("base", "lib"), graph.getTransitiveDependencies("app", exec));
+    assertEquals(
+        names("ament_cmake", "base", "lib", "test_tools"),
+        graph.getTransitiveDependencies(
+            "app", EnumSet.allOf(PackageDependencyGraph.DependencyType.class)));
+
+    assertEquals(names("lib", "test_tools"), graph.getDependents("base"));
+    assertEquals(names("app", "lib", "test_tools"), graph.getTransitiveDependents("base", exec));
+    assertEquals(names("app"), graph.getTransitiveDependents("lib", exec));
+    assertTrue(graph.getDependencies("not_a_package").isEmpty());
+  }
+
+  @Test public void testChangedManifestsAreParsedAgain() throws Exception {
+    this.addPackage("app", "  <exec_depend>lib</exec_depend>\n");
+    this.addPackage("lib", "");
+    Path manifestPath = this.prefixPath.resolve(Path.of("share", "app", "package.xml"));
+    PackageManifest manifest = PackageManifest.read(manifestPath);
+    assertSame(manifest, PackageManifest.read(manifestPath));
+
+    // A different size is detected regardless of the timestamp granularity
+    this.writeManifest(
+        "app", "  <exec_depend>lib</exec_depend>\n  <exec_depend>other</exec_depend>\n");
+    assertNotSame(manifest, PackageManifest.read(manifestPath));
+    assertEquals(names("lib", "other"), this.createGraph().getDependencies("app"));
+  }
+
+  @Test public void testCycles() throws Exception {
+    this.addPackage("a", "  <exec_depend>b</exec_depend>\n");
+    this.addPackage("b", "  <exec_depend>a</exec_depend>\n");
+    PackageDependencyGraph graph = this.createGraph();
+    assertEquals(
+        names("b"),
+        graph.getTransitiveDependencies(
+            "a", EnumSet.allOf(PackageDependencyGraph.DependencyType.class)));
+  }
+
+  @Test public void testInvalidManifest() throws Exception {
+    this.addPackage("app", "  <exec_depend>broken</exec_depend>\n");
+    this.addPackage("broken", "<depend>");
+    PackageDependencyGraph graph = this.createGraph();
+    // The other packages are still part of the graph
+    assertEquals(names("app"), graph.getPackages());
+    assertEquals(names("broken"), graph.getDependencies("app"));
+    assertEquals(names("broken"), graph.getFailures().keySet());
+  }
+}
@@ -20,8 +20,13 @@ import static org.junit.Assert.*;
 
 import java.io.File;
 import java.lang.String;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Hashtable;
+import java.util.Map;
+import java.util.SortedMap;
 
 public class PackageIndexTest extends AmentIndexTestFixture {
   @Test public void testGetPackagePrefix() throws Exception {
@@ -37,6 +42,16 @@ public class PackageIndexTest extends AmentIndexTestFixture {
     }
   }
 
+  @Test public void testGetPackagePrefixes() throws Exception {
+    Map<String, String> result = PackageIndex.getPackagePrefixes(
+        Arrays.asList("bar", "not_a_package", "foo"));
+    assertEquals(2, result.size());
+    assertEquals(prefixPath1, result.get("foo"));
+    assertEquals(prefixPath1, result.get("bar"));
+    // Ordered like the requested names
+    assertEquals("bar", result.keySet().iterator().next());
+  }
+
   @Test public void testGetPackageShareDirectory() throws Exception {
     // Non-existent package
     {
@@ -51,6 +66,93 @@ public class PackageIndexTest extends AmentIndexTestFixture {
     }
   }
 
+  @Test public void testGetPackageShareDirectoryAsync() throws Exception {
+    String expected = Path.of(prefixPath1, "share", "foo").toString();
+    assertEquals(expected, PackageIndex.getPackageShareDirectoryAsync("foo").get());
+    assertNull(PackageIndex.getPackageShareDirectoryAsync("this_does_not_exist").get());
+    assertEquals(prefixPath1, PackageIndex.getPackagePrefixAsync("bar").get());
+  }
+
+  @Test public void testGetPackages() throws Exception {
+    SortedMap<String, String> result = PackageIndex.getPackages();
+    assertEquals(Arrays.asList("bar", "foo"), new ArrayList<String>(result.keySet()));
+    assertEquals(prefixPath1, result.get("foo"));
+    // Computed once per snapshot
+    assertSame(result, PackageIndex.getPackages());
+    try {
+      result.put("baz", prefixPath1);
+      fail("expected the map to be unmodifiable");
+    } catch (UnsupportedOperationException e) {
+      // Expected
+    }
+    // No marker was read to list the packages
+    assertFalse(ResourceIndex.getSnapshot().getResource("packages", "foo").isContentLoaded());
+  }
+
+  @Test public void testGetPackagesMatching() throws Exception {
+    assertEquals(Arrays.asList("foo"), new ArrayList<String>(
+        PackageIndex.getPackagesMatching("f*").keySet()));
+    assertEquals(Arrays.asList("bar", "foo"), new ArrayList<String>(
+        PackageIndex.getPackagesMatching("???").keySet()));
+    assertEquals(prefixPath1, PackageIndex.getPackagesWithPrefix("ba").get("bar"));
+    assertTrue(PackageIndex.getPackagesWithPrefix("baz").isEmpty());
+    assertEquals(Arrays.asList("bar"), new ArrayList<String>(
+        PackageIndex.getPackagesInRange("a", "c").keySet()));
+  }
+
+  @Test public void testFindPackagesWithShareFile() throws Exception {
+    // Bookeeping for cleanup
+    filesCreated = new File[3];
+    Path shareDirectory = Path.of(prefixPath1, "share", "foo");
+    Path launchFile = shareDirectory.resolve(Path.of("launch", "foo.launch.py"));
+    filesCreated[0] = launchFile.toFile();
+    filesCreated[1] = launchFile.getParent().toFile();
+    filesCreated[2] = shareDirectory.toFile();
+
+    String relativePath = Path.of("launch", "foo.launch.py").toString();
+    assertTrue(PackageIndex.findPackagesWithShareFile(relativePath).isEmpty());
+
+    Files.createDirectories(launchFile.getParent());
+    Files.writeString(launchFile, "");
+    // The result is cached until the index changes
+    assertTrue(PackageIndex.findPackagesWithShareFile(relativePath).isEmpty());
+    ResourceIndex.invalidate();
+
+    Map<String, String> result = PackageIndex.findPackagesWithShareFile(relativePath);
+    assertEquals(1, result.size());
+    assertEquals(launchFile.toString(), result.get("foo"));
+    assertSame(result, PackageIndex.findPackagesWithShareFile(relativePath));
+    // Equivalent paths share the result
+    assertSame(result, PackageIndex.findPackagesWithShareFile(
+        Path.of("launch", ".", "foo.launch.py").toString()));
+
+    // Only the most recently searched files are kept
+    for (int i = 0; i < PackageIndex.MAX_CACHED_SHARE_FILE_SEARCHES; ++i) {
+      PackageIndex.findPackagesWithShareFile("file" + i);
+    }
+    Map<String, String> searchedAgain = PackageIndex.findPackagesWithShareFile(relativePath);
+    assertNotSame(result, searchedAgain);
+    assertEquals(result, searchedAgain);
+  }
+
+  @Test public void testFindPackagesWithShareFileEscapingPath() throws Exception {
+    for (String relativePath : new String[] {"..", Path.of("..", "bar", "package.xml").toString(),
+        Path.of("launch", "..", "..", "foo").toString(), Path.of("launch", "..").toString()})
+    {
+      try {
+        PackageIndex.findPackagesWithShareFile(relativePath);
+        fail("relative path must be rejected: " + relativePath);
+      } catch (AmentIndexException e) {
+        // Expected
+      }
+    }
+  }
+
+  @Test(expected = AmentIndexException.class)
+  public void testFindPackagesWithShareFileAbsolutePath() throws Exception {
+    PackageIndex.findPackagesWithShareFile(Path.of(prefixPath1).toAbsolutePath().toString());
+  }
+
   @Test public void testGetPackagesWithPrefixes() throws Exception {
     Hashtable<String, String> result = PackageIndex.getPackagesWithPrefixes();
     assertEquals(2, result.size());
@@ -92,4 +194,35 @@ public class PackageIndexTest extends AmentIndexTestFixture {
       assertTrue(filesCreated[1].exists());
     }
   }
+
+  @Test public void testUnregisterPackage() throws Exception {
+    // Bookeeping for cleanup
+    filesCreated = new File[5];
+    Path resourceIndexPrefix = Path.of(
+        prefixPath1, "share", "ament_index", "resource_index");
+    filesCreated[0] = resourceIndexPrefix.resolve(Path.of("packages", "new_package")).toFile();
+    filesCreated[1] = resourceIndexPrefix.resolve(Path.of("new_type", "new_package")).toFile();
+    filesCreated[2] = resourceIndexPrefix.resolve(Path.of("other_type", "new_package")).toFile();
+    filesCreated[3] = resourceIndexPrefix.resolve("new_type").toFile();
+    filesCreated[4] = resourceIndexPrefix.resolve("other_type").toFile();
+
+    PackageIndex.registerPackage("new_package", prefixPath1);
+    ResourceIndex.registerResource("new_type", "new_package", prefixPath1);
+    // Registered by another package, it only shares the name
+    ResourceIndex.registerResource("other_type", "new_package", prefixPath1);
+    assertEquals(prefixPath1, PackageIndex.getPackagePrefix("new_package"));
+
+    assertArrayEquals(
+        new String[] {"new_type", "packages"},
+        PackageIndex.unregisterPackage("new_package", prefixPath1, Arrays.asList("new_type")));
+    assertNull(PackageIndex.getPackagePrefix("new_package"));
+    assertNull(ResourceIndex.hasResource("new_type", "new_package"));
+    assertEquals(prefixPath1, ResourceIndex.hasResource("other_type", "new_package"));
+    assertFalse(PackageIndex.unregisterPackage("new_package", prefixPath1));
+
+    // Without resource types, only the package marker is removed
+    PackageIndex.registerPackage("new_package", prefixPath1);
+    assertTrue(PackageIndex.unregisterPackage("new_package", prefixPath1));
+    assertEquals(prefixPath1, ResourceIndex.hasResource("other_type", "new_package"));
+  }
 }
@@ -0,0 +1,129 @@
+/* Copyright 2020 Open Source Robotics Foundation, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ros2.ament_index_java;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+import java.lang.String;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+
+public class PrebakedIndexTest extends AmentIndexTestFixture {
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @After public void clearProperty() {
+    System.clearProperty(ResourceIndex.PREBAKED_INDEX_PROPERTY);
+    ResourceIndex.setMetricsListener(null);
+    ResourceIndex.invalidate();
+  }
+
+  @Test public void testLoadedByResourceIndex() throws Exception {
+    Path file = temporaryFolder.getRoot().toPath().resolve("index.bin");
+    PrebakedIndex.main(new String[] {file.toString()});
+    System.setProperty(ResourceIndex.PREBAKED_INDEX_PROPERTY, file.toString());
+    ResourceIndex.invalidate();
+
+    Slf4jMetricsReporter reporter = new Slf4jMetricsReporter();
+    ResourceIndex.setMetricsListener(reporter);
+    Resource resource = ResourceIndex.getResource("test_duplicate_resource", "foo");
+    assertEquals(prefixPath1, resource.getPrefixPath());
+    assertEquals(
+        String.format("This content is from the first prefix path%n"), resource.getContent());
+    assertEquals(prefixPath1, PackageIndex.getPackagePrefix("foo"));
+    // The content came from the prebaked index
+    assertEquals(0, reporter.getBytesRead());
+    assertEquals(0, reporter.getProbeCount(prefixPath1));
+  }
+
+  @Test public void testFingerprints() throws Exception {
+    Path prefixPath = temporaryFolder.newFolder("prefix").toPath();
+    Path typeDirectory = prefixPath.resolve(
+        Path.of(ResourceIndex.RESOURCE_INDEX_SUBDIRECTORY, "plugins"));
+    Files.createDirectories(typeDirectory);
+    Files.writeString(typeDirectory.resolve("plugin"), "content");
+    String[] prefixPaths = new String[] {prefixPath.toString()};
+    Path file = temporaryFolder.getRoot().toPath().resolve("index.bin");
+    PrebakedIndex.write(prefixPaths, file);
+
+    AmentIndexSnapshot snapshot = PrebakedIndex.read(file, prefixPaths, true);
+    assertEquals("content", snapshot.getResource("plugins", "plugin").getContent());
+
+    // Different prefix paths
+    assertNull(PrebakedIndex.read(file, new String[] {prefixPath1}, true));
+    assertNull(PrebakedIndex.read(file, new String[] {prefixPath.toString(), prefixPath1}, true));
+    // Missing file
+    assertNull(PrebakedIndex.read(file.resolveSibling("missing.bin"), prefixPaths, true));
+
+    // Give the filesystem a chance to record a different modification time
+    Thread.sleep(50);
+    Files.writeString(typeDirectory.resolve("other_plugin"), "");
+    assertNull(PrebakedIndex.read(file, prefixPaths, true));
+  }
+
+  @Test public void testFallsBackToCrawling() throws Exception {
+    Path file = temporaryFolder.getRoot().toPath().resolve("index.bin");
+    PrebakedIndex.write(new String[] {prefixPath2}, file);
+    System.setProperty(ResourceIndex.PREBAKED_INDEX_PROPERTY, file.toString());
+    ResourceIndex.invalidate();
+
+    assertEquals(prefixPath1, ResourceIndex.hasResource("test_duplicate_resource", "foo"));
+  }
+
+  @Test public void testUnreadableFileFallsBackToCrawling() throws Exception {
+    // Opening a directory as the file fails
+    Path file = temporaryFolder.newFolder("index.bin").toPath();
+    System.setProperty(ResourceIndex.PREBAKED_INDEX_PROPERTY, file.toString());
+    ResourceIndex.invalidate();
+
+    assertEquals(prefixPath1, ResourceIndex.hasResource("test_duplicate_resource", "foo"));
+  }
+
+  @Test public void testCorruptFileIsIgnored() throws Exception {
+    Path file = temporaryFolder.getRoot().toPath().resolve("index.bin");
+    String[] prefixPaths = new String[] {prefixPath1};
+    PrebakedIndex.write(prefixPaths, file);
+    // The length of the first prefix path follows the magic, version and count
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+      channel.write(ByteBuffer.allocate(4).putInt(0, Integer.MAX_VALUE), 12);
+    }
+    assertNull(PrebakedIndex.read(file, prefixPaths, true));
+
+    // Truncated in the middle of a manifest
+    PrebakedIndex.write(prefixPaths, file);
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+      channel.truncate(channel.size() / 2);
+    }
+    assertNull(PrebakedIndex.read(file, prefixPaths, true));
+  }
+
+  @Test public void testFilePermissions() throws Exception {
+    Path file = temporaryFolder.getRoot().toPath().resolve("index.bin");
+    // Created with the default permissions of the process
+    Path reference = Files.createFile(file.resolveSibling("reference"));
+    PrebakedIndex.write(new String[] {prefixPath1}, file);
+    if (Files.getFileStore(file).supportsFileAttributeView(PosixFileAttributeView.class)) {
+      assertEquals(Files.getPosixFilePermissions(reference), Files.getPosixFilePermissions(file));
+    }
+  }
+}
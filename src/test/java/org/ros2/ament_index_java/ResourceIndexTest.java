@@ -24,7 +24,20 @@ import java.io.File;
 import java.lang.String;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.Hashtable;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class ResourceIndexTest extends AmentIndexTestFixture {
 
@@ -98,6 +111,60 @@ public class ResourceIndexTest extends AmentIndexTestFixture {
     }
   }
 
+  @Test public void testGetResourcesByName() throws Exception {
+    Map<String, Resource> result = ResourceIndex.getResources(
+        "test_duplicate_resource", Arrays.asList("not_a_resource", "foo"));
+    assertEquals(1, result.size());
+    // We should get the first prefix path
+    assertEquals(prefixPath1, result.get("foo").getPrefixPath());
+    assertEquals(
+        String.format("This content is from the first prefix path%n"),
+        result.get("foo").getContent());
+  }
+
+  @Test public void testStreamResources() throws Exception {
+    long count = ResourceIndex.streamResources("packages")
+        .filter(resource -> resource.getPrefixPath().equals(prefixPath1))
+        .count();
+    assertEquals(2, count);
+  }
+
+  @Test public void testGetResourceNames() throws Exception {
+    // Get non-existent type
+    {
+      String[] result = ResourceIndex.getResourceNames("this_type_does_not_exist");
+      assertEquals(0, result.length);
+    }
+    // Get a type that exists in multiple prefix paths
+    {
+      String[] result = ResourceIndex.getResourceNames("test_duplicate_resource");
+      assertEquals(1, result.length);
+      assertEquals("foo", result[0]);
+    }
+  }
+
+  @Test public void testGetResourcesMatching() throws Exception {
+    Resource[] result = ResourceIndex.getResourcesMatching("packages", "*o*");
+    assertEquals(1, result.length);
+    assertEquals("foo", result[0].getName());
+    assertEquals(2, ResourceIndex.getResourcesWithPrefix("packages", "").length);
+    assertEquals(1, ResourceIndex.getResourcesInRange("packages", "bar", "baz").length);
+  }
+
+  @Test public void testGetResourceTypes() throws Exception {
+    String[] result = ResourceIndex.getResourceTypes();
+    assertArrayEquals(
+        new String[] {"bar_type", "foo_type", "packages", "test_duplicate_resource"}, result);
+  }
+
+  @Test public void testGetAllResources() throws Exception {
+    Map<String, Map<String, Resource>> result = ResourceIndex.getAllResources();
+    assertEquals(4, result.size());
+    assertEquals(1, result.get("foo_type").size());
+    // We should get the first prefix path
+    assertEquals(prefixPath1, result.get("test_duplicate_resource").get("foo").getPrefixPath());
+  }
+
   @Test public void testGetAmentIndexPaths() throws Exception {
     String[] paths = ResourceIndex.getAmentIndexPaths();
     assertEquals(2, paths.length);
@@ -161,4 +228,239 @@ public class ResourceIndexTest extends AmentIndexTestFixture {
       assertEquals(contentWritten, contentRead);
     }
   }
+
+  @Test public void testRegisteredMarkerPermissions() throws Exception {
+    Path typeDirectory =
+        Path.of(prefixPath1, ResourceIndex.RESOURCE_INDEX_SUBDIRECTORY, "packages");
+    Path marker = typeDirectory.resolve("new_package_resource");
+    // Created with the default permissions of the process
+    Path reference = typeDirectory.resolve(".reference");
+    filesCreated = new File[] {marker.toFile(), reference.toFile()};
+    Files.createFile(reference);
+
+    assertTrue(ResourceIndex.registerResource("packages", "new_package_resource", prefixPath1));
+    if (Files.getFileStore(marker).supportsFileAttributeView(PosixFileAttributeView.class)) {
+      assertEquals(
+          Files.getPosixFilePermissions(reference), Files.getPosixFilePermissions(marker));
+    }
+    assertTrue(Files.isReadable(marker));
+  }
+
+  @Test public void testRegisterResources() throws Exception {
+    // Bookeeping for cleanup
+    filesCreated = new File[4];
+
+    Path resourceIndexPrefix = Path.of(
+        prefixPath1, "share", "ament_index", "resource_index");
+    filesCreated[0] = resourceIndexPrefix.resolve(
+        Path.of("packages", "new_package_resource")).toFile();
+    filesCreated[1] = resourceIndexPrefix.resolve(
+        Path.of("new_type", "new_resource1")).toFile();
+    filesCreated[2] = resourceIndexPrefix.resolve(
+        Path.of("new_type", "new_resource2")).toFile();
+    filesCreated[3] = resourceIndexPrefix.resolve("new_type").toFile();
+
+    assertNull(ResourceIndex.getResource("new_type", "new_resource1"));
+    AmentIndexSnapshot before = ResourceIndex.getSnapshot();
+
+    List<RegistrationResult> results = ResourceIndex.registerResources(Arrays.asList(
+        new Resource("new_type", "new_resource1", prefixPath1, "first"),
+        new Resource("packages", "foo", prefixPath1),
+        new Resource("packages", "new_package_resource", prefixPath1),
+        new Resource("new_type", "new_resource2", prefixPath1, "second")), true);
+
+    assertEquals(4, results.size());
+    assertEquals(RegistrationResult.Status.REGISTERED, results.get(0).getStatus());
+    assertEquals("new_resource1", results.get(0).getResource().getName());
+    assertEquals(RegistrationResult.Status.ALREADY_EXISTS, results.get(1).getStatus());
+    assertEquals(RegistrationResult.Status.REGISTERED, results.get(2).getStatus());
+    assertEquals(RegistrationResult.Status.REGISTERED, results.get(3).getStatus());
+    assertNull(results.get(3).getError());
+
+    assertEquals("first", Files.readString(filesCreated[1].toPath()));
+    assertEquals("second", Files.readString(filesCreated[2].toPath()));
+    assertTrue(filesCreated[0].exists());
+    // No temporary files are left behind
+    assertEquals(2, filesCreated[3].list().length);
+
+    // The cached snapshot was updated without crawling again
+    Resource resource = ResourceIndex.getResource("new_type", "new_resource2");
+    assertNotNull(resource);
+    assertEquals("second", resource.getContent());
+    assertSame(
+        before.getResourcesOfType("foo_type"),
+        ResourceIndex.getSnapshot().getResourcesOfType("foo_type"));
+  }
+
+  @Test public void testConcurrentRegisterResource() throws Exception {
+    int count = 100;
+    // Bookeeping for cleanup
+    filesCreated = new File[count + 1];
+    Path typeDirectory = Path.of(
+        prefixPath1, "share", "ament_index", "resource_index", "concurrent_type");
+    for (int i = 0; i < count; ++i) {
+      filesCreated[i] = typeDirectory.resolve("resource" + i).toFile();
+    }
+    filesCreated[count] = typeDirectory.toFile();
+
+    Set<String> registered = ConcurrentHashMap.newKeySet();
+    AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+    Thread writer = new Thread(() -> {
+      try {
+        for (int i = 0; i < count; ++i) {
+          ResourceIndex.registerResource("concurrent_type", "resource" + i, prefixPath1);
+          registered.add("resource" + i);
+          // Crawls running concurrently must not install an outdated snapshot
+          if (i % 10 == 0) {
+            ResourceIndex.invalidate();
+          }
+        }
+      } catch (Throwable e) {
+        failure.compareAndSet(null, e);
+      }
+    });
+    List<Thread> readers = new ArrayList<Thread>();
+    for (int i = 0; i < 4; ++i) {
+      readers.add(new Thread(() -> {
+        try {
+          while (writer.isAlive() && failure.get() == null) {
+            Set<String> completed = new HashSet<String>(registered);
+            AmentIndexSnapshot snapshot = ResourceIndex.getSnapshot();
+            for (String name : completed) {
+              assertEquals(name, prefixPath1, snapshot.hasResource("concurrent_type", name));
+            }
+          }
+        } catch (Throwable e) {
+          failure.compareAndSet(null, e);
+        }
+      }));
+    }
+
+    writer.start();
+    for (Thread reader : readers) {
+      reader.start();
+    }
+    writer.join();
+    for (Thread reader : readers) {
+      reader.join();
+    }
+    if (failure.get() != null) {
+      throw new AssertionError(failure.get());
+    }
+    assertEquals(count, ResourceIndex.getResources("concurrent_type").length);
+  }
+
+  @Test public void testUnregisterResource() throws Exception {
+    // Bookeeping for cleanup
+    filesCreated = new File[2];
+    Path typeDirectory = Path.of(prefixPath1, "share", "ament_index", "resource_index", "foo_type");
+    filesCreated[0] = typeDirectory.resolve("foo").toFile();
+    filesCreated[1] = typeDirectory.toFile();
+
+    // Shadow the resource of the second prefix path
+    assertTrue(ResourceIndex.registerResource("foo_type", "foo", prefixPath1, "shadowing"));
+    assertEquals("shadowing", ResourceIndex.getResource("foo_type", "foo").getContent());
+
+    assertTrue(ResourceIndex.unregisterResource("foo_type", "foo", prefixPath1));
+    assertFalse(filesCreated[0].exists());
+    // The shadowed resource is visible again
+    Resource resource = ResourceIndex.getResource("foo_type", "foo");
+    assertEquals(prefixPath2, resource.getPrefixPath());
+    assertEquals(
+        String.format("This is dummy content for test purposes.%n"), resource.getContent());
+
+    // Removing it again does nothing
+    assertFalse(ResourceIndex.unregisterResource("foo_type", "foo", prefixPath1));
+    assertFalse(ResourceIndex.unregisterResource("foo_type", "..", prefixPath1));
+    assertTrue(filesCreated[1].isDirectory());
+  }
+
+  @Test(expected = AmentIndexException.class)
+  public void testRegisterResourcesValidatesFirst() throws Exception {
+    try {
+      ResourceIndex.registerResources(Arrays.asList(
+          new Resource("new_type", "new_resource", prefixPath1),
+          new Resource("new_type", "", prefixPath1)));
+    } finally {
+      // Nothing was written
+      assertFalse(Path.of(
+          prefixPath1, "share", "ament_index", "resource_index", "new_type").toFile().exists());
+    }
+  }
+
+  @Test public void testGetResourceAsync() throws Exception {
+    Resource resource = ResourceIndex.getResourceAsync("foo_type", "foo").get();
+    assertEquals(prefixPath2, resource.getPrefixPath());
+    assertNull(ResourceIndex.getResourceAsync("foo_type", "this_does_not_exist").get());
+    assertEquals(prefixPath2, ResourceIndex.hasResourceAsync("bar_type", "bar").get());
+    assertEquals(2, ResourceIndex.getResourcesAsync("packages").get().length);
+    assertEquals(1, ResourceIndex.getResourcesAsync(
+        "packages", Arrays.asList("foo", "this_does_not_exist")).get().size());
+
+    // Failures complete the future exceptionally
+    try {
+      ResourceIndex.getResourceAsync("", "foo").get();
+      fail("expected an exception");
+    } catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof AmentIndexException);
+    }
+  }
+
+  @Test public void testDefaultAsyncExecutorIsBounded() throws Exception {
+    ThreadPoolExecutor executor = (ThreadPoolExecutor) AsyncLookups.getDefaultExecutor();
+    assertEquals(
+        AsyncLookups.DEFAULT_QUEUE_CAPACITY,
+        executor.getQueue().size() + executor.getQueue().remainingCapacity());
+    // Lookups beyond the capacity are rejected instead of running on the calling thread
+    assertTrue(executor.getRejectedExecutionHandler() instanceof ThreadPoolExecutor.AbortPolicy);
+  }
+
+  @Test public void testSaturatedAsyncExecutor() throws Exception {
+    ResourceIndex.setAsyncExecutor(runnable -> {
+      throw new RejectedExecutionException("saturated");
+    });
+    try {
+      CompletableFuture<Resource> future = ResourceIndex.getResourceAsync("foo_type", "foo");
+      // The lookup did not run on the calling thread
+      assertTrue(future.isCompletedExceptionally());
+      try {
+        future.get();
+        fail("expected an exception");
+      } catch (ExecutionException e) {
+        assertTrue(e.getCause() instanceof RejectedExecutionException);
+      }
+      // The rejected lookup is not in flight anymore
+      assertTrue(
+          ResourceIndex.getResourceAsync("foo_type", "foo").isCompletedExceptionally());
+    } finally {
+      ResourceIndex.setAsyncExecutor(null);
+    }
+  }
+
+  @Test public void testAsyncLookupsAreMerged() throws Exception {
+    List<Runnable> tasks = new ArrayList<Runnable>();
+    ResourceIndex.setAsyncExecutor(tasks::add);
+    try {
+      CompletableFuture<Resource> first = ResourceIndex.getResourceAsync("foo_type", "foo");
+      CompletableFuture<Resource> second = ResourceIndex.getResourceAsync("foo_type", "foo");
+      CompletableFuture<Resource> other = ResourceIndex.getResourceAsync("bar_type", "bar");
+      // The second lookup joined the first one
+      assertEquals(2, tasks.size());
+      assertFalse(first.isDone());
+
+      tasks.get(0).run();
+      assertEquals("foo", first.get().getName());
+      assertSame(first.get(), second.get());
+      assertFalse(other.isDone());
+
+      // Completed lookups are not reused
+      ResourceIndex.getResourceAsync("foo_type", "foo");
+      assertEquals(3, tasks.size());
+      tasks.get(1).run();
+      tasks.get(2).run();
+      assertEquals("bar", other.get().getName());
+    } finally {
+      ResourceIndex.setAsyncExecutor(null);
+    }
+  }
 }
@@ -0,0 +1,81 @@
+/* Copyright 2020 Open Source Robotics Foundation, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ros2.ament_index_java;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.lang.String;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+public class ResourceTest extends AmentIndexTestFixture {
+  private static String[] toStrings(List<CharSequence> sequences) {
+    String[] strings = new String[sequences.size()];
+    for (int i = 0; i < strings.length; ++i) {
+      strings[i] = sequences.get(i).toString();
+    }
+    return strings;
+  }
+
+  @Test public void testGetContentLines() throws Exception {
+    Resource resource = ResourceIndex.getResource("bar_type", "bar");
+    List<CharSequence> lines = resource.getContentLines();
+    assertArrayEquals(new String[] {"Multi-line", "test", "data", "."}, toStrings(lines));
+    // Parsed once
+    assertSame(lines, resource.getContentLines());
+
+    Resource windows = new Resource("type", "name", "prefix", "a\r\n\r\nb");
+    assertArrayEquals(new String[] {"a", "", "b"}, toStrings(windows.getContentLines()));
+    assertEquals(0, new Resource("type", "name", "prefix").getContentLines().size());
+  }
+
+  @Test public void testGetContentFields() throws Exception {
+    Resource resource = new Resource("type", "name", "prefix", "lib/a.so; lib/b.so;;\nlib/c.so\n");
+    List<CharSequence> fields = resource.getContentFields(';');
+    assertArrayEquals(new String[] {"lib/a.so", "lib/b.so", "lib/c.so"}, toStrings(fields));
+    assertSame(fields, resource.getContentFields(';'));
+    assertEquals("lib/b.so".hashCode(), fields.get(1).hashCode());
+    Resource single = new Resource("type", "name", "prefix", "lib/a.so");
+    assertEquals(fields.get(0), single.getContentFields(';').get(0));
+    assertEquals("b.so", fields.get(1).subSequence(4, 8).toString());
+
+    assertEquals(
+        Arrays.asList(Path.of("lib/a.so"), Path.of("lib/b.so"), Path.of("lib/c.so")),
+        resource.getContentPaths(';'));
+  }
+
+  @Test public void testGetContentKeyValues() throws Exception {
+    Resource resource = new Resource(
+        "type", "name", "prefix", "name = foo\nno separator\nversion=1.0\nname=bar=baz\n");
+    Map<String, CharSequence> keyValues = resource.getContentKeyValues('=');
+    assertEquals(Arrays.asList("name", "version"), Arrays.asList(keyValues.keySet().toArray()));
+    assertEquals("bar=baz", keyValues.get("name").toString());
+    assertEquals("1.0", keyValues.get("version").toString());
+    assertSame(keyValues, resource.getContentKeyValues('='));
+  }
+
+  @Test public void testViewsOfNonMemoizedContent() throws Exception {
+    Resource resource = new Resource(
+        "bar_type", "bar", ResourceIndex.getResource("bar_type", "bar").getPrefixPath(), false);
+    List<CharSequence> lines = resource.getContentLines();
+    assertEquals(4, lines.size());
+    assertNotSame(lines, resource.getContentLines());
+    assertFalse(resource.isContentLoaded());
+  }
+}
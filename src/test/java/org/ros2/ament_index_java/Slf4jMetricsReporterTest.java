@@ -0,0 +1,97 @@
+/* Copyright 2020 Open Source Robotics Foundation, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ros2.ament_index_java;
+
+import org.junit.After;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.lang.String;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+public class Slf4jMetricsReporterTest extends AmentIndexTestFixture {
+  @After public void uninstallListener() {
+    ResourceIndex.setMetricsListener(null);
+  }
+
+  @Test public void testLookups() throws Exception {
+    Slf4jMetricsReporter reporter = new Slf4jMetricsReporter();
+    ResourceIndex.setMetricsListener(reporter);
+
+    assertNotNull(ResourceIndex.getResource("foo_type", "foo"));
+    assertNull(ResourceIndex.getResource("foo_type", "this_name_does_not_exist"));
+    assertEquals(prefixPath1, PackageIndex.getPackagePrefix("foo"));
+    List<String> names = Arrays.asList("foo", "this_name_does_not_exist");
+    assertEquals(1, PackageIndex.getPackagePrefixes(names).size());
+
+    assertEquals(3, reporter.getCallCount("ResourceIndex.getResource"));
+    assertEquals(2, reporter.getHitCount("ResourceIndex.getResource"));
+    assertEquals(1, reporter.getMissCount("ResourceIndex.getResource"));
+    assertEquals(1, reporter.getCallCount("PackageIndex.getPackagePrefix"));
+    assertEquals(1, reporter.getMissCount("PackageIndex.getPackagePrefixes"));
+    assertEquals(1, reporter.getMissCount("ResourceIndex.getResources"));
+
+    // The snapshot was crawled once, all other lookups used the cached snapshot
+    assertTrue(reporter.getProbeCount(prefixPath1) > 0);
+    assertTrue(reporter.getProbeCount(prefixPath2) > 0);
+    assertEquals(3.0 / 4.0, reporter.getCacheHitRatio(), 1e-9);
+
+    reporter.report();
+    reporter.reset();
+    assertEquals(0, reporter.getCallCount("ResourceIndex.getResource"));
+    assertTrue(Double.isNaN(reporter.getCacheHitRatio()));
+  }
+
+  @Test public void testPercentiles() throws Exception {
+    Slf4jMetricsReporter reporter = new Slf4jMetricsReporter();
+    reporter.lookupCompleted("lookup", 1000, true);
+    reporter.lookupCompleted("lookup", 3000, true);
+    assertEquals(1024, reporter.getPercentileNanos("lookup", 0.5));
+    assertEquals(4096, reporter.getPercentileNanos("lookup", 0.99));
+
+    // The upper bound of the last bucket does not fit into a long
+    reporter.lookupCompleted("slow_lookup", Long.MAX_VALUE, true);
+    assertEquals(Long.MAX_VALUE, reporter.getPercentileNanos("slow_lookup", 0.5));
+    assertEquals(0, reporter.getPercentileNanos("not_a_lookup", 0.5));
+    reporter.report();
+  }
+
+  @Test public void testMarkerReads() throws Exception {
+    Slf4jMetricsReporter reporter = new Slf4jMetricsReporter();
+    ResourceIndex.setMetricsListener(reporter);
+
+    AmentIndex index = new AmentIndex(Arrays.asList(Path.of(prefixPath1), Path.of(prefixPath2)));
+    Resource resource = index.getResource("foo_type", "foo");
+    // One probe in each prefix path
+    assertEquals(1, reporter.getProbeCount(prefixPath1));
+    assertEquals(1, reporter.getProbeCount(prefixPath2));
+
+    assertEquals(0, reporter.getBytesRead());
+    String content = resource.getContent();
+    assertEquals(content.getBytes("UTF-8").length, reporter.getBytesRead());
+  }
+
+  @Test public void testDisabled() throws Exception {
+    Slf4jMetricsReporter reporter = new Slf4jMetricsReporter();
+    ResourceIndex.setMetricsListener(reporter);
+    ResourceIndex.setMetricsListener(null);
+
+    assertNotNull(ResourceIndex.getResource("foo_type", "foo"));
+    assertEquals(0, reporter.getCallCount("ResourceIndex.getResource"));
+  }
+}